@@ -2,6 +2,7 @@ plugins {
     id("java")
     id("org.jetbrains.kotlin.jvm") version "1.9.20"
     id("org.jetbrains.intellij") version "1.16.0"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.example"
@@ -13,6 +14,25 @@ repositories {
 
 dependencies {
     implementation("org.ow2.asm:asm:9.6")
+    testImplementation("junit:junit:4.13.2")
+}
+
+// The benchmarks run outside the IDE but still load the few platform classes the engine touches
+// (ProgressManager, ModificationTracker), which the IntelliJ plugin only puts on the compile classpath.
+configurations {
+    named("jmhImplementation") {
+        extendsFrom(configurations.compileOnly.get())
+    }
+}
+
+// ./gradlew jmh, results in build/results/jmh
+jmh {
+    jmhVersion.set("1.37")
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    profilers.add("gc")
+    resultFormat.set("JSON")
 }
 // Configure Gradle IntelliJ Plugin
 // Read more: https://plugins.jetbrains.com/docs/intellij/tools-gradle-intellij-plugin.html
@@ -0,0 +1,111 @@
+package com.example.customoverwrittenidentifier;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The sequence engine on the synthetic workloads, one benchmark per stage or variant:
+ *
+ *   buildGraph        lowered bodies to a frozen CCFG (CcfgBuilder)
+ *   generate          every sequence of a built graph, walked by CcfgSequenceGenerator
+ *   buildAndGenerate  both, what the parallel engine does per callback outside the read lock
+ *   pagedCursor       every sequence again, pulled a page of 1000 at a time through a cursor
+ *   count             the number of sequences only, from the per-vertex counts
+ *
+ *   ./gradlew jmh
+ *
+ * The score is calls per second, plus sequences per second from the "sequences" counter; the gc profiler
+ * adds the allocation rate. The PSI explorer needs a running IDE and is not measured here.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SequenceEnumerationBenchmark {
+
+    @Param({"DEEP_CHAIN", "WIDE_SWITCH", "LOOPS_IN_TRY", "RECURSIVE_CYCLE"})
+    public SyntheticWorkloads.Shape shape;
+
+    @Param({"10"})
+    public int depth;
+
+    private SymbolTable symbols;
+
+    private CcfgBuilder builder;
+
+    private MethodIrCache.Lowered lowered;
+
+    private FrozenCcfg graph;
+
+    /**
+     * The sequences the benchmarks went through, reported per second next to the calls.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Sequences {
+        public long sequences;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            sequences = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        symbols = new SymbolTable();
+        CallSequenceExplorer explorer = new CallSequenceExplorer("/synthetic", symbols,
+                new MethodSummaryCache(() -> 0L), new CallDependencies(), depth);
+        builder = new CcfgBuilder(explorer);
+        lowered = SyntheticWorkloads.create(shape, symbols);
+        graph = builder.build(lowered);
+    }
+
+    @Benchmark
+    public FrozenCcfg buildGraph() {
+        return builder.build(lowered);
+    }
+
+    @Benchmark
+    public void generate(Sequences counter, Blackhole blackhole) {
+        counter.sequences += generateAll(graph, blackhole);
+    }
+
+    @Benchmark
+    public void buildAndGenerate(Sequences counter, Blackhole blackhole) {
+        counter.sequences += generateAll(builder.build(lowered), blackhole);
+    }
+
+    @Benchmark
+    public void pagedCursor(Sequences counter, Blackhole blackhole) {
+        CcfgSequenceGenerator.Cursor cursor = new CcfgSequenceGenerator(graph, depth, symbols).cursor();
+        SequenceSink sink = blackhole::consume;
+        for (int sent = cursor.nextPage(1000, sink); sent > 0; sent = cursor.nextPage(1000, sink)) {
+            counter.sequences += sent;
+        }
+    }
+
+    @Benchmark
+    public void count(Sequences counter) {
+        counter.sequences += new CcfgSequenceGenerator(graph, depth, symbols).getSequenceCount();
+    }
+
+    private long generateAll(FrozenCcfg graph, Blackhole blackhole) {
+        long[] count = {0};
+        new CcfgSequenceGenerator(graph, depth, symbols).generate(new TokenPath(symbols), sequence -> {
+            blackhole.consume(sequence);
+            count[0]++;
+        });
+        return count[0];
+    }
+}
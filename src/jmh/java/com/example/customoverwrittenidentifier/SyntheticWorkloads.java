@@ -0,0 +1,174 @@
+package com.example.customoverwrittenidentifier;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Callbacks of known shapes, written straight as lowered bodies (see MethodIr) so the engine can be measured
+ * without an IDE. Method 0 is the callback; the others are the project methods it reaches. Public only for the
+ * code JMH generates.
+ */
+public final class SyntheticWorkloads {
+
+    public enum Shape {
+        // every method calls the next one from both branches of an if, far past the depth limit
+        DEEP_CHAIN,
+        // one switch with many cases, each calling its own small method
+        WIDE_SWITCH,
+        // loops nested in loops nested in try/catch/finally, with calls in the innermost body
+        LOOPS_IN_TRY,
+        // methods that call each other round in a cycle until the depth limit stops them
+        RECURSIVE_CYCLE
+    }
+
+    private final SymbolTable symbols;
+
+    private final List<MethodIr.Statement> bodies = new ArrayList<>();
+
+    private final List<Set<Integer>> callees = new ArrayList<>();
+
+    private SyntheticWorkloads(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    static MethodIrCache.Lowered create(Shape shape, SymbolTable symbols) {
+        SyntheticWorkloads workload = new SyntheticWorkloads(symbols);
+        switch (shape) {
+            case DEEP_CHAIN:
+                workload.deepChain(40);
+                break;
+            case WIDE_SWITCH:
+                workload.wideSwitch(300);
+                break;
+            case LOOPS_IN_TRY:
+                workload.loopsInTry(8);
+                break;
+            case RECURSIVE_CYCLE:
+                workload.recursiveCycle(3);
+                break;
+        }
+        return workload.lower();
+    }
+
+    private void deepChain(int length) {
+        for (int m = 0; m < length; m++) {
+            int next = m + 1 < length ? m + 1 : -1;
+            MethodIr.Statement work = next < 0 ? statement("[Assignment: done = true;]") : call(m, next);
+            define(m, block(
+                    ifElse("If (flag" + m + ")", work, next < 0 ? statement("[Increment/Decrement: i++]") : call(m, next)),
+                    statement("[Assignment: step = " + m + ";]")));
+        }
+    }
+
+    private void wideSwitch(int cases) {
+        List<MethodIr.Statement> children = new ArrayList<>();
+        for (int c = 0; c < cases; c++) {
+            children.add(caseLabel("[case: " + c + "]"));
+            children.add(call(0, c + 1));
+            children.add(leaf(MethodIr.Kind.BREAK, " --> Break"));
+            define(c + 1, block(
+                    ifElse("If (x > " + c + ")", statement("[Assignment: y = " + c + ";]"), call(c + 1, cases + 1))));
+        }
+        children.add(caseLabel("[default]"));
+        children.add(statement("[Unidentified Statement]"));
+        define(0, block(new MethodIr.Statement(MethodIr.Kind.SWITCH, new int[0],
+                children.toArray(new MethodIr.Statement[0]), MethodIr.UNRESOLVED)));
+        define(cases + 1, block(statement("[Assignment: z = 0;]")));
+    }
+
+    private void loopsInTry(int nesting) {
+        MethodIr.Statement body = block(call(0, 1), call(0, 2), ifElse("If (done)", leaf(MethodIr.Kind.BREAK, " --> Break"),
+                leaf(MethodIr.Kind.CONTINUE, " --> Continue")));
+        for (int level = 0; level < nesting; level++) {
+            body = level % 2 == 0
+                    ? new MethodIr.Statement(MethodIr.Kind.LOOP,
+                            tokens(" --> For (i" + level + " < n)", " --> (exit for)"),
+                            new MethodIr.Statement[]{body}, MethodIr.UNRESOLVED)
+                    : new MethodIr.Statement(MethodIr.Kind.DO_WHILE,
+                            tokens(" --> Do", " --> While(j" + level + " > 0)", " --> (exit do-while)"),
+                            new MethodIr.Statement[]{body}, MethodIr.UNRESOLVED);
+            body = block(new MethodIr.Statement(MethodIr.Kind.TRY, new int[0], new MethodIr.Statement[]{
+                    section(MethodIr.Kind.TRY_BLOCK, " --> TryBlock", block(body)),
+                    section(MethodIr.Kind.CATCH, " --> Catch(java.io.IOException)", block(call(0, 2))),
+                    section(MethodIr.Kind.FINALLY, " --> Finally", block(statement("[Assignment: open = false;]")))
+            }, MethodIr.UNRESOLVED));
+        }
+        define(0, body);
+        define(1, block(ifElse("If (ready)", call(1, 2), call(1, 2)), ifElse("If (late)", call(1, 2), statement("[Assignment: a = 2;]"))));
+        define(2, block(statement("[Increment/Decrement: count++]")));
+    }
+
+    private void recursiveCycle(int methods) {
+        for (int m = 0; m < methods; m++) {
+            int next = (m + 1) % methods;
+            define(m, block(
+                    ifElse("If (n" + m + " > 0)", call(m, next), call(m, m)),
+                    statement("[Assignment: n" + m + " = n" + m + " - 1;]")));
+        }
+    }
+
+    private void define(int id, MethodIr.Statement body) {
+        ensure(id);
+        bodies.set(id, body);
+    }
+
+    private void ensure(int id) {
+        while (bodies.size() <= id) {
+            bodies.add(null);
+            callees.add(new LinkedHashSet<>());
+        }
+    }
+
+    private MethodIrCache.Lowered lower() {
+        Map<Integer, MethodIr> methods = new LinkedHashMap<>();
+        for (int id = 0; id < bodies.size(); id++) {
+            String name = id == 0 ? "onEvent" : "helper" + id;
+            int[] calls = callees.get(id).stream().mapToInt(Integer::intValue).toArray();
+            methods.put(id, new MethodIr(id, name, "/synthetic/Synthetic.java#Synthetic." + name + "()", bodies.get(id), calls));
+        }
+        return new MethodIrCache.Lowered(methods.get(0), methods);
+    }
+
+    private MethodIr.Statement call(int caller, int callee) {
+        ensure(Math.max(caller, callee));
+        callees.get(caller).add(callee);
+        return new MethodIr.Statement(MethodIr.Kind.CALL, tokens(" --> helper" + callee), MethodIr.Statement.noChildren(), callee);
+    }
+
+    private MethodIr.Statement ifElse(String condition, MethodIr.Statement then, MethodIr.Statement otherwise) {
+        return new MethodIr.Statement(MethodIr.Kind.IF, tokens(" --> " + condition),
+                new MethodIr.Statement[]{then, otherwise}, MethodIr.UNRESOLVED);
+    }
+
+    private MethodIr.Statement section(MethodIr.Kind kind, String token, MethodIr.Statement block) {
+        return new MethodIr.Statement(kind, tokens(token), new MethodIr.Statement[]{block}, MethodIr.UNRESOLVED);
+    }
+
+    private MethodIr.Statement caseLabel(String label) {
+        return leaf(MethodIr.Kind.CASE, " --> " + label);
+    }
+
+    private MethodIr.Statement statement(String text) {
+        return leaf(MethodIr.Kind.STATEMENT, " --> " + text);
+    }
+
+    private MethodIr.Statement leaf(MethodIr.Kind kind, String token) {
+        return new MethodIr.Statement(kind, tokens(token), MethodIr.Statement.noChildren(), MethodIr.UNRESOLVED);
+    }
+
+    private static MethodIr.Statement block(MethodIr.Statement... statements) {
+        return new MethodIr.Statement(MethodIr.Kind.BLOCK, new int[0], statements, MethodIr.UNRESOLVED);
+    }
+
+    private int[] tokens(String... texts) {
+        int[] ids = new int[texts.length];
+        for (int i = 0; i < texts.length; i++) {
+            ids[i] = symbols.intern(texts[i]);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.customoverwrittenidentifier;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Reads a file written by BinarySequenceSink and replays it into another sink, callback by callback, as if the
+ * sequences came from the engine. Replayed into a FileSequenceSink it gives the same text file as a text export.
+ *
+ *   java ... BinarySequenceReader SEQUENCES.ccfgseq [OUTPUT.txt]
+ */
+public class BinarySequenceReader implements Closeable {
+
+    private final InputStream in;
+
+    public BinarySequenceReader(Path file) throws IOException {
+        this.in = new BufferedInputStream(Files.newInputStream(file), 1 << 16);
+        byte[] magic = new byte[BinarySequenceSink.MAGIC.length];
+        if (in.readNBytes(magic, 0, magic.length) != magic.length || !Arrays.equals(magic, BinarySequenceSink.MAGIC)) {
+            in.close();
+            throw new IOException(file + " is not a sequence file");
+        }
+    }
+
+    /**
+     * Send everything in the file to the sink. Does not close the sink.
+     */
+    public void replay(SequenceSink sink) throws IOException {
+        SymbolTable symbols = new SymbolTable();
+        TokenPath path = new TokenPath(symbols);
+        int[] tokens = new int[1024]; // symbol table id by token number of the file
+        int tokenCount = 0;
+        String callback = null;
+        while (true) {
+            int tag = in.read();
+            switch (tag) {
+                case BinarySequenceSink.SYMBOL:
+                    if (tokenCount == tokens.length) {
+                        tokens = Arrays.copyOf(tokens, tokenCount * 2);
+                    }
+                    tokens[tokenCount++] = symbols.intern(readString());
+                    break;
+                case BinarySequenceSink.CALLBACK:
+                    callback = readString();
+                    path.reset(0);
+                    sink.startCallback(callback);
+                    break;
+                case BinarySequenceSink.SEQUENCE: {
+                    int shared = readVarint();
+                    int added = readVarint();
+                    if (shared > path.size()) {
+                        throw new IOException("corrupt sequence file: a sequence shares more than there is");
+                    }
+                    path.reset(shared);
+                    for (int i = 0; i < added; i++) {
+                        int token = readVarint();
+                        if (token >= tokenCount) {
+                            throw new IOException("corrupt sequence file: token " + token + " is not defined");
+                        }
+                        path.push(tokens[token]);
+                    }
+                    sink.accept(path);
+                    break;
+                }
+                case BinarySequenceSink.END_CALLBACK:
+                    sink.endCallback(callback);
+                    callback = null;
+                    break;
+                case BinarySequenceSink.END:
+                    return;
+                case -1:
+                    throw new EOFException("the sequence file ends before its last record");
+                default:
+                    throw new IOException("corrupt sequence file: unknown record " + tag);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private String readString() throws IOException {
+        int length = readVarint();
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new EOFException("the sequence file ends in the middle of a symbol");
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int readVarint() throws IOException {
+        return readVarint(in);
+    }
+
+    static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("the sequence file ends in the middle of a number");
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("corrupt sequence file: a number is too long");
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.out.println("Usage: BinarySequenceReader SEQUENCES." + BinarySequenceSink.EXTENSION + " [OUTPUT.txt]");
+            System.exit(2);
+        }
+        Path input = Paths.get(args[0]);
+        Path output = Paths.get(args.length > 1 ? args[1] : args[0].replaceFirst("\\.[^./\\\\]*$", "") + ".txt");
+        try (BinarySequenceReader reader = new BinarySequenceReader(input)) {
+            FileSequenceSink text = new FileSequenceSink(output);
+            try {
+                reader.replay(text);
+            } finally {
+                text.close();
+            }
+            System.out.println(text.getSequenceCount() + " sequences written to " + output);
+        } catch (IOException e) {
+            System.err.println("Could not read " + input + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.customoverwrittenidentifier;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Streams the sequences to a compact binary file, to be read back with BinarySequenceReader. The same few
+ * thousand tokens make up millions of sequences, and consecutive sequences mostly start the same way, so a
+ * token is written as a number and a sequence only as what differs from the one before it.
+ *
+ * The file is the magic bytes, then records that each start with a tag byte; every number is an unsigned
+ * varint (7 bits per byte, low bits first, high bit set on all bytes but the last):
+ *
+ *   SYMBOL       length, UTF-8 bytes. Defines the next token number, from 0 up; a symbol is written
+ *                just before the first sequence that uses it.
+ *   CALLBACK     length, UTF-8 bytes of the callback name; the sequences that follow are its own.
+ *   SEQUENCE     how many tokens it shares with the sequence before it in the callback, how many follow,
+ *                then their token numbers.
+ *   END_CALLBACK
+ *   END          the last record.
+ *
+ * Tokens are written as they are; the line breaks FileSequenceSink turns into spaces are kept.
+ */
+public class BinarySequenceSink implements SequenceSink {
+
+    public static final String EXTENSION = "ccfgseq";
+
+    static final byte[] MAGIC = {'C', 'C', 'F', 'G', 'S', 'E', 'Q', 1};
+
+    static final int END = 0;
+    static final int SYMBOL = 1;
+    static final int CALLBACK = 2;
+    static final int SEQUENCE = 3;
+    static final int END_CALLBACK = 4;
+
+    private final OutputStream out;
+
+    // token number in the file by symbol table id, -1 when the symbol was not written yet
+    private SymbolTable symbols = null;
+    private int[] fileIds = new int[0];
+    private int nextFileId = 0;
+
+    // the previous sequence of the callback, in token numbers of the file
+    private int[] previous = new int[64];
+    private int previousSize = 0;
+
+    private long sequenceCount = 0;
+
+    public BinarySequenceSink(Path file) throws IOException {
+        this.out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16);
+        out.write(MAGIC);
+    }
+
+    @Override
+    public void startCallback(String callback) {
+        try {
+            out.write(CALLBACK);
+            writeString(callback);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        previousSize = 0;
+    }
+
+    @Override
+    public void accept(TokenPath sequence) {
+        if (sequence.getSymbols() != symbols) {
+            // another table numbers the tokens differently; its symbols are written again as they come
+            symbols = sequence.getSymbols();
+            fileIds = new int[0];
+            previousSize = 0;
+        }
+        try {
+            int size = sequence.size();
+            if (size > previous.length) {
+                previous = Arrays.copyOf(previous, Math.max(size, previous.length * 2));
+            }
+            int shared = 0;
+            for (int i = 0; i < size; i++) {
+                int fileId = fileIdOf(sequence.tokenAt(i));
+                if (shared == i && i < previousSize && previous[i] == fileId) {
+                    shared++;
+                }
+                previous[i] = fileId;
+            }
+            previousSize = size;
+
+            out.write(SEQUENCE);
+            writeVarint(shared);
+            writeVarint(size - shared);
+            for (int i = shared; i < size; i++) {
+                writeVarint(previous[i]);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        sequenceCount++;
+    }
+
+    @Override
+    public void endCallback(String callback) {
+        try {
+            out.write(END_CALLBACK);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long getSequenceCount() {
+        return sequenceCount;
+    }
+
+    @Override
+    public void close() {
+        try {
+            out.write(END);
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int fileIdOf(int token) throws IOException {
+        if (token >= fileIds.length) {
+            int oldLength = fileIds.length;
+            fileIds = Arrays.copyOf(fileIds, Math.max(token + 1, oldLength * 2));
+            Arrays.fill(fileIds, oldLength, fileIds.length, -1);
+        }
+        if (fileIds[token] < 0) {
+            out.write(SYMBOL);
+            writeString(symbols.symbol(token));
+            fileIds[token] = nextFileId++;
+        }
+        return fileIds[token];
+    }
+
+    private void writeString(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeVarint(int value) throws IOException {
+        writeVarint(out, value);
+    }
+
+    // shared with the tests, which cannot reach every number through sequences
+    static void writeVarint(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.customoverwrittenidentifier;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Call sequences straight from compiled code, without an IDE or a project model:
+ *
+ *   java -cp plugin.jar:asm.jar com.example.customoverwrittenidentifier.BytecodeAnalysis
+ *        [--depth=N] [--sink=text|binary|count] [--dedup] [--output=FILE] [--library=android.jar]... INPUT...
+ *
+ * The inputs are class directories, jars and aars of the app; the libraries only complete the class hierarchy
+ * (see BytecodeClassIndex). Only ASM and the plain-Java sequence classes are used, so this runs anywhere a JVM
+ * does, e.g. on the outputs of a CI build.
+ */
+public class BytecodeAnalysis {
+
+    private final List<Path> inputs;
+
+    private final List<Path> libraries;
+
+    private final int maxDepth;
+
+    private int callbackCount = 0;
+
+    public BytecodeAnalysis(List<Path> inputs, List<Path> libraries, int maxDepth) {
+        this.inputs = inputs;
+        this.libraries = libraries;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Read the inputs and stream the sequences of every callback into the sink, callback by callback.
+     */
+    public void run(SequenceSink sink) throws IOException {
+        BytecodeClassIndex index = BytecodeClassIndex.load(inputs, libraries);
+        BytecodeSequenceExplorer explorer = new BytecodeSequenceExplorer(index, new SymbolTable(), maxDepth);
+        try {
+            for (BytecodeMethod callback : index.findCallbacks()) {
+                String name = BytecodeClassIndex.callbackName(callback);
+                sink.startCallback(name);
+                explorer.exploreCallback(callback, sink);
+                sink.endCallback(name);
+                callbackCount++;
+            }
+        } finally {
+            sink.close();
+        }
+    }
+
+    public int getCallbackCount() {
+        return callbackCount;
+    }
+
+    public static void main(String[] args) {
+        int maxDepth = CallSequenceExplorer.MAX_DEPTH;
+        String sink = "text";
+        boolean dedup = false;
+        Path output = null;
+        List<Path> inputs = new ArrayList<>();
+        List<Path> libraries = new ArrayList<>();
+        for (String arg : args) {
+            try {
+                if (arg.startsWith("--depth=")) {
+                    maxDepth = Integer.parseInt(arg.substring("--depth=".length()));
+                } else if (arg.startsWith("--sink=")) {
+                    sink = arg.substring("--sink=".length());
+                } else if (arg.equals("--dedup")) {
+                    dedup = true;
+                } else if (arg.startsWith("--output=")) {
+                    output = Paths.get(arg.substring("--output=".length()));
+                } else if (arg.startsWith("--library=")) {
+                    libraries.add(Paths.get(arg.substring("--library=".length())));
+                } else if (arg.startsWith("--")) {
+                    System.exit(usage("Unknown option " + arg));
+                } else {
+                    inputs.add(Paths.get(arg));
+                }
+            } catch (NumberFormatException e) {
+                System.exit(usage("Not a depth: " + arg));
+            }
+        }
+        if (maxDepth < 1) {
+            System.exit(usage("The depth must be at least 1"));
+        }
+        if (!sink.equals("text") && !sink.equals("binary") && !sink.equals("count")) {
+            System.exit(usage("Unknown sink " + sink));
+        }
+        if (inputs.isEmpty()) {
+            System.exit(usage("No classes to analyze"));
+        }
+        if (output == null) {
+            output = Paths.get(sink.equals("count") ? "ccfg-counts.txt"
+                    : sink.equals("binary") ? "ccfg-sequences." + BinarySequenceSink.EXTENSION : "ccfg-sequences.txt");
+        }
+
+        long start = System.nanoTime();
+        try {
+            BytecodeAnalysis analysis = new BytecodeAnalysis(inputs, libraries, maxDepth);
+            long sequenceCount;
+            if (sink.equals("count")) {
+                CountingSequenceSink counts = new CountingSequenceSink();
+                analysis.run(dedup ? new DeduplicatingSequenceSink(counts) : counts);
+                writeCounts(output, counts);
+                sequenceCount = counts.getTotal();
+            } else if (sink.equals("binary")) {
+                BinarySequenceSink sequences = new BinarySequenceSink(output);
+                analysis.run(dedup ? new DeduplicatingSequenceSink(sequences) : sequences);
+                sequenceCount = sequences.getSequenceCount();
+            } else {
+                FileSequenceSink sequences = new FileSequenceSink(output);
+                analysis.run(dedup ? new DeduplicatingSequenceSink(sequences) : sequences);
+                sequenceCount = sequences.getSequenceCount();
+            }
+            System.out.println(sequenceCount + " sequences in " + analysis.getCallbackCount() + " callbacks, "
+                    + String.format("%.1f", (System.nanoTime() - start) / 1e9) + " s, written to " + output);
+        } catch (IOException e) {
+            System.err.println("Could not analyze: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static int usage(String problem) {
+        System.out.println(problem);
+        System.out.println("Usage: BytecodeAnalysis [--depth=N] [--sink=text|binary|count] [--dedup] [--output=FILE] [--library=JAR]... INPUT...");
+        return 2;
+    }
+
+    private static void writeCounts(Path file, CountingSequenceSink counts) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Long> callback : counts.getCountsPerCallback().entrySet()) {
+                writer.write(callback.getKey() + "\t" + callback.getValue() + "\n");
+            }
+            writer.write("total\t" + counts.getTotal() + "\n");
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.example.customoverwrittenidentifier;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * The classes of an app read straight from its build output: directories of .class files, jars, and Android
+ * libraries (.aar, whose code is in classes.jar and libs/*.jar). Library jars such as android.jar can be added
+ * for the class hierarchy only; their code is not read, and calls into them are external like calls into the
+ * SDK are for the PSI engine.
+ */
+public class BytecodeClassIndex {
+
+    /**
+     * A class with its supertypes and methods.
+     */
+    public static final class ClassInfo {
+        private final String name;
+        private final String superName;
+        private final String[] interfaces;
+        private final boolean library;
+        private final Map<String, BytecodeMethod> methods = new LinkedHashMap<>();
+
+        private ClassInfo(String name, String superName, String[] interfaces, boolean library) {
+            this.name = name;
+            this.superName = superName;
+            this.interfaces = interfaces == null ? new String[0] : interfaces;
+            this.library = library;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isLibrary() {
+            return library;
+        }
+
+        public Iterable<BytecodeMethod> getMethods() {
+            return methods.values();
+        }
+    }
+
+    private final Map<String, ClassInfo> classes = new HashMap<>();
+
+    private int methodCount = 0;
+
+    /**
+     * Read the classes of the inputs (directories, .class files, .jar and .aar files), and the hierarchy of the
+     * libraries. A class found in an input wins over the same class in a library.
+     */
+    public static BytecodeClassIndex load(List<Path> inputs, List<Path> libraries) throws IOException {
+        BytecodeClassIndex index = new BytecodeClassIndex();
+        for (Path input : inputs) {
+            index.read(input, false);
+        }
+        for (Path library : libraries) {
+            index.read(library, true);
+        }
+        return index;
+    }
+
+    public int getMethodCount() {
+        return methodCount;
+    }
+
+    /**
+     * The methods of the input classes that override or implement a method of a supertype, sorted by class.
+     *
+     * @Override is not kept in class files, so a method counts as a callback when a supertype declares it. If
+     * part of the hierarchy is missing (no library jars were given), an on... method such as onCreate or onClick
+     * is taken as a callback as well, since that is where the framework calls in.
+     */
+    public List<BytecodeMethod> findCallbacks() {
+        List<ClassInfo> inputClasses = classes.values().stream()
+                .filter(info -> info != null && !info.library)
+                .sorted((a, b) -> a.name.compareTo(b.name))
+                .collect(Collectors.toList());
+        List<BytecodeMethod> callbacks = new ArrayList<>();
+        for (ClassInfo info : inputClasses) {
+            for (BytecodeMethod method : info.methods.values()) {
+                if (isCallbackCandidate(method) && overrides(info, method)) {
+                    callbacks.add(method);
+                }
+            }
+        }
+        return callbacks;
+    }
+
+    /**
+     * The method an invoke instruction ends up in, looked up like the JVM does: up the superclasses first, then
+     * through the interfaces, preferring a default method over an abstract declaration. Null when the owner is
+     * not known at all.
+     */
+    public BytecodeMethod resolve(String owner, String name, String descriptor) {
+        String key = name + descriptor;
+        for (String current = owner; current != null; ) {
+            ClassInfo info = find(current);
+            if (info == null) {
+                break;
+            }
+            BytecodeMethod method = info.methods.get(key);
+            if (method != null) {
+                return method;
+            }
+            current = info.superName;
+        }
+        Deque<String> pending = new ArrayDeque<>();
+        Set<String> seen = new HashSet<>();
+        BytecodeMethod declared = null;
+        pending.add(owner);
+        while (!pending.isEmpty()) {
+            ClassInfo info = find(pending.poll());
+            if (info == null) {
+                continue;
+            }
+            for (String itf : info.interfaces) {
+                if (!seen.add(itf)) {
+                    continue;
+                }
+                ClassInfo itfInfo = find(itf);
+                BytecodeMethod method = itfInfo == null ? null : itfInfo.methods.get(key);
+                if (method != null && (method.getAccess() & Opcodes.ACC_ABSTRACT) == 0) {
+                    return method;
+                }
+                if (method != null && declared == null) {
+                    declared = method;
+                }
+                pending.add(itf);
+            }
+            if (info.superName != null) {
+                pending.add(info.superName);
+            }
+        }
+        return declared;
+    }
+
+    // whether the method was read from an input, i.e. its body belongs to the app
+    public boolean isProjectMethod(BytecodeMethod method) {
+        ClassInfo info = classes.get(method.getOwner());
+        return info != null && !info.library;
+    }
+
+    /**
+     * The name a callback is reported under, e.g. "MainActivity.onCreate", like CallSequenceExplorer.callbackName.
+     */
+    public static String callbackName(BytecodeMethod method) {
+        return className(method.getOwner()) + "." + method.getName();
+    }
+
+    // the simple name of a class; anonymous classes (Outer$1) have none
+    static String className(String internalName) {
+        String simple = BytecodeMethod.simpleName(internalName);
+        return !simple.isEmpty() && simple.chars().allMatch(Character::isDigit) ? "(anonymous)" : simple;
+    }
+
+    private static boolean isCallbackCandidate(BytecodeMethod method) {
+        int excluded = Opcodes.ACC_STATIC | Opcodes.ACC_PRIVATE | Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE;
+        return (method.getAccess() & excluded) == 0
+                && method.hasCode()
+                && !method.getName().startsWith("<");
+    }
+
+    private boolean overrides(ClassInfo owner, BytecodeMethod method) {
+        String key = method.getName() + method.getDescriptor();
+        boolean hierarchyComplete = true;
+        Deque<String> pending = new ArrayDeque<>();
+        Set<String> seen = new HashSet<>();
+        if (owner.superName != null) {
+            pending.add(owner.superName);
+        }
+        for (String itf : owner.interfaces) {
+            pending.add(itf);
+        }
+        while (!pending.isEmpty()) {
+            String name = pending.poll();
+            if (!seen.add(name)) {
+                continue;
+            }
+            ClassInfo info = find(name);
+            if (info == null) {
+                hierarchyComplete = false;
+                continue;
+            }
+            BytecodeMethod inherited = info.methods.get(key);
+            if (inherited != null && (inherited.getAccess() & (Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC)) == 0) {
+                return true;
+            }
+            if (info.superName != null) {
+                pending.add(info.superName);
+            }
+            for (String itf : info.interfaces) {
+                pending.add(itf);
+            }
+        }
+        return !hierarchyComplete && isFrameworkCallbackName(method.getName());
+    }
+
+    // a class of the inputs or libraries, else one of the JDK; misses are remembered as null
+    private ClassInfo find(String name) {
+        if (classes.containsKey(name)) {
+            return classes.get(name);
+        }
+        classes.put(name, null);
+        if (name.startsWith("java/") || name.startsWith("javax/")) {
+            try (InputStream in = ClassLoader.getSystemResourceAsStream(name + ".class")) {
+                if (in != null) {
+                    readClass(in.readAllBytes(), true);
+                }
+            } catch (IOException e) {
+                // stays unknown, like any class that is not on the inputs
+            }
+        }
+        return classes.get(name);
+    }
+
+    private static boolean isFrameworkCallbackName(String name) {
+        return name.length() > 2 && name.startsWith("on") && Character.isUpperCase(name.charAt(2));
+    }
+
+    private void read(Path input, boolean library) throws IOException {
+        String fileName = input.getFileName().toString();
+        if (Files.isDirectory(input)) {
+            List<Path> classFiles;
+            try (Stream<Path> files = Files.walk(input)) {
+                classFiles = files.filter(file -> file.toString().endsWith(".class"))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+            for (Path classFile : classFiles) {
+                readClass(Files.readAllBytes(classFile), library);
+            }
+        } else if (fileName.endsWith(".class")) {
+            readClass(Files.readAllBytes(input), library);
+        } else if (fileName.endsWith(".jar") || fileName.endsWith(".aar") || fileName.endsWith(".zip")) {
+            try (InputStream in = Files.newInputStream(input)) {
+                readArchive(in, library);
+            }
+        } else {
+            throw new IOException("Not a directory, class file, jar or aar: " + input);
+        }
+    }
+
+    // an aar holds its code in nested jars, which are read from memory
+    private void readArchive(InputStream in, boolean library) throws IOException {
+        ZipInputStream zip = new ZipInputStream(in);
+        for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+            String name = entry.getName();
+            if (entry.isDirectory() || name.startsWith("META-INF/")) {
+                continue;
+            }
+            if (name.endsWith(".class") && !name.endsWith("module-info.class")) {
+                readClass(zip.readAllBytes(), library);
+            } else if (name.endsWith(".jar")) {
+                readArchive(new ByteArrayInputStream(zip.readAllBytes()), library);
+            }
+        }
+    }
+
+    private void readClass(byte[] bytes, boolean library) {
+        ClassReader reader = new ClassReader(bytes);
+        if (library && classes.get(reader.getClassName()) != null) {
+            return;
+        }
+        reader.accept(new ClassVisitor(Opcodes.ASM9) {
+            private ClassInfo info;
+
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName,
+                              String[] interfaces) {
+                info = new ClassInfo(name, superName, interfaces, library);
+                classes.put(name, info);
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                                             String[] exceptions) {
+                BytecodeMethod method = new BytecodeMethod(methodCount++, info.name, name, descriptor, access);
+                info.methods.put(name + descriptor, method);
+                return library ? null : method.visitor();
+            }
+        }, library ? ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES
+                : ClassReader.SKIP_FRAMES);
+    }
+}
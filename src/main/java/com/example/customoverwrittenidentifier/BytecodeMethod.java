@@ -0,0 +1,537 @@
+package com.example.customoverwrittenidentifier;
+
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One method read from a class file, and the control flow of its code.
+ *
+ * Bytecode has no statements, so the structure the PSI engine reads from If/For/Switch/Try is recovered from
+ * the control flow graph: a call is under a branch when the branch dominates the call's block and the block
+ * does not post-dominate the branch, i.e. the block only runs on some of the branch's ways out. Calls are
+ * reported in code order, each with the branches (and catch blocks) it is under.
+ */
+public class BytecodeMethod {
+
+    /**
+     * A method call in the code, with the branches it is under, outermost first.
+     */
+    public static final class CallSite {
+        private final List<String> context;
+        private final String owner;
+        private final String name;
+        private final String descriptor;
+
+        private CallSite(List<String> context, String owner, String name, String descriptor) {
+            this.context = context;
+            this.owner = owner;
+            this.name = name;
+            this.descriptor = descriptor;
+        }
+
+        public List<String> getContext() {
+            return context;
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDescriptor() {
+            return descriptor;
+        }
+    }
+
+    private static final byte NORMAL = 0;
+    private static final byte BRANCH = 1;
+    private static final byte GOTO = 2;
+    private static final byte SWITCH = 3;
+    private static final byte EXIT = 4;
+    private static final byte CALL = 5;
+
+    private final int id;
+    private final String owner;
+    private final String name;
+    private final String descriptor;
+    private final int access;
+
+    // the code, one entry per instruction; filled by the visitor, then turned into call sites and dropped
+    private byte[] kinds = new byte[0];
+    private int[] lines = new int[0];
+    private Label[][] targets = new Label[0][];
+    private String[][] calls = new String[0][];
+    private int size = 0;
+    private final Map<Label, Integer> labels = new HashMap<>();
+    private final List<Object[]> tryCatchBlocks = new ArrayList<>();
+    private boolean hasCode = false;
+
+    private volatile List<CallSite> callSites;
+
+    BytecodeMethod(int id, String owner, String name, String descriptor, int access) {
+        this.id = id;
+        this.owner = owner;
+        this.name = name;
+        this.descriptor = descriptor;
+        this.access = access;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    public int getAccess() {
+        return access;
+    }
+
+    public boolean hasCode() {
+        return hasCode;
+    }
+
+    /**
+     * The calls of the method in code order. Unreachable code is left out.
+     */
+    public List<CallSite> getCallSites() {
+        List<CallSite> result = callSites;
+        if (result == null) {
+            synchronized (this) {
+                if (callSites == null) {
+                    callSites = hasCode ? analyze() : new ArrayList<>();
+                    kinds = null;
+                    lines = null;
+                    targets = null;
+                    calls = null;
+                    labels.clear();
+                    tryCatchBlocks.clear();
+                }
+                result = callSites;
+            }
+        }
+        return result;
+    }
+
+    MethodVisitor visitor() {
+        return new MethodVisitor(Opcodes.ASM9) {
+            private int line = 0;
+
+            @Override
+            public void visitCode() {
+                hasCode = true;
+            }
+
+            @Override
+            public void visitLabel(Label label) {
+                labels.put(label, size);
+            }
+
+            @Override
+            public void visitLineNumber(int line, Label start) {
+                this.line = line;
+            }
+
+            @Override
+            public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+                tryCatchBlocks.add(new Object[]{start, end, handler, type});
+            }
+
+            @Override
+            public void visitInsn(int opcode) {
+                boolean exit = (opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN) || opcode == Opcodes.ATHROW;
+                add(exit ? EXIT : NORMAL, line, null, null);
+            }
+
+            @Override
+            public void visitIntInsn(int opcode, int operand) {
+                add(NORMAL, line, null, null);
+            }
+
+            @Override
+            public void visitVarInsn(int opcode, int var) {
+                add(opcode == Opcodes.RET ? EXIT : NORMAL, line, null, null);
+            }
+
+            @Override
+            public void visitTypeInsn(int opcode, String type) {
+                add(NORMAL, line, null, null);
+            }
+
+            @Override
+            public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+                add(NORMAL, line, null, null);
+            }
+
+            @Override
+            public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+                add(CALL, line, null, new String[]{owner, name, descriptor});
+            }
+
+            @Override
+            public void visitInvokeDynamicInsn(String name, String descriptor,
+                                               org.objectweb.asm.Handle bootstrapMethodHandle,
+                                               Object... bootstrapMethodArguments) {
+                // lambdas and string concatenation; the PSI engine does not look into lambdas either
+                add(NORMAL, line, null, null);
+            }
+
+            @Override
+            public void visitJumpInsn(int opcode, Label label) {
+                add(opcode == Opcodes.GOTO ? GOTO : BRANCH, line, new Label[]{label}, null);
+            }
+
+            @Override
+            public void visitLdcInsn(Object value) {
+                add(NORMAL, line, null, null);
+            }
+
+            @Override
+            public void visitIincInsn(int var, int increment) {
+                add(NORMAL, line, null, null);
+            }
+
+            @Override
+            public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+                switchInsn(dflt, labels);
+            }
+
+            @Override
+            public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+                switchInsn(dflt, labels);
+            }
+
+            @Override
+            public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
+                add(NORMAL, line, null, null);
+            }
+
+            private void switchInsn(Label dflt, Label[] cases) {
+                Label[] all = Arrays.copyOf(cases, cases.length + 1);
+                all[cases.length] = dflt;
+                add(SWITCH, line, all, null);
+            }
+        };
+    }
+
+    private void add(byte kind, int line, Label[] jumpTargets, String[] call) {
+        if (size == kinds.length) {
+            int capacity = Math.max(16, size * 2);
+            kinds = Arrays.copyOf(kinds, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            targets = Arrays.copyOf(targets, capacity);
+            calls = Arrays.copyOf(calls, capacity);
+        }
+        kinds[size] = kind;
+        lines[size] = line;
+        targets[size] = jumpTargets;
+        calls[size] = call;
+        size++;
+    }
+
+    private List<CallSite> analyze() {
+        if (size == 0) {
+            return new ArrayList<>();
+        }
+
+        // basic blocks: a block starts at the entry, at every jump target and handler, and after every jump or exit
+        boolean[] leader = new boolean[size + 1];
+        leader[0] = true;
+        for (int i = 0; i < size; i++) {
+            if (targets[i] != null) {
+                for (Label target : targets[i]) {
+                    leader[labels.get(target)] = true;
+                }
+            }
+            if (kinds[i] == BRANCH || kinds[i] == GOTO || kinds[i] == SWITCH || kinds[i] == EXIT) {
+                leader[i + 1] = true;
+            }
+        }
+        for (Object[] tryCatch : tryCatchBlocks) {
+            leader[labels.get((Label) tryCatch[2])] = true;
+        }
+        int[] blockOf = new int[size];
+        List<Integer> starts = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (leader[i]) {
+                starts.add(i);
+            }
+            blockOf[i] = starts.size() - 1;
+        }
+        int blockCount = starts.size();
+        int[] blockEnd = new int[blockCount]; // the last instruction of the block
+        for (int b = 0; b < blockCount; b++) {
+            blockEnd[b] = (b + 1 < blockCount ? starts.get(b + 1) : size) - 1;
+        }
+
+        // successors, and which blocks begin a catch block
+        List<BitSet> successors = new ArrayList<>();
+        boolean[] exits = new boolean[blockCount];
+        String[] handlerType = new String[blockCount];
+        for (int b = 0; b < blockCount; b++) {
+            BitSet next = new BitSet(blockCount);
+            int last = blockEnd[b];
+            byte kind = kinds[last];
+            if (kind == EXIT) {
+                exits[b] = true;
+            } else if (kind != GOTO && kind != SWITCH && last + 1 < size) {
+                next.set(blockOf[last + 1]);
+            }
+            if (targets[last] != null) {
+                for (Label target : targets[last]) {
+                    int index = labels.get(target);
+                    if (index < size) {
+                        next.set(blockOf[index]);
+                    }
+                }
+            }
+            successors.add(next);
+        }
+        for (Object[] tryCatch : tryCatchBlocks) {
+            int start = labels.get((Label) tryCatch[0]);
+            int end = labels.get((Label) tryCatch[1]);
+            int handler = labels.get((Label) tryCatch[2]);
+            if (handler >= size || start >= end) {
+                continue;
+            }
+            int handlerBlock = blockOf[handler];
+            String type = (String) tryCatch[3];
+            handlerType[handlerBlock] = type == null ? "finally" : simpleName(type);
+            for (int b = blockOf[start]; b <= blockOf[Math.min(end, size) - 1]; b++) {
+                successors.get(b).set(handlerBlock);
+            }
+        }
+
+        BitSet reachable = reachableFromEntry(successors, blockCount);
+        BitSet[] dominators = dominators(successors, reachable, blockCount);
+        BitSet[] postDominators = postDominators(successors, exits, reachable, blockCount);
+
+        // a branch is a loop branch when one of its ways out goes back to a block that dominates it
+        boolean[] loopBranch = new boolean[blockCount];
+        for (int b = reachable.nextSetBit(0); b >= 0; b = reachable.nextSetBit(b + 1)) {
+            BitSet next = successors.get(b);
+            for (int s = next.nextSetBit(0); s >= 0; s = next.nextSetBit(s + 1)) {
+                if (dominators[b].get(s)) {
+                    loopBranch[s] |= kinds[blockEnd[s]] == BRANCH;
+                    loopBranch[b] |= kinds[blockEnd[b]] == BRANCH;
+                }
+            }
+        }
+
+        Contexts contexts = new Contexts(successors, dominators, postDominators, blockEnd, handlerType, loopBranch);
+        List<CallSite> sites = new ArrayList<>();
+        for (int b = reachable.nextSetBit(0); b >= 0; b = reachable.nextSetBit(b + 1)) {
+            for (int i = starts.get(b); i <= blockEnd[b]; i++) {
+                if (kinds[i] == CALL) {
+                    sites.add(new CallSite(contexts.of(b), calls[i][0], calls[i][1], calls[i][2]));
+                }
+            }
+        }
+        return sites;
+    }
+
+    /**
+     * The branches and catch blocks a block is under. A block is under a branch when it is control dependent
+     * on it: it post-dominates one of the branch's ways out but not the branch itself, so whether it runs is
+     * decided there. Code after an if/else or a loop is not under it; a catch block covers what it dominates.
+     * The context of a block is the context of the nearest such branch or catch block, plus that one.
+     */
+    private final class Contexts {
+        private final List<BitSet> successors;
+        private final BitSet[] dominators;
+        private final BitSet[] postDominators;
+        private final int[] blockEnd;
+        private final String[] handlerType;
+        private final boolean[] loopBranch;
+        private final int[] dominatorCount;
+        private final Map<Integer, List<String>> memo = new HashMap<>();
+
+        private Contexts(List<BitSet> successors, BitSet[] dominators, BitSet[] postDominators, int[] blockEnd,
+                         String[] handlerType, boolean[] loopBranch) {
+            this.successors = successors;
+            this.dominators = dominators;
+            this.postDominators = postDominators;
+            this.blockEnd = blockEnd;
+            this.handlerType = handlerType;
+            this.loopBranch = loopBranch;
+            this.dominatorCount = new int[dominators.length];
+            for (int b = 0; b < dominators.length; b++) {
+                dominatorCount[b] = dominators[b].cardinality();
+            }
+        }
+
+        private List<String> of(int block) {
+            List<String> context = memo.get(block);
+            if (context == null) {
+                context = compute(block, true);
+                memo.put(block, context);
+            }
+            return context;
+        }
+
+        private List<String> compute(int block, boolean ownCatch) {
+            // the dominators of a block are nested, the one with the most dominators is the closest
+            int nearest = -1;
+            BitSet dominating = dominators[block];
+            for (int d = dominating.nextSetBit(0); d >= 0; d = dominating.nextSetBit(d + 1)) {
+                boolean decides = d == block
+                        ? ownCatch && handlerType[d] != null
+                        : handlerType[d] != null || isBranch(d) && controls(d, block);
+                if (decides && (nearest < 0 || dominatorCount[d] > dominatorCount[nearest])) {
+                    nearest = d;
+                }
+            }
+            if (nearest < 0) {
+                return new ArrayList<>();
+            }
+            List<String> context;
+            if (nearest == block) {
+                context = new ArrayList<>(compute(block, false));
+                context.add(" --> Catch (" + handlerType[block] + ")");
+            } else {
+                context = new ArrayList<>(of(nearest));
+                if (isBranch(nearest) && controls(nearest, block)) {
+                    context.add(branchToken(nearest));
+                }
+            }
+            return context;
+        }
+
+        private boolean isBranch(int block) {
+            byte kind = kinds[blockEnd[block]];
+            return kind == BRANCH || kind == SWITCH;
+        }
+
+        private boolean controls(int branch, int block) {
+            if (postDominators[branch].get(block)) {
+                return false;
+            }
+            BitSet next = successors.get(branch);
+            for (int s = next.nextSetBit(0); s >= 0; s = next.nextSetBit(s + 1)) {
+                if (postDominators[s].get(block)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private String branchToken(int branch) {
+            int last = blockEnd[branch];
+            String label = kinds[last] == SWITCH ? "Switch" : loopBranch[branch] ? "Loop" : "If";
+            return lines[last] > 0 ? " --> " + label + " (line " + lines[last] + ")" : " --> " + label;
+        }
+    }
+
+    private static BitSet reachableFromEntry(List<BitSet> successors, int blockCount) {
+        BitSet reachable = new BitSet(blockCount);
+        int[] stack = new int[blockCount];
+        int top = 0;
+        stack[top++] = 0;
+        reachable.set(0);
+        while (top > 0) {
+            BitSet next = successors.get(stack[--top]);
+            for (int s = next.nextSetBit(0); s >= 0; s = next.nextSetBit(s + 1)) {
+                if (!reachable.get(s)) {
+                    reachable.set(s);
+                    stack[top++] = s;
+                }
+            }
+        }
+        return reachable;
+    }
+
+    private static BitSet[] dominators(List<BitSet> successors, BitSet reachable, int blockCount) {
+        List<BitSet> predecessors = new ArrayList<>();
+        for (int b = 0; b < blockCount; b++) {
+            predecessors.add(new BitSet(blockCount));
+        }
+        for (int b = reachable.nextSetBit(0); b >= 0; b = reachable.nextSetBit(b + 1)) {
+            BitSet next = successors.get(b);
+            for (int s = next.nextSetBit(0); s >= 0; s = next.nextSetBit(s + 1)) {
+                predecessors.get(s).set(b);
+            }
+        }
+        BitSet[] dominators = new BitSet[blockCount];
+        for (int b = 0; b < blockCount; b++) {
+            dominators[b] = (BitSet) reachable.clone();
+        }
+        dominators[0] = new BitSet(blockCount);
+        dominators[0].set(0);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int b = reachable.nextSetBit(1); b >= 0; b = reachable.nextSetBit(b + 1)) {
+                BitSet dominating = (BitSet) reachable.clone();
+                BitSet from = predecessors.get(b);
+                for (int p = from.nextSetBit(0); p >= 0; p = from.nextSetBit(p + 1)) {
+                    dominating.and(dominators[p]);
+                }
+                dominating.set(b);
+                if (!dominating.equals(dominators[b])) {
+                    dominators[b] = dominating;
+                    changed = true;
+                }
+            }
+        }
+        return dominators;
+    }
+
+    // post-dominators towards a virtual exit after every return and throw; a block that never reaches an exit
+    // keeps "everything" as its post-dominators, so nothing counts as conditional under it
+    private static BitSet[] postDominators(List<BitSet> successors, boolean[] exits, BitSet reachable, int blockCount) {
+        BitSet[] postDominators = new BitSet[blockCount];
+        for (int b = 0; b < blockCount; b++) {
+            postDominators[b] = (BitSet) reachable.clone();
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int b = reachable.previousSetBit(blockCount - 1); b >= 0; b = reachable.previousSetBit(b - 1)) {
+                BitSet next = successors.get(b);
+                BitSet dominated;
+                if (exits[b] && next.isEmpty()) {
+                    dominated = new BitSet(blockCount);
+                } else {
+                    dominated = (BitSet) reachable.clone();
+                    if (exits[b]) {
+                        dominated.clear(); // the virtual exit is one of its successors
+                    }
+                    for (int s = next.nextSetBit(0); s >= 0; s = next.nextSetBit(s + 1)) {
+                        dominated.and(postDominators[s]);
+                    }
+                }
+                dominated.set(b);
+                if (!dominated.equals(postDominators[b])) {
+                    postDominators[b] = dominated;
+                    changed = true;
+                }
+            }
+        }
+        return postDominators;
+    }
+
+    static String simpleName(String internalName) {
+        String name = internalName.substring(internalName.lastIndexOf('/') + 1);
+        return name.substring(name.lastIndexOf('$') + 1);
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.customoverwrittenidentifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The bytecode counterpart of CallSequenceExplorer: records every call sequence that starts from a callback,
+ * following calls into the app's own methods with the same rules and the same tokens ("(external)",
+ * "(loop/cycle!)", "(stopped expansion)", "(depth limit reached)", "(empty method)"). Every call of a body is
+ * one sequence, after the branches it is under (see BytecodeMethod).
+ *
+ * The suffixes of a called body are summarized once per (method, remaining depth) and reused, under the same
+ * rule as MethodSummaryCache: a summary that saw a cycle label may only be reused under a chain that gives the
+ * same membership answers. Not thread-safe; one explorer per thread.
+ */
+public class BytecodeSequenceExplorer {
+
+    private static final int MAX_VARIANTS_PER_KEY = 8;
+
+    private final BytecodeClassIndex index;
+
+    private final SymbolTable symbols;
+
+    private final int maxDepth;
+
+    private final Map<Long, List<Summary>> summaries = new HashMap<>();
+
+    private static final class Summary {
+        private final List<int[]> suffixes;
+        private final Map<Integer, Boolean> assumptions;
+
+        private Summary(List<int[]> suffixes, Map<Integer, Boolean> assumptions) {
+            this.suffixes = suffixes;
+            this.assumptions = assumptions;
+        }
+    }
+
+    // the methods being expanded, by id, with the membership checks each summary in progress depends on
+    private static final class Chain {
+        private int[] methods = new int[16];
+        private int size = 0;
+        private final List<Integer> recordingBases = new ArrayList<>();
+        private final List<Map<Integer, Boolean>> recordings = new ArrayList<>();
+
+        private Chain(int root) {
+            push(root);
+        }
+
+        private void push(int method) {
+            if (size == methods.length) {
+                methods = Arrays.copyOf(methods, size * 2);
+            }
+            methods[size++] = method;
+        }
+
+        private void pop() {
+            size--;
+        }
+
+        private boolean contains(int method) {
+            boolean contains = indexOf(method) >= 0;
+            assume(method, contains);
+            return contains;
+        }
+
+        private int indexOf(int method) {
+            for (int i = size - 1; i >= 0; i--) {
+                if (methods[i] == method) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void startRecording() {
+            recordingBases.add(size);
+            recordings.add(new LinkedHashMap<>());
+        }
+
+        private Map<Integer, Boolean> stopRecording() {
+            recordingBases.remove(recordingBases.size() - 1);
+            return recordings.remove(recordings.size() - 1);
+        }
+
+        private boolean satisfies(Summary summary) {
+            for (Map.Entry<Integer, Boolean> assumption : summary.assumptions.entrySet()) {
+                if ((indexOf(assumption.getKey()) >= 0) != assumption.getValue()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void assumeAll(Summary summary) {
+            for (Map.Entry<Integer, Boolean> assumption : summary.assumptions.entrySet()) {
+                assume(assumption.getKey(), assumption.getValue());
+            }
+        }
+
+        // like CallChain.assume: a method pushed inside a recording is no assumption of that recording
+        private void assume(int method, boolean contains) {
+            int position = indexOf(method);
+            for (int r = recordings.size() - 1; r >= 0; r--) {
+                if (position >= recordingBases.get(r)) {
+                    return;
+                }
+                recordings.get(r).putIfAbsent(method, contains);
+            }
+        }
+    }
+
+    public BytecodeSequenceExplorer(BytecodeClassIndex index, SymbolTable symbols, int maxDepth) {
+        this.index = index;
+        this.symbols = symbols;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Explore a callback found by BytecodeClassIndex.findCallbacks, one call of its body at a time.
+     */
+    public void exploreCallback(BytecodeMethod callback, SequenceSink sequences) {
+        TokenPath path = new TokenPath(symbols);
+        path.push(callback.getName());
+        int root = path.mark();
+        for (BytecodeMethod.CallSite site : callback.getCallSites()) {
+            Chain chain = new Chain(callback.getId());
+            pushContext(site, path);
+            processCall(site, path, chain, 1, sequences);
+            path.reset(root);
+        }
+    }
+
+    private void processCall(BytecodeMethod.CallSite site,
+                             TokenPath path,
+                             Chain chain,
+                             int depth,
+                             SequenceSink sequences) {
+        BytecodeMethod resolved = index.resolve(site.getOwner(), site.getName(), site.getDescriptor());
+        boolean project = resolved != null && index.isProjectMethod(resolved);
+        String name = site.getName();
+        if (name.equals("<init>")) {
+            // constructors of the JDK and the SDK (every super() ends in Object) are left out
+            if (!project) {
+                return;
+            }
+            name = "new " + BytecodeClassIndex.className(site.getOwner());
+        }
+
+        path.push(" --> " + name);
+        if (!project) {
+            path.push(" (external)");
+            sequences.accept(path);
+            return;
+        }
+
+        if (chain.contains(resolved.getId())) {
+            path.push(" (loop/cycle!)");
+            if (depth < maxDepth) {
+                expandMethodBody(resolved, path, chain, depth, sequences);
+            } else {
+                emitWith(path, " (stopped expansion)", sequences);
+            }
+        } else {
+            expandMethodBody(resolved, path, chain, depth, sequences);
+        }
+    }
+
+    private void expandMethodBody(BytecodeMethod method,
+                                  TokenPath path,
+                                  Chain chain,
+                                  int depth,
+                                  SequenceSink sequences) {
+        if (depth >= maxDepth) {
+            emitWith(path, " --> (depth limit reached)", sequences);
+            return;
+        }
+
+        long key = ((long) method.getId() << 32) | (maxDepth - depth);
+        List<Summary> variants = summaries.computeIfAbsent(key, k -> new ArrayList<>());
+        Summary summary = null;
+        for (Summary variant : variants) {
+            if (chain.satisfies(variant)) {
+                summary = variant;
+                break;
+            }
+        }
+        if (summary == null) {
+            summary = summarizeMethodBody(method, path, chain, depth, sequences);
+            if (summary == null) {
+                return; // too many suffixes to keep, they already went to the sink
+            }
+            if (variants.size() < MAX_VARIANTS_PER_KEY) {
+                variants.add(summary);
+            }
+        } else {
+            chain.assumeAll(summary);
+        }
+
+        int mark = path.mark();
+        for (int[] suffix : summary.suffixes) {
+            path.pushAll(suffix);
+            sequences.accept(path);
+            path.reset(mark);
+        }
+    }
+
+    // null when there were too many suffixes to keep; they were sent to the sink while walking instead
+    private Summary summarizeMethodBody(BytecodeMethod method, TokenPath path, Chain chain, int depth,
+                                       SequenceSink sequences) {
+        int mark = path.mark();
+        SuffixCollector suffixCollector = new SuffixCollector(path, sequences);
+
+        chain.startRecording();
+        chain.push(method.getId());
+        try {
+            for (BytecodeMethod.CallSite site : method.getCallSites()) {
+                pushContext(site, path);
+                processCall(site, path, chain, depth + 1, suffixCollector);
+                path.reset(mark);
+            }
+            // no calls, or only the super() of a constructor
+            if (suffixCollector.getCount() == 0) {
+                emitWith(path, " --> (empty method)", suffixCollector);
+            }
+        } finally {
+            chain.pop();
+            path.reset(mark);
+        }
+        Map<Integer, Boolean> assumptions = chain.stopRecording();
+        return suffixCollector.isStreamed() ? null : new Summary(suffixCollector.getSuffixes(), assumptions);
+    }
+
+    private static void pushContext(BytecodeMethod.CallSite site, TokenPath path) {
+        for (String token : site.getContext()) {
+            path.push(token);
+        }
+    }
+
+    // emits the current path followed by one more token, without leaving the token on the path
+    private static void emitWith(TokenPath path, String token, SequenceSink sequences) {
+        int mark = path.mark();
+        path.push(token);
+        sequences.accept(path);
+        path.reset(mark);
+    }
+}
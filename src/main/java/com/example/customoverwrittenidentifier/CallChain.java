@@ -0,0 +1,203 @@
+package com.example.customoverwrittenidentifier;
+
+import com.intellij.psi.PsiMethod;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The methods that are currently being expanded, the most recent one first.
+ *
+ * While a method summary is being recorded, every membership check about a method that was pushed
+ * before the summary started is remembered, because the "(loop/cycle!)" labels inside the summary
+ * depend on it. A cached summary may only be reused under a chain that gives the same answers.
+ *
+ * A summary read back from disk knows its methods by key (see CallDependencies.keyOf) instead of by PsiMethod,
+ * so the assumptions it brings along are recorded and checked by key. A recording also collects the files whose
+ * method bodies it expanded, which is what decides whether it is still valid on disk, and the calls it expanded,
+ * so reusing it can record them in CallDependencies again.
+ *
+ * Each method also maps to where it was last pushed, counted from the bottom of the chain, so membership and
+ * "pushed since" checks are one lookup however deep the chain is.
+ */
+public class CallChain {
+
+    private final Deque<PsiMethod> methods = new ArrayDeque<>();
+
+    // the position of the most recent push of each method on the chain
+    private final Map<PsiMethod, Integer> lastPositions = new HashMap<>();
+
+    // for each method on the chain, the position its previous push had when it was pushed, or -1
+    private final Deque<Integer> previousPositions = new ArrayDeque<>();
+
+    private final Deque<Recording> recordings = new ArrayDeque<>();
+
+    public static class Recording {
+        private final int baseSize;
+        private final Map<PsiMethod, Boolean> assumptions = new LinkedHashMap<>();
+        private final Map<String, Boolean> keyedAssumptions = new LinkedHashMap<>();
+        private final Set<String> files = new HashSet<>();
+        private final Map<String, Set<String>> calls = new LinkedHashMap<>();
+
+        private Recording(int baseSize) {
+            this.baseSize = baseSize;
+        }
+
+        public Map<PsiMethod, Boolean> getAssumptions() {
+            return assumptions;
+        }
+
+        public Map<String, Boolean> getKeyedAssumptions() {
+            return keyedAssumptions;
+        }
+
+        public Set<String> getFiles() {
+            return files;
+        }
+
+        // callee keys by caller key
+        public Map<String, Set<String>> getCalls() {
+            return calls;
+        }
+    }
+
+    public CallChain(PsiMethod root) {
+        push(root);
+    }
+
+    public void push(PsiMethod method) {
+        Integer previous = lastPositions.put(method, methods.size());
+        previousPositions.push(previous == null ? -1 : previous);
+        methods.push(method);
+    }
+
+    public void pop() {
+        PsiMethod method = methods.pop();
+        int previous = previousPositions.pop();
+        if (previous < 0) {
+            lastPositions.remove(method);
+        } else {
+            lastPositions.put(method, previous);
+        }
+    }
+
+    // the method whose body is being walked
+    public PsiMethod current() {
+        return methods.peek();
+    }
+
+    public int size() {
+        return methods.size();
+    }
+
+    public boolean contains(PsiMethod method) {
+        boolean contains = lastPositions.containsKey(method);
+        assume(method, contains);
+        return contains;
+    }
+
+    // a summary about to be recorded will see the chain as it is now, plus the methods pushed while recording it.
+    public void startRecording() {
+        recordings.push(new Recording(methods.size()));
+    }
+
+    public Recording stopRecording() {
+        return recordings.pop();
+    }
+
+    // the body of a method of this file is being expanded into the recordings in progress
+    public void dependOnFile(String path) {
+        for (Recording recording : recordings) {
+            recording.files.add(path);
+        }
+    }
+
+    // a call was expanded into the recordings in progress
+    public void dependOnCall(String callerKey, String calleeKey) {
+        for (Recording recording : recordings) {
+            recording.calls.computeIfAbsent(callerKey, key -> new LinkedHashSet<>()).add(calleeKey);
+        }
+    }
+
+    // called when a cached summary is reused, so the recordings in progress inherit what it relied on.
+    public void assumeAll(MethodSummaryCache.MethodSummary summary) {
+        for (Map.Entry<PsiMethod, Boolean> assumption : summary.getChainAssumptions().entrySet()) {
+            assume(assumption.getKey(), assumption.getValue());
+        }
+        if (!summary.getKeyedAssumptions().isEmpty()) {
+            List<String> keys = keys();
+            for (Map.Entry<String, Boolean> assumption : summary.getKeyedAssumptions().entrySet()) {
+                assumeKey(keys, assumption.getKey(), assumption.getValue());
+            }
+        }
+        for (Recording recording : recordings) {
+            recording.files.addAll(summary.getFiles());
+            for (Map.Entry<String, Set<String>> calls : summary.getCalls().entrySet()) {
+                recording.calls.computeIfAbsent(calls.getKey(), key -> new LinkedHashSet<>()).addAll(calls.getValue());
+            }
+        }
+    }
+
+    public boolean satisfies(MethodSummaryCache.MethodSummary summary) {
+        for (Map.Entry<PsiMethod, Boolean> assumption : summary.getChainAssumptions().entrySet()) {
+            if (lastPositions.containsKey(assumption.getKey()) != assumption.getValue()) {
+                return false;
+            }
+        }
+        return summary.getKeyedAssumptions().isEmpty() || satisfiesKeys(summary.getKeyedAssumptions());
+    }
+
+    public boolean satisfiesKeys(Map<String, Boolean> keyedAssumptions) {
+        Collection<String> keys = new HashSet<>(keys());
+        for (Map.Entry<String, Boolean> assumption : keyedAssumptions.entrySet()) {
+            if (keys.contains(assumption.getKey()) != assumption.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the keys of the chain, the most recent method first like the chain itself
+    private List<String> keys() {
+        List<String> keys = new ArrayList<>(methods.size());
+        for (PsiMethod method : methods) {
+            keys.add(CallDependencies.keyOf(method));
+        }
+        return keys;
+    }
+
+    private void assumeKey(List<String> keys, String key, boolean contains) {
+        for (Recording recording : recordings) {
+            // keys.get(i) was pushed as method number (size - i), counted from the bottom of the chain
+            if (keys.subList(0, methods.size() - recording.baseSize).contains(key)) {
+                return;
+            }
+            recording.keyedAssumptions.putIfAbsent(key, contains);
+        }
+    }
+
+    private void assume(PsiMethod method, boolean contains) {
+        // recordings are visited from the innermost one; once the method was pushed inside a recording,
+        // it was pushed inside all the outer ones too and none of them depends on it.
+        for (Recording recording : recordings) {
+            if (isPushedSince(method, recording.baseSize)) {
+                return;
+            }
+            recording.assumptions.putIfAbsent(method, contains);
+        }
+    }
+
+    private boolean isPushedSince(PsiMethod method, int baseSize) {
+        Integer position = lastPositions.get(method);
+        return position != null && position >= baseSize;
+    }
+}
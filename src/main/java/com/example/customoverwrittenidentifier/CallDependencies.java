@@ -0,0 +1,89 @@
+package com.example.customoverwrittenidentifier;
+
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiMethod;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Which project methods each method's body expands, and the reverse: who expands a given method. The explorer
+ * records a call every time it expands a method body, so after a run the callers of a changed method lead
+ * back to every callback whose sequences went through it.
+ *
+ * Methods are identified by a key that survives reparsing (file, class, name and parameter list) instead of
+ * the PsiMethod. Anonymous and local classes have no name to go by, so their methods are told apart by where
+ * the class starts in the file.
+ */
+public class CallDependencies {
+
+    private final Map<String, Set<String>> callees = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<String>> callers = new ConcurrentHashMap<>();
+
+    public static String keyOf(PsiMethod method) {
+        PsiFile file = method.getContainingFile();
+        String path = file == null || file.getVirtualFile() == null ? "" : file.getVirtualFile().getPath();
+        PsiClass containingClass = method.getContainingClass();
+        String className;
+        if (containingClass == null) {
+            className = "";
+        } else if (containingClass.getQualifiedName() != null) {
+            className = containingClass.getQualifiedName();
+        } else {
+            String name = containingClass.getName() == null ? "(anonymous)" : containingClass.getName();
+            className = name + "@" + containingClass.getTextOffset();
+        }
+        return path + "#" + className + "." + method.getName() + method.getParameterList().getText();
+    }
+
+    public void recordCall(PsiMethod caller, PsiMethod callee) {
+        recordCall(keyOf(caller), keyOf(callee));
+    }
+
+    public void recordCall(String callerKey, String calleeKey) {
+        callees.computeIfAbsent(callerKey, key -> ConcurrentHashMap.newKeySet()).add(calleeKey);
+        callers.computeIfAbsent(calleeKey, key -> ConcurrentHashMap.newKeySet()).add(callerKey);
+    }
+
+    /**
+     * Forget what these methods call; their bodies changed, and exploring them again records the new calls.
+     */
+    public void removeCallsFrom(Collection<String> methods) {
+        for (String caller : methods) {
+            Set<String> removed = callees.remove(caller);
+            if (removed == null) {
+                continue;
+            }
+            for (String callee : removed) {
+                Set<String> calleeCallers = callers.get(callee);
+                if (calleeCallers != null) {
+                    calleeCallers.remove(caller);
+                }
+            }
+        }
+    }
+
+    /**
+     * The given methods and every method that reaches one of them through a chain of calls.
+     */
+    public Set<String> dependentsOf(Collection<String> methods) {
+        Set<String> dependents = new HashSet<>(methods);
+        Deque<String> pending = new ArrayDeque<>(methods);
+        while (!pending.isEmpty()) {
+            for (String caller : callers.getOrDefault(pending.pop(), Collections.emptySet())) {
+                if (dependents.add(caller)) {
+                    pending.push(caller);
+                }
+            }
+        }
+        return dependents;
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.customoverwrittenidentifier;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.DefaultFileTypeSpecificInputFilter;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileBasedIndexExtension;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The call structure of every Java file, kept up to date by the IDE as files change. For each file it maps
+ *
+ *   "@Override"     to the methods annotated with @Override (the callbacks),
+ *   "call:" + name  to the methods with a call to a method of that name in their body,
+ *   "def:" + name   to the methods of that name,
+ *
+ * each method given by its text offset. The index only sees one file at a time and cannot resolve anything,
+ * so it works with names: @Override is matched by its short or qualified name, and a call stands for every
+ * method of that name. Lookups turn the offsets back into PsiMethods and check them against the real PSI.
+ */
+public class CallGraphIndex extends FileBasedIndexExtension<String, List<Integer>> {
+
+    public static final ID<String, List<Integer>> NAME = ID.create("com.example.customoverwrittenidentifier.CallGraphIndex");
+
+    private static final String OVERRIDE_KEY = "@Override";
+
+    private static final String CALL_PREFIX = "call:";
+
+    private static final String DEFINITION_PREFIX = "def:";
+
+    @Override
+    public @NotNull ID<String, List<Integer>> getName() {
+        return NAME;
+    }
+
+    @Override
+    public @NotNull DataIndexer<String, List<Integer>, FileContent> getIndexer() {
+        return inputData -> {
+            Map<String, Set<Integer>> methodsByKey = new HashMap<>();
+            inputData.getPsiFile().accept(new JavaRecursiveElementWalkingVisitor() {
+                @Override
+                public void visitMethod(PsiMethod method) {
+                    super.visitMethod(method);
+                    add(DEFINITION_PREFIX + method.getName(), method);
+                    if (hasOverrideAnnotation(method)) {
+                        add(OVERRIDE_KEY, method);
+                    }
+                }
+
+                @Override
+                public void visitMethodCallExpression(PsiMethodCallExpression expression) {
+                    super.visitMethodCallExpression(expression);
+                    String callee = expression.getMethodExpression().getReferenceName();
+                    PsiMethod caller = PsiTreeUtil.getParentOfType(expression, PsiMethod.class);
+                    if (callee != null && caller != null) {
+                        add(CALL_PREFIX + callee, caller);
+                    }
+                }
+
+                private void add(String key, PsiMethod method) {
+                    methodsByKey.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(method.getTextOffset());
+                }
+            });
+            Map<String, List<Integer>> result = new HashMap<>();
+            for (Map.Entry<String, Set<Integer>> entry : methodsByKey.entrySet()) {
+                List<Integer> offsets = new ArrayList<>(entry.getValue());
+                Collections.sort(offsets);
+                result.put(entry.getKey(), offsets);
+            }
+            return result;
+        };
+    }
+
+    // by name only; resolving java.lang.Override is not allowed while indexing
+    private static boolean hasOverrideAnnotation(PsiMethod method) {
+        PsiModifierList modifiers = method.getModifierList();
+        if (modifiers == null) {
+            return false;
+        }
+        for (PsiAnnotation annotation : modifiers.getAnnotations()) {
+            PsiJavaCodeReferenceElement reference = annotation.getNameReferenceElement();
+            if (reference != null && "Override".equals(reference.getReferenceName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public @NotNull KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @Override
+    public @NotNull DataExternalizer<List<Integer>> getValueExternalizer() {
+        return new DataExternalizer<List<Integer>>() {
+            @Override
+            public void save(@NotNull DataOutput out, List<Integer> offsets) throws IOException {
+                // sorted offsets, stored as gaps
+                DataInputOutputUtil.writeINT(out, offsets.size());
+                int previous = 0;
+                for (int offset : offsets) {
+                    DataInputOutputUtil.writeINT(out, offset - previous);
+                    previous = offset;
+                }
+            }
+
+            @Override
+            public List<Integer> read(@NotNull DataInput in) throws IOException {
+                int size = DataInputOutputUtil.readINT(in);
+                List<Integer> offsets = new ArrayList<>(size);
+                int previous = 0;
+                for (int i = 0; i < size; i++) {
+                    previous += DataInputOutputUtil.readINT(in);
+                    offsets.add(previous);
+                }
+                return offsets;
+            }
+        };
+    }
+
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+
+    @Override
+    public @NotNull FileBasedIndex.InputFilter getInputFilter() {
+        return new DefaultFileTypeSpecificInputFilter(JavaFileType.INSTANCE);
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    /**
+     * The @Override methods of the scope, file by file in path order and in text order within a file. Needs
+     * a read action in smart mode.
+     */
+    public static List<PsiMethod> findOverriddenMethods(Project project, GlobalSearchScope scope) {
+        Map<String, PsiMethod> methods = new TreeMap<>();
+        PsiManager psiManager = PsiManager.getInstance(project);
+        FileBasedIndex.getInstance().processValues(NAME, OVERRIDE_KEY, null, (file, offsets) -> {
+            ProgressManager.checkCanceled();
+            PsiFile psiFile = psiManager.findFile(file);
+            for (int offset : offsets) {
+                PsiMethod method = methodAt(psiFile, offset);
+                if (method != null && method.getAnnotation("java.lang.Override") != null) {
+                    methods.put(String.format("%s#%010d", file.getPath(), offset), method);
+                }
+            }
+            return true;
+        }, scope);
+        return new ArrayList<>(methods.values());
+    }
+
+    /**
+     * The names of the methods the body of this method calls. Needs a read action in smart mode.
+     */
+    public static Set<String> getCalleeNames(PsiMethod method) {
+        PsiFile file = method.getContainingFile();
+        VirtualFile virtualFile = file == null ? null : file.getVirtualFile();
+        if (virtualFile == null) {
+            return Collections.emptySet();
+        }
+        int offset = method.getTextOffset();
+        Set<String> callees = new LinkedHashSet<>();
+        Map<String, List<Integer>> fileData = FileBasedIndex.getInstance().getFileData(NAME, virtualFile, method.getProject());
+        for (Map.Entry<String, List<Integer>> entry : fileData.entrySet()) {
+            if (entry.getKey().startsWith(CALL_PREFIX) && Collections.binarySearch(entry.getValue(), offset) >= 0) {
+                callees.add(entry.getKey().substring(CALL_PREFIX.length()));
+            }
+        }
+        return callees;
+    }
+
+    /**
+     * The names the methods of this name call, over every method of that name in the scope. Needs a read
+     * action in smart mode.
+     */
+    public static Set<String> getCalleeNames(Project project, String methodName, GlobalSearchScope scope) {
+        Set<String> callees = new LinkedHashSet<>();
+        FileBasedIndex.getInstance().processValues(NAME, DEFINITION_PREFIX + methodName, null, (file, offsets) -> {
+            Map<String, List<Integer>> fileData = FileBasedIndex.getInstance().getFileData(NAME, file, project);
+            for (Map.Entry<String, List<Integer>> entry : fileData.entrySet()) {
+                if (!entry.getKey().startsWith(CALL_PREFIX)) {
+                    continue;
+                }
+                for (int offset : offsets) {
+                    if (Collections.binarySearch(entry.getValue(), offset) >= 0) {
+                        callees.add(entry.getKey().substring(CALL_PREFIX.length()));
+                        break;
+                    }
+                }
+            }
+            return true;
+        }, scope);
+        return callees;
+    }
+
+    private static PsiMethod methodAt(PsiFile file, int offset) {
+        if (file == null) {
+            return null;
+        }
+        PsiElement element = file.findElementAt(offset);
+        return element == null ? null : PsiTreeUtil.getParentOfType(element, PsiMethod.class, false);
+    }
+}
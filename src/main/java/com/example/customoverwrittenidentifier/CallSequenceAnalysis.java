@@ -0,0 +1,132 @@
+package com.example.customoverwrittenidentifier;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiModificationTracker;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One run of the analysis: find the callbacks of the project, explore them on all cores and stream every
+ * sequence to the given sink. Must be called from a background thread.
+ */
+public class CallSequenceAnalysis {
+
+    private static final Logger LOG = Logger.getInstance(CallSequenceAnalysis.class);
+
+    private final Project project;
+
+    private final int maxDepth;
+
+    private final SequenceBudget budget;
+
+    public CallSequenceAnalysis(Project project) {
+        this(project, CallSequenceExplorer.MAX_DEPTH);
+    }
+
+    // with the budget of the project settings (see CcfgSettings)
+    public CallSequenceAnalysis(Project project, int maxDepth) {
+        this(project, maxDepth, CcfgSettings.getInstance(project).getBudget());
+    }
+
+    public CallSequenceAnalysis(Project project, int maxDepth, SequenceBudget budget) {
+        this.project = project;
+        this.maxDepth = maxDepth;
+        this.budget = budget;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public void run(ProgressIndicator indicator, SequenceSink sink) {
+        List<SmartPsiElementPointer<PsiMethod>> overriddenMethods = collectCallbacks(indicator);
+
+        SymbolTable symbols = new SymbolTable();
+        boolean graphEngine = CcfgSettings.getInstance(project).isGraphEngine();
+        // the graph does not use the method summaries, so their store stays closed
+        PersistentSummaryStore diskSummaries = graphEngine ? null : PersistentSummaryStore.openOrNull(project, symbols);
+        try {
+            MethodSummaryCache summaryCache = new MethodSummaryCache(
+                    PsiModificationTracker.getInstance(project), diskSummaries);
+            CallSequenceExplorer explorer = new CallSequenceExplorer(
+                    project.getBasePath(), symbols, summaryCache, new CallDependencies(), maxDepth);
+            new ParallelSequenceEngine(project, explorer, ParallelSequenceEngine.defaultParallelism(), graphEngine, budget)
+                    .explore(overriddenMethods, indicator, sink);
+            LOG.info(explorer.getResolutionCache().toString());
+        } finally {
+            if (diskSummaries != null) {
+                diskSummaries.close();
+            }
+        }
+    }
+
+    /**
+     * Count the sequences of every callback without enumerating them. Callbacks reported under the same name
+     * are added up, like CountingSequenceSink does.
+     */
+    public Map<String, SequenceCount> countSequences(ProgressIndicator indicator) {
+        List<SmartPsiElementPointer<PsiMethod>> overriddenMethods = collectCallbacks(indicator);
+        SequenceCounter counter = new SequenceCounter(
+                project.getBasePath(), PsiModificationTracker.getInstance(project), maxDepth);
+
+        Map<String, SequenceCount> counts = new LinkedHashMap<>();
+        indicator.setIndeterminate(false);
+        for (int i = 0; i < overriddenMethods.size(); i++) {
+            indicator.checkCanceled();
+            indicator.setText("Counting sequences (" + i + "/" + overriddenMethods.size() + ")");
+            SmartPsiElementPointer<PsiMethod> pointer = overriddenMethods.get(i);
+            Map.Entry<String, SequenceCount> callbackCount = ReadAction
+                    .nonBlocking(() -> {
+                        PsiMethod method = pointer.getElement();
+                        if (method == null) {
+                            return null;
+                        }
+                        SequenceCount count = counter.countOverriddenMethod(method);
+                        return count.isZero() ? null : Map.entry(CallSequenceExplorer.callbackName(method), count);
+                    })
+                    .inSmartMode(project)
+                    .wrapProgress(indicator)
+                    .executeSynchronously();
+            if (callbackCount != null) {
+                counts.merge(callbackCount.getKey(), callbackCount.getValue(), SequenceCount::plus);
+            }
+            indicator.setFraction((double) (i + 1) / overriddenMethods.size());
+        }
+        return counts;
+    }
+
+    List<SmartPsiElementPointer<PsiMethod>> collectCallbacks(ProgressIndicator indicator) {
+        return collectCallbacks(indicator, GlobalSearchScope.projectScope(project));
+    }
+
+    List<SmartPsiElementPointer<PsiMethod>> collectCallbacks(ProgressIndicator indicator, GlobalSearchScope scope) {
+        indicator.setIndeterminate(true);
+        indicator.setText("Collecting overridden methods");
+        return ReadAction
+                .nonBlocking(() -> findOverriddenMethods(scope))
+                .inSmartMode(project)
+                .wrapProgress(indicator)
+                .executeSynchronously();
+    }
+
+    /**
+     * Collect pointers to the callbacks of the EntryPointRegistry, so they survive PSI changes between read
+     * actions.
+     */
+    private List<SmartPsiElementPointer<PsiMethod>> findOverriddenMethods(GlobalSearchScope scope) {
+        List<SmartPsiElementPointer<PsiMethod>> overriddenMethods = new ArrayList<>();
+        SmartPointerManager pointerManager = SmartPointerManager.getInstance(project);
+        for (PsiMethod method : EntryPointRegistry.getInstance(project).findCallbacks(scope)) {
+            overriddenMethods.add(pointerManager.createSmartPsiElementPointer(method));
+        }
+        return overriddenMethods;
+    }
+}
@@ -0,0 +1,698 @@
+package com.example.customoverwrittenidentifier;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+
+/**
+ * Walks the PSI of an @Override method and records every call sequence that starts from it.
+ * Apart from the shared symbol table and summary cache the explorer keeps no state between calls, so one
+ * instance can be shared by several worker threads.
+ *
+ * The path is one token stack per callback. Where a branch used to work on a copy of the path it now takes a
+ * mark and resets to it afterwards; where the path used to be handed down as it is, the tokens pushed below stay
+ * on it, exactly like the appended text did.
+ */
+public class CallSequenceExplorer {
+
+    // Maximum expansion depth to avoid infinite loops or recursion, unless another one is given
+    static final int MAX_DEPTH = 10;
+
+    private final int maxDepth;
+
+    private final SymbolTable symbols;
+
+    private final MethodSummaryCache summaryCache;
+
+    private final CallDependencies dependencies;
+
+    private final CallSiteResolutionCache resolutionCache;
+
+    private final MethodIrCache irCache;
+
+    public CallSequenceExplorer(String basePath,
+                                SymbolTable symbols,
+                                MethodSummaryCache summaryCache,
+                                CallDependencies dependencies) {
+        this(basePath, symbols, summaryCache, dependencies, MAX_DEPTH);
+    }
+
+    public CallSequenceExplorer(String basePath,
+                                SymbolTable symbols,
+                                MethodSummaryCache summaryCache,
+                                CallDependencies dependencies,
+                                int maxDepth) {
+        this.symbols = symbols;
+        this.summaryCache = summaryCache;
+        this.dependencies = dependencies;
+        this.maxDepth = maxDepth;
+        this.resolutionCache = new CallSiteResolutionCache(basePath, summaryCache::currentModificationCount);
+        this.irCache = new MethodIrCache(symbols, resolutionCache, summaryCache::currentModificationCount);
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    public CallDependencies getDependencies() {
+        return dependencies;
+    }
+
+    public CallSiteResolutionCache getResolutionCache() {
+        return resolutionCache;
+    }
+
+    public MethodIrCache getIrCache() {
+        return irCache;
+    }
+
+    /**
+     * The name a callback is reported under, e.g. "MainActivity.onCreate".
+     */
+    public static String callbackName(PsiMethod method) {
+        PsiClass containingClass = method.getContainingClass();
+        String className = containingClass == null || containingClass.getName() == null
+                ? "(anonymous)"
+                : containingClass.getName();
+        return className + "." + method.getName();
+    }
+
+    /**
+     * Explore an @Override method, retrieving all possible paths (as token paths).
+     */
+    public void exploreOverriddenMethod(PsiMethod psiMethod,
+                                        SequenceSink sequences) {
+
+        // Check if the method is within the project's base path
+        if (!resolutionCache.isInProject(psiMethod)) {
+            return;
+        }
+
+        // If it's annotated with @Override, proceed
+        if (psiMethod.getAnnotation("java.lang.Override") == null) {
+            return;
+        }
+
+        PsiCodeBlock body = psiMethod.getBody();
+        if (body == null) {
+            return;
+        }
+
+        TokenPath path = new TokenPath(symbols);
+        path.push(psiMethod.getName());
+        int root = path.mark();
+
+        // For every top-level statement in the method's body, explore
+        for (PsiStatement statement : body.getStatements()) {
+            CallChain callChain = new CallChain(psiMethod);
+
+            exploreStatement(statement,
+                    path,
+                    callChain,
+                    1, // starting depth
+                    false, // not initially in a loop
+                    sequences);
+            path.reset(root);
+        }
+    }
+
+    /**
+     * Recursively analyze a given statement, building paths on the token stack.
+     */
+    private void exploreStatement(PsiStatement statement,
+                                  TokenPath path,
+                                  CallChain callChain,
+                                  int depth,
+                                  boolean inLoop,
+                                  SequenceSink sequences) {
+        ProgressManager.checkCanceled();
+
+        // If we exceed the maximum depth, stop further expansions
+        if (depth > maxDepth) {
+            emitWith(path, " --> (depth limit reached)", sequences);
+            return;
+        }
+        if (statement == null) {
+            return;
+        }
+
+        String statementType = getStatementType(statement);
+
+        switch (statementType) {
+            case "If":
+                processIfStatement((PsiIfStatement) statement,
+                        path,
+                        callChain,
+                        depth,
+                        inLoop,
+                        sequences);
+                break;
+            case "For":
+                processForStatement((PsiForStatement) statement,
+                        path,
+                        callChain,
+                        depth,
+                        sequences);
+                break;
+            case "While":
+                processWhileStatement((PsiWhileStatement) statement,
+                        path,
+                        callChain,
+                        depth,
+                        sequences);
+                break;
+            case "Do While":
+                processDoWhileStatement((PsiDoWhileStatement) statement,
+                        path,
+                        callChain,
+                        depth,
+                        sequences);
+                break;
+            case "Switch":
+                processSwitchStatement((PsiSwitchStatement) statement,
+                        path,
+                        callChain,
+                        depth,
+                        sequences);
+                break;
+            case "Try":
+                processTryStatement((PsiTryStatement) statement,
+                        path,
+                        callChain,
+                        depth,
+                        inLoop,
+                        sequences);
+                break;
+            case "Break":
+                path.push(" --> Break");
+                sequences.accept(path);
+                break;
+            case "Continue":
+                path.push(" --> Continue");
+                sequences.accept(path);
+                break;
+            case "MethodCall":
+                processMethodCall((PsiExpressionStatement) statement,
+                        path,
+                        callChain,
+                        depth,
+                        inLoop,
+                        sequences);
+                break;
+            case "Declaration":
+                processDeclarationStatement((PsiDeclarationStatement) statement,
+                        path,
+                        sequences);
+                break;
+            case "Assignment":
+                processAssignmentStatement((PsiExpressionStatement) statement,
+                        path,
+                        callChain,
+                        depth,
+                        inLoop,
+                        sequences);
+                break;
+            case "IncrementDecrement":
+                path.push(" --> [Increment/Decrement: " + statement.getText() + "]");
+                sequences.accept(path);
+                break;
+            default:
+                // Possibly a block statement or truly unrecognized
+                if (statement instanceof PsiBlockStatement) {
+                    PsiBlockStatement block = (PsiBlockStatement) statement;
+                    int mark = path.mark();
+                    for (PsiStatement inner : block.getCodeBlock().getStatements()) {
+                        exploreStatement(inner, path, callChain, depth, inLoop, sequences);
+                        path.reset(mark);
+                    }
+                } else {
+                    // Generic/unknown statement => just record it
+                    emitWith(path, " --> [Unidentified Statement]", sequences);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Identify the statement type, with extra checks for increments, assignments, etc.
+     */
+    static String getStatementType(PsiStatement statement) {
+        if (statement instanceof PsiIfStatement) {
+            return "If";
+        }
+        else if (statement instanceof PsiForStatement) {
+            return "For";
+        }
+        else if (statement instanceof PsiWhileStatement) {
+            return "While";
+        }
+        else if (statement instanceof PsiDoWhileStatement) {
+            return "Do While";
+        }
+        else if (statement instanceof PsiSwitchStatement) {
+            return "Switch";
+        }
+        else if (statement instanceof PsiTryStatement) {
+            return "Try";
+        }
+        else if (statement instanceof PsiBreakStatement) {
+            return "Break";
+        }
+        else if (statement instanceof PsiContinueStatement) {
+            return "Continue";
+        }
+        else if (statement instanceof PsiExpressionStatement) {
+            // Check expression details
+            PsiExpression expr = ((PsiExpressionStatement) statement).getExpression();
+            if (expr instanceof PsiMethodCallExpression) {
+                return "MethodCall";
+            }
+            // new: check if it's an assignment
+            else if (expr instanceof PsiAssignmentExpression) {
+                return "Assignment";
+            }
+            // check if it's increment/decrement
+            else if (expr instanceof PsiPostfixExpression ||
+                    expr instanceof PsiPrefixExpression) {
+                // e.g. count++, ++count, count--
+                return "IncrementDecrement";
+            }
+        }
+        else if (statement instanceof PsiDeclarationStatement) {
+            return "Declaration";
+        }
+        return "Not identified";
+    }
+
+    /* ========== PROCESSING METHODS ========== */
+
+    private void processIfStatement(PsiIfStatement ifStmt,
+                                    TokenPath path,
+                                    CallChain callChain,
+                                    int depth,
+                                    boolean inLoop,
+                                    SequenceSink sequences) {
+        int mark = path.mark();
+        PsiExpression condition = ifStmt.getCondition();
+        String conditionText = (condition == null) ? "If (?)" : ("If (" + condition.getText() + ")");
+
+        // Then branch
+        PsiStatement thenBranch = ifStmt.getThenBranch();
+        if (thenBranch != null) {
+            path.push(" --> " + conditionText);
+            exploreSubStatements(thenBranch, path, callChain, depth, inLoop, sequences);
+            path.reset(mark);
+        }
+
+        // Else branch
+        PsiStatement elseBranch = ifStmt.getElseBranch();
+        if (elseBranch != null) {
+            if (elseBranch instanceof PsiIfStatement) {
+                path.push(" --> ElseIf");
+                processIfStatement((PsiIfStatement) elseBranch,
+                        path,
+                        callChain,
+                        depth,
+                        inLoop,
+                        sequences);
+            } else {
+                path.push(" --> Else");
+                exploreSubStatements(elseBranch, path, callChain, depth, inLoop, sequences);
+            }
+            path.reset(mark);
+        }
+    }
+
+    private void processForStatement(PsiForStatement forStmt,
+                                     TokenPath path,
+                                     CallChain callChain,
+                                     int depth,
+                                     SequenceSink sequences) {
+        int mark = path.mark();
+        PsiExpression condition = forStmt.getCondition();
+        String conditionText = (condition == null) ? "For (?)" : ("For (" + condition.getText() + ")");
+        path.push(" --> " + conditionText);
+
+        PsiStatement body = forStmt.getBody();
+        if (body != null) {
+            exploreSubStatements(body, path, callChain, depth, true, sequences);
+        }
+        emitWith(path, " --> (exit for)", sequences);
+        path.reset(mark);
+    }
+
+    private void processWhileStatement(PsiWhileStatement whileStmt,
+                                       TokenPath path,
+                                       CallChain callChain,
+                                       int depth,
+                                       SequenceSink sequences) {
+        int mark = path.mark();
+        PsiExpression condition = whileStmt.getCondition();
+        String conditionText = (condition == null) ? "While (?)" : ("While (" + condition.getText() + ")");
+        path.push(" --> " + conditionText);
+
+        PsiStatement body = whileStmt.getBody();
+        if (body != null) {
+            exploreSubStatements(body, path, callChain, depth, true, sequences);
+        }
+        emitWith(path, " --> (exit while)", sequences);
+        path.reset(mark);
+    }
+
+    private void processDoWhileStatement(PsiDoWhileStatement doWhileStmt,
+                                         TokenPath path,
+                                         CallChain callChain,
+                                         int depth,
+                                         SequenceSink sequences) {
+        int mark = path.mark();
+        path.push(" --> Do");
+        PsiStatement body = doWhileStmt.getBody();
+        if (body != null) {
+            exploreSubStatements(body, path, callChain, depth, true, sequences);
+        }
+
+        PsiExpression condition = doWhileStmt.getCondition();
+        String condText = (condition == null) ? "(?)" : condition.getText();
+        path.push(" --> While(" + condText + ")");
+        emitWith(path, " --> (exit do-while)", sequences);
+        path.reset(mark);
+    }
+
+    private void processSwitchStatement(PsiSwitchStatement switchStmt,
+                                        TokenPath path,
+                                        CallChain callChain,
+                                        int depth,
+                                        SequenceSink sequences) {
+        int mark = path.mark();
+        path.push(" --> Switch");
+        PsiCodeBlock body = switchStmt.getBody();
+        if (body == null) {
+            emitWith(path, " --> (empty switch)", sequences);
+            path.reset(mark);
+            return;
+        }
+
+        for (PsiStatement st : body.getStatements()) {
+            if (st instanceof PsiSwitchLabelStatement) {
+                PsiSwitchLabelStatement labelStmt = (PsiSwitchLabelStatement) st;
+                if (labelStmt.isDefaultCase()) {
+                    path.push(" --> [default]");
+                } else {
+                    PsiCaseLabelElementList labelList = labelStmt.getCaseLabelElementList();
+                    if (labelList != null) {
+                        StringBuilder labels = new StringBuilder();
+                        for (PsiCaseLabelElement elem : labelList.getElements()) {
+                            if (labels.length() > 0) labels.append("|");
+                            labels.append(elem.getText());
+                        }
+                        path.push(" --> [case: " + labels + "]");
+                    }
+                }
+            } else {
+                int labelsMark = path.mark();
+                exploreStatement(st, path, callChain, depth, false, sequences);
+                path.reset(labelsMark);
+            }
+        }
+        emitWith(path, " --> (exit switch)", sequences);
+        path.reset(mark);
+    }
+
+    private void processTryStatement(PsiTryStatement tryStmt,
+                                     TokenPath path,
+                                     CallChain callChain,
+                                     int depth,
+                                     boolean inLoop,
+                                     SequenceSink sequences) {
+        int mark = path.mark();
+        PsiCodeBlock tryBlock = tryStmt.getTryBlock();
+        if (tryBlock != null) {
+            path.push(" --> TryBlock");
+            exploreBlockStatements(tryBlock, path, callChain, depth, inLoop, sequences);
+            path.reset(mark);
+        }
+
+        // Catch sections
+        for (PsiCatchSection c : tryStmt.getCatchSections()) {
+            PsiParameter param = c.getParameter();
+            path.push(param != null ? " --> Catch(" + param.getType().getCanonicalText() + ")" : " --> Catch()");
+
+            PsiCodeBlock catchBlock = c.getCatchBlock();
+            if (catchBlock != null) {
+                exploreBlockStatements(catchBlock, path, callChain, depth, inLoop, sequences);
+            }
+            path.reset(mark);
+        }
+
+        // Finally block
+        PsiCodeBlock finallyBlock = tryStmt.getFinallyBlock();
+        if (finallyBlock != null) {
+            path.push(" --> Finally");
+            exploreBlockStatements(finallyBlock, path, callChain, depth, inLoop, sequences);
+            path.reset(mark);
+        }
+        emitWith(path, " --> (end try)", sequences);
+    }
+
+    /** Process a method call, handling recursion or multi-function cycles. */
+    private void processMethodCall(PsiExpressionStatement exprStmt,
+                                   TokenPath path,
+                                   CallChain callChain,
+                                   int depth,
+                                   boolean inLoop,
+                                   SequenceSink sequences) {
+        PsiMethodCallExpression callExpr = (PsiMethodCallExpression) exprStmt.getExpression();
+        CallSiteResolutionCache.Resolution resolution = resolutionCache.resolve(callExpr);
+        PsiMethod resolved = resolution.getTarget();
+        if (resolved == null) {
+            path.push(" --> [UnresolvedCall]");
+            sequences.accept(path);
+            return;
+        }
+
+        // If not in same project path, just record
+        path.push(" --> " + resolved.getName());
+        if (!resolution.isInProject()) {
+            path.push(" (external)");
+            sequences.accept(path);
+            return;
+        }
+
+        // Check for recursion or multi-method cycle
+        if (callChain.contains(resolved)) {
+            path.push(" (loop/cycle!)");
+            if (depth < maxDepth) {
+                expandMethodBody(resolved, path, callChain, depth, inLoop, sequences);
+            } else {
+                emitWith(path, " (stopped expansion)", sequences);
+            }
+        } else {
+            expandMethodBody(resolved, path, callChain, depth, inLoop, sequences);
+        }
+    }
+
+    /** Process an assignment statement. If RHS is a method call, we expand it similarly to a method call. */
+    private void processAssignmentStatement(PsiExpressionStatement exprStmt,
+                                            TokenPath path,
+                                            CallChain callChain,
+                                            int depth,
+                                            boolean inLoop,
+                                            SequenceSink sequences) {
+
+        PsiExpression expr = exprStmt.getExpression();
+        if (!(expr instanceof PsiAssignmentExpression)) {
+            emitWith(path, " --> [Assignment: " + exprStmt.getText() + "]", sequences);
+            return;
+        }
+
+        PsiAssignmentExpression assignExpr = (PsiAssignmentExpression) expr;
+        PsiExpression rhs = assignExpr.getRExpression();
+
+        // If the RHS is a method call, we can treat it similarly to a normal method call
+        if (rhs instanceof PsiMethodCallExpression) {
+            path.push(" --> [Assignment with MethodCall: " + assignExpr.getLExpression().getText() + " = ");
+
+            PsiMethodCallExpression callExpr = (PsiMethodCallExpression) rhs;
+            CallSiteResolutionCache.Resolution resolution = resolutionCache.resolve(callExpr);
+            PsiMethod resolved = resolution.getTarget();
+            if (resolved == null) {
+                path.push("[UnresolvedCall]]");
+                sequences.accept(path);
+                return;
+            }
+
+            path.push(resolved.getName() + "]");
+            // Now expand the method if it's in the same project
+            if (!resolution.isInProject()) {
+                // external method
+                emitWith(path, " (external assignment)", sequences);
+                return;
+            }
+
+            // Check recursion
+            if (callChain.contains(resolved)) {
+                path.push("(loop/cycle!)");
+                if (depth < maxDepth) {
+                    expandMethodBody(resolved, path, callChain, depth, inLoop, sequences);
+                } else {
+                    emitWith(path, " (stopped expansion)", sequences);
+                }
+            } else {
+                expandMethodBody(resolved, path, callChain, depth, inLoop, sequences);
+            }
+        } else {
+            // Just a normal assignment with no method call on RHS
+            path.push(" --> [Assignment: " + exprStmt.getText() + "]");
+            sequences.accept(path);
+        }
+    }
+
+    /**
+     * Expand the body of a called method, respecting depth limit. The suffixes of the body come from the
+     * summary cache when possible and are pushed on top of the current path one by one.
+     */
+    private void expandMethodBody(PsiMethod method,
+                                  TokenPath path,
+                                  CallChain callChain,
+                                  int depth,
+                                  boolean inLoop,
+                                  SequenceSink sequences) {
+        ProgressManager.checkCanceled();
+        if (depth >= maxDepth) {
+            emitWith(path, " --> (depth limit reached)", sequences);
+            return;
+        }
+        String callerKey = CallDependencies.keyOf(callChain.current());
+        String calleeKey = CallDependencies.keyOf(method);
+        dependencies.recordCall(callerKey, calleeKey);
+        callChain.dependOnCall(callerKey, calleeKey);
+
+        int remainingDepth = maxDepth - depth;
+        MethodSummaryCache.MethodSummary summary = summaryCache.find(method, remainingDepth, inLoop, callChain);
+        if (summary == null) {
+            summary = summarizeMethodBody(method, path, callChain, depth, inLoop, sequences);
+            if (summary == null) {
+                return; // too many suffixes to keep, they already went to the sink
+            }
+            summaryCache.store(method, remainingDepth, inLoop, summary);
+        } else {
+            // the body is not walked, so the calls inside it are recorded from the summary; after a restart a
+            // summary from disk is the only place they are known from
+            callChain.assumeAll(summary);
+            for (Map.Entry<String, Set<String>> calls : summary.getCalls().entrySet()) {
+                for (String callee : calls.getValue()) {
+                    dependencies.recordCall(calls.getKey(), callee);
+                }
+            }
+        }
+
+        int mark = path.mark();
+        for (int[] suffix : summary.getSuffixes()) {
+            path.pushAll(suffix);
+            sequences.accept(path);
+            path.reset(mark);
+        }
+    }
+
+    /**
+     * Walk the body of a called method once, on top of the current path, collecting the tokens it adds. Returns
+     * null when there were too many suffixes to keep; they were sent to the sink while walking instead.
+     */
+    private @Nullable MethodSummaryCache.MethodSummary summarizeMethodBody(PsiMethod method,
+                                                                          TokenPath path,
+                                                                          CallChain callChain,
+                                                                          int depth,
+                                                                          boolean inLoop,
+                                                                          SequenceSink sequences) {
+        long modificationCount = summaryCache.currentModificationCount();
+        int mark = path.mark();
+        SuffixCollector suffixCollector = new SuffixCollector(path, sequences);
+
+        callChain.startRecording();
+        callChain.dependOnFile(method.getContainingFile().getVirtualFile().getPath());
+        callChain.push(method);
+        try {
+            PsiCodeBlock body = method.getBody();
+            if (body == null || body.getStatements().length == 0) {
+                emitWith(path, " --> (empty method)", suffixCollector);
+            } else {
+                exploreBlockStatements(body, path, callChain, depth + 1, inLoop, suffixCollector);
+            }
+        } finally {
+            callChain.pop();
+            path.reset(mark);
+        }
+        CallChain.Recording recording = callChain.stopRecording();
+        return suffixCollector.isStreamed() ? null
+                : new MethodSummaryCache.MethodSummary(suffixCollector.getSuffixes(), recording, modificationCount);
+    }
+
+    /** Handle local variable declarations. */
+    private void processDeclarationStatement(PsiDeclarationStatement decl,
+                                             TokenPath path,
+                                             SequenceSink sequences) {
+        for (PsiElement element : decl.getDeclaredElements()) {
+            if (element instanceof PsiVariable) {
+                PsiVariable var = (PsiVariable) element;
+                PsiExpression initializer = var.getInitializer();
+                if (initializer instanceof PsiMethodCallExpression) {
+                    PsiMethodCallExpression callExpr = (PsiMethodCallExpression) initializer;
+                    String name = callExpr.getMethodExpression().getReferenceName();
+                    emitWith(path, " --> [VarInitCall: " + name + "]", sequences);
+                } else {
+                    // Just a normal declaration
+                    emitWith(path, " --> [Declaration: " + decl.getText() + "]", sequences);
+                }
+            }
+        }
+    }
+
+    /**
+     * Explore sub-statements if it's a block, else just single statement.
+     */
+    private void exploreSubStatements(PsiStatement statement,
+                                      TokenPath path,
+                                      CallChain callChain,
+                                      int depth,
+                                      boolean inLoop,
+                                      SequenceSink sequences) {
+        if (statement instanceof PsiBlockStatement) {
+            PsiBlockStatement block = (PsiBlockStatement) statement;
+            exploreBlockStatements(block.getCodeBlock(), path, callChain, depth, inLoop, sequences);
+        } else {
+            // a single statement keeps what it pushes, the caller resets the path
+            exploreStatement(statement, path, callChain, depth, inLoop, sequences);
+        }
+    }
+
+    /**
+     * Explore every statement of a block from the same path.
+     */
+    private void exploreBlockStatements(PsiCodeBlock block,
+                                        TokenPath path,
+                                        CallChain callChain,
+                                        int depth,
+                                        boolean inLoop,
+                                        SequenceSink sequences) {
+        int mark = path.mark();
+        for (PsiStatement st : block.getStatements()) {
+            exploreStatement(st, path, callChain, depth, inLoop, sequences);
+            path.reset(mark);
+        }
+    }
+
+    // emits the current path followed by one more token, without leaving the token on the path
+    private void emitWith(TokenPath path, String token, SequenceSink sequences) {
+        int mark = path.mark();
+        path.push(token);
+        sequences.accept(path);
+        path.reset(mark);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.customoverwrittenidentifier;
+
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiMethodCallExpression;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What every call expression resolves to, and whether the target is in the project, for one run. A call site
+ * is reached along every path that goes through its method, so without this the same resolve() and the same
+ * path prefix check are repeated for each of those paths.
+ *
+ * Shared by the worker threads of a run. Like MethodSummaryCache, everything is dropped as soon as the PSI
+ * changes, since a changed file can make an unchanged call resolve elsewhere.
+ */
+public class CallSiteResolutionCache {
+
+    /**
+     * The target of a call site; the target is null when the call does not resolve.
+     */
+    public static final class Resolution {
+        private final PsiMethod target;
+        private final boolean inProject;
+
+        private Resolution(@Nullable PsiMethod target, boolean inProject) {
+            this.target = target;
+            this.inProject = inProject;
+        }
+
+        @Nullable
+        public PsiMethod getTarget() {
+            return target;
+        }
+
+        public boolean isInProject() {
+            return inProject;
+        }
+    }
+
+    private static final Resolution UNRESOLVED = new Resolution(null, false);
+
+    private final String basePath;
+
+    private final ModificationTracker modificationTracker;
+
+    private final Map<PsiMethodCallExpression, Resolution> resolutions = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private volatile long modificationCount;
+
+    public CallSiteResolutionCache(String basePath, ModificationTracker modificationTracker) {
+        this.basePath = basePath;
+        this.modificationTracker = modificationTracker;
+        this.modificationCount = modificationTracker.getModificationCount();
+    }
+
+    public Resolution resolve(PsiMethodCallExpression callExpr) {
+        dropIfOutdated();
+        Resolution resolution = resolutions.get(callExpr);
+        if (resolution != null) {
+            hits.increment();
+            return resolution;
+        }
+        misses.increment();
+        PsiMethod target = callExpr.resolveMethod();
+        resolution = target == null ? UNRESOLVED : new Resolution(target, isInProject(target));
+        // two threads may resolve the same call at once; both get the same answer, the first one is kept
+        Resolution raced = resolutions.putIfAbsent(callExpr, resolution);
+        return raced == null ? resolution : raced;
+    }
+
+    public boolean isInProject(PsiMethod method) {
+        PsiFile containingFile = method.getContainingFile();
+        return containingFile != null
+                && containingFile.getVirtualFile() != null
+                && containingFile.getVirtualFile().getPath().startsWith(basePath);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private void dropIfOutdated() {
+        long current = modificationTracker.getModificationCount();
+        if (current != modificationCount) {
+            resolutions.clear();
+            modificationCount = current;
+        }
+    }
+
+    @Override
+    public String toString() {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        return "call site resolutions: " + total + " lookups, " + hitCount + " hits ("
+                + (total == 0 ? 0 : hitCount * 100 / total) + "%), " + resolutions.size() + " call sites";
+    }
+}
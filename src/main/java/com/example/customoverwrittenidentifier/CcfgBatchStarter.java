@@ -0,0 +1,261 @@
+package com.example.customoverwrittenidentifier;
+
+import com.intellij.ide.impl.ProjectUtil;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ApplicationStarter;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs the analysis without the UI, for batch jobs on a build agent:
+ *
+ *   idea ccfg [--depth=N] [--sink=text|binary|count] [--budget-ms=N] [--budget-sequences=N] [--budget-bytes=N]
+ *             [--dedup] [--output=DIR] PROJECT_DIR...
+ *
+ * Every project is opened, explored with the same engine as Build the CCFG, written to the output directory
+ * (PROJECT.txt with one sequence per line, PROJECT.ccfgseq in the format of BinarySequenceSink, or
+ * PROJECT.counts.txt with the count of every callback) and closed again. The projects must already be set up
+ * so that they open without a Gradle sync. The IDE is started only once for all the projects, and the run ends
+ * with how many projects per hour it got through.
+ *
+ * The budgets hold per callback (see SequenceBudget): a callback that would not fit is explored less deep than
+ * the depth, or cut off, instead of holding up the whole batch. Without any --budget option a project runs with
+ * the budget of its settings (see CcfgSettings); with one, the limits not given are off. With --dedup every
+ * distinct sequence of a project is written once (see DeduplicatingSequenceSink).
+ */
+public class CcfgBatchStarter implements ApplicationStarter {
+
+    private static final Logger LOG = Logger.getInstance(CcfgBatchStarter.class);
+
+    private static final String COMMAND = "ccfg";
+
+    private int maxDepth = CallSequenceExplorer.MAX_DEPTH;
+
+    private String sink = "text";
+
+    private long budgetMillis = 0;
+
+    private long budgetSequences = 0;
+
+    private long budgetBytes = 0;
+
+    private boolean budgetGiven = false;
+
+    private boolean dedup = false;
+
+    private Path outputDirectory = Paths.get(".");
+
+    private final List<Path> projectDirectories = new ArrayList<>();
+
+    @Override
+    public String getCommandName() {
+        return COMMAND;
+    }
+
+    // the run blocks on read actions and futures, which must not happen on the EDT
+    @Override
+    public int getRequiredModality() {
+        return NOT_IN_EDT;
+    }
+
+    @Override
+    public void main(@NotNull List<String> args) {
+        int exitCode;
+        try {
+            exitCode = parseArguments(args) ? analyzeAll() : 2;
+        } catch (Throwable e) {
+            LOG.error("The batch run failed", e);
+            System.err.println("The batch run failed: " + e);
+            exitCode = 1;
+        }
+        System.exit(exitCode);
+    }
+
+    private boolean parseArguments(List<String> args) {
+        // the first argument is the command name itself
+        for (String arg : args.subList(1, args.size())) {
+            try {
+                if (arg.startsWith("--depth=")) {
+                    maxDepth = Integer.parseInt(arg.substring("--depth=".length()));
+                } else if (arg.startsWith("--sink=")) {
+                    sink = arg.substring("--sink=".length());
+                } else if (arg.startsWith("--budget-ms=")) {
+                    budgetMillis = Long.parseLong(arg.substring("--budget-ms=".length()));
+                    budgetGiven = true;
+                } else if (arg.startsWith("--budget-sequences=")) {
+                    budgetSequences = Long.parseLong(arg.substring("--budget-sequences=".length()));
+                    budgetGiven = true;
+                } else if (arg.startsWith("--budget-bytes=")) {
+                    budgetBytes = Long.parseLong(arg.substring("--budget-bytes=".length()));
+                    budgetGiven = true;
+                } else if (arg.equals("--dedup")) {
+                    dedup = true;
+                } else if (arg.startsWith("--output=")) {
+                    outputDirectory = Paths.get(arg.substring("--output=".length()));
+                } else if (arg.startsWith("--")) {
+                    return usage("Unknown option " + arg);
+                } else {
+                    projectDirectories.add(Paths.get(arg).toAbsolutePath().normalize());
+                }
+            } catch (NumberFormatException e) {
+                return usage("Not a number: " + arg);
+            }
+        }
+        if (maxDepth < 1) {
+            return usage("The depth must be at least 1");
+        }
+        if (!sink.equals("text") && !sink.equals("binary") && !sink.equals("count")) {
+            return usage("Unknown sink " + sink);
+        }
+        if (budgetMillis < 0 || budgetSequences < 0 || budgetBytes < 0) {
+            return usage("A budget cannot be negative");
+        }
+        if (projectDirectories.isEmpty()) {
+            return usage("No project to analyze");
+        }
+        return true;
+    }
+
+    private static boolean usage(String problem) {
+        System.out.println(problem);
+        System.out.println("Usage: " + COMMAND + " [--depth=N] [--sink=text|binary|count] [--budget-ms=N] [--budget-sequences=N]"
+                + " [--budget-bytes=N] [--dedup] [--output=DIR] PROJECT_DIR...");
+        return false;
+    }
+
+    private int analyzeAll() throws IOException {
+        Files.createDirectories(outputDirectory);
+        Set<String> outputNames = new HashSet<>();
+        int failed = 0;
+        long start = System.nanoTime();
+        try (Writer summary = Files.newBufferedWriter(outputDirectory.resolve("ccfg-batch-summary.tsv"),
+                StandardCharsets.UTF_8)) {
+            summary.write("project\tcallbacks\tsequences\tseconds\tstatus\n");
+            for (Path projectDirectory : projectDirectories) {
+                String name = projectDirectory.getFileName().toString();
+                for (int i = 2; !outputNames.add(name); i++) {
+                    name = projectDirectory.getFileName() + "-" + i;
+                }
+                long projectStart = System.nanoTime();
+                String status = "ok";
+                long[] result = {0, 0};
+                try {
+                    result = analyze(projectDirectory, name);
+                } catch (Throwable e) {
+                    failed++;
+                    status = "failed: " + e;
+                    System.out.println(projectDirectory + ": " + status);
+                }
+                double seconds = (System.nanoTime() - projectStart) / 1e9;
+                summary.write(name + "\t" + result[0] + "\t" + result[1] + "\t"
+                        + String.format("%.1f", seconds) + "\t" + status + "\n");
+                summary.flush();
+                System.out.println(name + ": " + result[1] + " sequences in " + result[0] + " callbacks, "
+                        + String.format("%.1f", seconds) + " s");
+            }
+        }
+        double hours = (System.nanoTime() - start) / 3.6e12;
+        System.out.println(projectDirectories.size() + " projects (" + failed + " failed) in "
+                + String.format("%.1f", hours * 3600) + " s, "
+                + String.format("%.1f", projectDirectories.size() / hours) + " projects per hour");
+        return failed == 0 ? 0 : 1;
+    }
+
+    /**
+     * Open, analyze and close one project. Returns the number of callbacks and of sequences.
+     */
+    private long[] analyze(Path projectDirectory, String name) throws IOException {
+        Project project = ProjectUtil.openOrImport(projectDirectory, null, false);
+        if (project == null) {
+            throw new IllegalStateException("the project could not be opened");
+        }
+        try {
+            SequenceBudget budget = budgetGiven
+                    ? new SequenceBudget(budgetMillis, budgetSequences, budgetBytes)
+                    : CcfgSettings.getInstance(project).getBudget();
+            CallSequenceAnalysis analysis = new CallSequenceAnalysis(project, maxDepth, budget);
+            if (sink.equals("count")) {
+                CountingSequenceSink counts = new CountingSequenceSink();
+                analysis.run(new EmptyProgressIndicator(), deduplicated(counts));
+                writeCounts(outputDirectory.resolve(name + ".counts.txt"), counts);
+                return new long[]{counts.getCountsPerCallback().size(), counts.getTotal()};
+            }
+            if (sink.equals("binary")) {
+                BinarySequenceSink sequences = new BinarySequenceSink(
+                        outputDirectory.resolve(name + "." + BinarySequenceSink.EXTENSION));
+                CallbackCounter callbacks = new CallbackCounter(deduplicated(sequences));
+                try {
+                    analysis.run(new EmptyProgressIndicator(), callbacks);
+                } finally {
+                    sequences.close();
+                }
+                return new long[]{callbacks.count, sequences.getSequenceCount()};
+            }
+            FileSequenceSink sequences = new FileSequenceSink(outputDirectory.resolve(name + ".txt"));
+            CallbackCounter callbacks = new CallbackCounter(deduplicated(sequences));
+            try {
+                analysis.run(new EmptyProgressIndicator(), callbacks);
+            } finally {
+                sequences.close();
+            }
+            return new long[]{callbacks.count, sequences.getSequenceCount()};
+        } finally {
+            ApplicationManager.getApplication().invokeAndWait(() -> ProjectManager.getInstance().closeAndDispose(project));
+        }
+    }
+
+    // one set of fingerprints per project, so each output file has no duplicates of its own
+    private SequenceSink deduplicated(SequenceSink sink) {
+        return dedup ? new DeduplicatingSequenceSink(sink) : sink;
+    }
+
+    private static void writeCounts(Path file, CountingSequenceSink counts) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Long> callback : counts.getCountsPerCallback().entrySet()) {
+                writer.write(callback.getKey() + "\t" + callback.getValue() + "\n");
+            }
+            writer.write("total\t" + counts.getTotal() + "\n");
+        }
+    }
+
+    // passes everything on, and counts the callbacks on the way
+    private static final class CallbackCounter implements SequenceSink {
+        private final SequenceSink delegate;
+        private long count = 0;
+
+        private CallbackCounter(SequenceSink delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void startCallback(String callback) {
+            count++;
+            delegate.startCallback(callback);
+        }
+
+        @Override
+        public void accept(TokenPath sequence) {
+            delegate.accept(sequence);
+        }
+
+        @Override
+        public void endCallback(String callback) {
+            delegate.endCallback(callback);
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.example.customoverwrittenidentifier;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.psi.PsiMethod;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds the CCFG of a callback once, so its sequences can be generated from the graph (see
+ * CcfgSequenceGenerator) without going back to the PSI. The graph is built from the callback's lowered bodies
+ * (see MethodIrCache), so only lowering them needs a read action.
+ *
+ * The graph has the shape of CallSequenceExplorer's walk. Every vertex adds its name to the path. The children
+ * of a vertex are the alternatives that continue from there, and a vertex without children ends a sequence.
+ * The walk explores every statement of a block from the same path, so the statements of a block are siblings.
+ * A call site is a POINTER vertex whose first child is the METHOD vertex of the callee's body. That body is
+ * built once per (method, depth) and shared by every call site at that depth. Whether a call closes a cycle
+ * depends on the path that reaches it, so the generator decides it. The POINTER's name is the label it adds
+ * then, and its other children continue after the call, like the tokens a call leaves on the path for the
+ * exit of a loop around it. A call that cannot close a cycle, because the callee is not in the caller's
+ * recursive group (see RecursionGroups), gets an empty name and the generator does not look for it.
+ */
+public class CcfgBuilder {
+
+    private final CallSiteResolutionCache resolutionCache;
+
+    private final MethodIrCache irCache;
+
+    private final SymbolTable symbols;
+
+    private final CallDependencies dependencies;
+
+    private final int maxDepth;
+
+    public CcfgBuilder(CallSequenceExplorer explorer) {
+        this.resolutionCache = explorer.getResolutionCache();
+        this.irCache = explorer.getIrCache();
+        this.symbols = explorer.getSymbols();
+        this.dependencies = explorer.getDependencies();
+        this.maxDepth = explorer.getMaxDepth();
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * The frozen CCFG of an @Override method, or null when exploreOverriddenMethod would skip the method.
+     * Needs a read action; the graph does not.
+     */
+    @Nullable
+    public FrozenCcfg build(PsiMethod psiMethod) {
+        MethodIrCache.Lowered lowered = lower(psiMethod);
+        return lowered == null ? null : build(lowered);
+    }
+
+    /**
+     * The lowered bodies of an @Override method, or null when exploreOverriddenMethod would skip the method.
+     * Needs a read action.
+     */
+    @Nullable
+    public MethodIrCache.Lowered lower(PsiMethod psiMethod) {
+        if (!resolutionCache.isInProject(psiMethod) || psiMethod.getAnnotation("java.lang.Override") == null
+                || psiMethod.getBody() == null) {
+            return null;
+        }
+        return irCache.lowerReachable(psiMethod, maxDepth);
+    }
+
+    /**
+     * The frozen CCFG of a lowered callback. Needs no read action.
+     */
+    public FrozenCcfg build(MethodIrCache.Lowered lowered) {
+        return new Construction(lowered).build().freeze();
+    }
+
+    /**
+     * The state of one build: the METHOD vertices made so far, and the names that tell methods apart.
+     */
+    private final class Construction {
+
+        private final MethodIrCache.Lowered lowered;
+
+        private final RecursionGroups groups;
+
+        private final Map<Integer, Node[]> methodNodes = new HashMap<>();
+
+        private final Map<Integer, String> methodKeys = new HashMap<>();
+
+        private final Set<String> usedKeys = new HashSet<>();
+
+        private Construction(MethodIrCache.Lowered lowered) {
+            this.lowered = lowered;
+            this.groups = RecursionGroups.of(lowered);
+        }
+
+        private Node build() {
+            MethodIr callback = lowered.getCallback();
+            Node entry = new Node(callback.getName(), Node.NodeTypes.ENTRY);
+            Node root = new Node(methodKey(callback), Node.NodeTypes.METHOD);
+            entry.addChild(root);
+            block(callback.getBody(), root, callback, 1);
+            return entry;
+        }
+
+        // the METHOD vertex of the body of a method called at depth - 1; past the depth limit it stays empty,
+        // the generator only needs it to know which method the call is to
+        private Node methodNode(MethodIr method, int depth) {
+            Node[] byDepth = methodNodes.computeIfAbsent(method.getId(), m -> new Node[Math.max(0, maxDepth) + 2]);
+            if (byDepth[depth] != null) {
+                return byDepth[depth];
+            }
+            Node node = new Node(methodKey(method), Node.NodeTypes.METHOD);
+            byDepth[depth] = node;
+            if (depth <= maxDepth) {
+                if (method.isEmpty()) {
+                    add(node, " --> (empty method)", Node.NodeTypes.STATEMENT);
+                } else {
+                    block(method.getBody(), node, method, depth);
+                }
+            }
+            return node;
+        }
+
+        // CallDependencies.keyOf, made unique within the graph
+        private String methodKey(MethodIr method) {
+            String key = methodKeys.get(method.getId());
+            if (key == null) {
+                key = method.getKey();
+                for (int i = 2; !usedKeys.add(key); i++) {
+                    key = method.getKey() + "#" + i;
+                }
+                methodKeys.put(method.getId(), key);
+            }
+            return key;
+        }
+
+        /**
+         * Add a statement below the parent. Returns the vertex that ends the tokens the statement leaves on the
+         * path, or the parent itself when it leaves none.
+         */
+        private Node statement(@Nullable MethodIr.Statement statement, Node parent, MethodIr owner, int depth) {
+            ProgressManager.checkCanceled();
+
+            if (depth > maxDepth) {
+                add(parent, " --> (depth limit reached)", Node.NodeTypes.STATEMENT);
+                return parent;
+            }
+            if (statement == null) {
+                return parent;
+            }
+
+            switch (statement.getKind()) {
+                case IF:
+                    ifStatement(statement, parent, owner, depth);
+                    return parent;
+                case LOOP: {
+                    Node loop = add(parent, token(statement, 0), Node.NodeTypes.LOOP);
+                    Node tail = subStatements(statement.getChild(0), loop, owner, depth);
+                    add(continueFrom(tail, loop), token(statement, 1), Node.NodeTypes.LOOP_EXIT);
+                    return parent;
+                }
+                case DO_WHILE: {
+                    Node loop = add(parent, token(statement, 0), Node.NodeTypes.LOOP);
+                    Node tail = subStatements(statement.getChild(0), loop, owner, depth);
+                    Node check = add(continueFrom(tail, loop), token(statement, 1), Node.NodeTypes.CONDITION);
+                    add(check, token(statement, 2), Node.NodeTypes.LOOP_EXIT);
+                    return parent;
+                }
+                case SWITCH:
+                    switchStatement(statement, parent, owner, depth);
+                    return parent;
+                case TRY:
+                    tryStatement(statement, parent, owner, depth);
+                    return parent;
+                case BREAK:
+                    return add(parent, token(statement, 0), Node.NodeTypes.BREAK);
+                case CONTINUE:
+                    return add(parent, token(statement, 0), Node.NodeTypes.CONTINUE);
+                case STATEMENT:
+                    return add(parent, token(statement, 0), Node.NodeTypes.STATEMENT);
+                case EMIT:
+                    for (int i = 0; i < statement.getTokenCount(); i++) {
+                        add(parent, token(statement, i), Node.NodeTypes.STATEMENT);
+                    }
+                    return parent;
+                case CALL:
+                    return methodCall(statement, parent, owner, depth);
+                case ASSIGNMENT_CALL:
+                    return assignment(statement, parent, owner, depth);
+                case BLOCK:
+                    block(statement, parent, owner, depth);
+                    return parent;
+                default:
+                    // switch labels and the sections of a try only appear inside their statement
+                    throw new IllegalStateException("unexpected " + statement.getKind());
+            }
+        }
+
+        private void ifStatement(MethodIr.Statement ifStmt, Node parent, MethodIr owner, int depth) {
+            MethodIr.Statement thenBranch = ifStmt.getChild(0);
+            if (thenBranch != null) {
+                Node then = add(parent, token(ifStmt, 0), Node.NodeTypes.CONDITION);
+                subStatements(thenBranch, then, owner, depth);
+                removeIfEmpty(parent, then);
+            }
+
+            MethodIr.Statement elseBranch = ifStmt.getChild(1);
+            if (elseBranch != null && elseBranch.getKind() == MethodIr.Kind.IF) {
+                Node elseIf = add(parent, " --> ElseIf", Node.NodeTypes.CONDITION);
+                ifStatement(elseBranch, elseIf, owner, depth);
+                removeIfEmpty(parent, elseIf);
+            } else if (elseBranch != null) {
+                Node otherwise = add(parent, " --> Else", Node.NodeTypes.CONDITION);
+                subStatements(elseBranch, otherwise, owner, depth);
+                removeIfEmpty(parent, otherwise);
+            }
+        }
+
+        private void switchStatement(MethodIr.Statement switchStmt, Node parent, MethodIr owner, int depth) {
+            Node switchNode = add(parent, " --> Switch", Node.NodeTypes.SWITCH);
+            MethodIr.Statement[] body = switchStmt.getChildren();
+            if (body == null) {
+                add(switchNode, " --> (empty switch)", Node.NodeTypes.SWITCH_EXIT);
+                return;
+            }
+
+            // the labels stay on the path, so each one continues from the one before it
+            Node current = switchNode;
+            for (MethodIr.Statement st : body) {
+                if (st.getKind() == MethodIr.Kind.CASE) {
+                    current = add(current, token(st, 0), Node.NodeTypes.CASE);
+                } else {
+                    statement(st, current, owner, depth);
+                }
+            }
+            add(current, " --> (exit switch)", Node.NodeTypes.SWITCH_EXIT);
+        }
+
+        private void tryStatement(MethodIr.Statement tryStmt, Node parent, MethodIr owner, int depth) {
+            for (MethodIr.Statement section : tryStmt.getChildren()) {
+                Node.NodeTypes type = section.getKind() == MethodIr.Kind.TRY_BLOCK ? Node.NodeTypes.TRY
+                        : section.getKind() == MethodIr.Kind.CATCH ? Node.NodeTypes.CATCH
+                        : Node.NodeTypes.FINALLY;
+                Node sectionNode = add(parent, token(section, 0), type);
+                if (section.getChild(0) != null) {
+                    block(section.getChild(0), sectionNode, owner, depth);
+                }
+                removeIfEmpty(parent, sectionNode);
+            }
+            add(parent, " --> (end try)", Node.NodeTypes.STATEMENT);
+        }
+
+        private Node methodCall(MethodIr.Statement call, Node parent, MethodIr owner, int depth) {
+            Node label = add(parent, token(call, 0), Node.NodeTypes.STATEMENT);
+            if (call.getCallee() == MethodIr.EXTERNAL) {
+                return add(label, token(call, 1), Node.NodeTypes.STATEMENT);
+            }
+            return pointer(label, " (loop/cycle!)", lowered.get(call.getCallee()), owner, depth);
+        }
+
+        private Node assignment(MethodIr.Statement call, Node parent, MethodIr owner, int depth) {
+            Node label = add(parent, token(call, 0), Node.NodeTypes.STATEMENT);
+            Node target = add(label, token(call, 1), Node.NodeTypes.STATEMENT);
+            if (call.getCallee() == MethodIr.UNRESOLVED) {
+                return target;
+            }
+            if (call.getCallee() == MethodIr.EXTERNAL) {
+                add(target, token(call, 2), Node.NodeTypes.STATEMENT);
+                return target;
+            }
+            return pointer(target, "(loop/cycle!)", lowered.get(call.getCallee()), owner, depth);
+        }
+
+        // a call into the project; the name of the POINTER is what the call adds when it closes a cycle, and
+        // empty when it cannot
+        private Node pointer(Node label, String cycleLabel, MethodIr target, MethodIr owner, int depth) {
+            boolean mayCloseCycle = groups.mayCloseCycle(owner.getId(), target.getId());
+            Node pointer = add(label, mayCloseCycle ? cycleLabel : "", Node.NodeTypes.POINTER);
+            if (depth < maxDepth) {
+                dependencies.recordCall(owner.getKey(), target.getKey());
+            }
+            pointer.addChild(methodNode(target, depth + 1));
+            return pointer;
+        }
+
+        // a block adds its statements side by side and leaves nothing; a single statement keeps what it leaves
+        private Node subStatements(@Nullable MethodIr.Statement statement, Node parent, MethodIr owner, int depth) {
+            if (statement == null) {
+                return parent;
+            }
+            if (statement.getKind() == MethodIr.Kind.BLOCK) {
+                block(statement, parent, owner, depth);
+                return parent;
+            }
+            return statement(statement, parent, owner, depth);
+        }
+
+        private void block(MethodIr.Statement block, Node parent, MethodIr owner, int depth) {
+            for (MethodIr.Statement st : block.getChildren()) {
+                statement(st, parent, owner, depth);
+            }
+        }
+
+        // the vertex to continue a statement's tokens from. A statement that left tokens and ended a sequence with
+        // them is a vertex without children; it gets an empty child first, so it still ends that sequence.
+        private Node continueFrom(Node tail, Node parent) {
+            if (tail != parent && tail.getChildren().isEmpty()) {
+                add(tail, "", Node.NodeTypes.STATEMENT);
+            }
+            return tail;
+        }
+
+        private String token(MethodIr.Statement statement, int i) {
+            return symbols.symbol(statement.getToken(i));
+        }
+
+        private Node add(Node parent, String name, Node.NodeTypes type) {
+            Node child = new Node(name, type);
+            parent.addChild(child);
+            return child;
+        }
+
+        // a branch that ended no sequence would end one of its own without children
+        private void removeIfEmpty(Node parent, Node child) {
+            if (child.getChildren().isEmpty()) {
+                parent.removeChild(child);
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.customoverwrittenidentifier;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Holds the result store of the latest run of a project, so the results tool window can show it.
+ * Replacing the results disposes the previous store and its temporary file.
+ */
+public final class CcfgResultsService implements Disposable {
+
+    public interface Listener {
+        void resultsChanged(SequenceResultStore results);
+    }
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private SequenceResultStore results = null;
+
+    public static CcfgResultsService getInstance(Project project) {
+        return project.getService(CcfgResultsService.class);
+    }
+
+    public synchronized SequenceResultStore getResults() {
+        return results;
+    }
+
+    public void setResults(SequenceResultStore newResults) {
+        SequenceResultStore previous;
+        synchronized (this) {
+            previous = results;
+            results = newResults;
+        }
+        if (previous != null && previous != newResults) {
+            previous.dispose();
+        }
+        fireResultsChanged();
+    }
+
+    public void fireResultsChanged() {
+        SequenceResultStore current = getResults();
+        for (Listener listener : listeners) {
+            listener.resultsChanged(current);
+        }
+    }
+
+    public void addListener(Listener listener, Disposable parentDisposable) {
+        listeners.add(listener);
+        Disposer.register(parentDisposable, () -> listeners.remove(listener));
+    }
+
+    @Override
+    public void dispose() {
+        SequenceResultStore current;
+        synchronized (this) {
+            current = results;
+            results = null;
+        }
+        if (current != null) {
+            current.dispose();
+        }
+    }
+}
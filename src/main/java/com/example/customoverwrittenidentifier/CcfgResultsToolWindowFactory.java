@@ -0,0 +1,26 @@
+package com.example.customoverwrittenidentifier;
+
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentFactory;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Creates the CCFG Sequences tool window, which shows the results of the latest Build the CCFG run.
+ */
+public class CcfgResultsToolWindowFactory implements ToolWindowFactory, DumbAware {
+
+    public static final String TOOL_WINDOW_ID = "CCFG Sequences";
+
+    @Override
+    public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
+        SequenceResultsPanel panel = new SequenceResultsPanel(project);
+        Content content = ContentFactory.SERVICE.getInstance().createContent(panel, "", false);
+        Disposer.register(content, panel);
+        toolWindow.getContentManager().addContent(content);
+    }
+}
@@ -0,0 +1,432 @@
+package com.example.customoverwrittenidentifier;
+
+import com.intellij.openapi.progress.ProgressManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Generates the sequences of a callback from its frozen CCFG (see CcfgBuilder), in the order
+ * CallSequenceExplorer emits them. It never touches the PSI, so it runs outside of any read action, and one
+ * graph can be walked by several generators at once.
+ *
+ * The walk is depth first with an explicit stack. A METHOD vertex puts its method on the call chain for as
+ * long as its body is walked; the chain is a count per method name, so looking a callee up is one array read.
+ * A POINTER adds its cycle label when its callee is on the chain, then expands
+ * the callee's body below the depth limit; at the limit it ends the sequence with " (stopped expansion)" for a
+ * cycle and " --> (depth limit reached)" otherwise. A POINTER without a name cannot close a cycle (see
+ * CcfgBuilder) and is not looked up at all.
+ *
+ * The walk can also be pulled one sequence at a time through a Cursor, which stops after each sequence and
+ * picks up from there on the next call. The number of sequences below a vertex does not depend on the path
+ * that reaches it (a cycle only changes a label), so the cursor can skip whole subgraphs without walking them.
+ * Paging and skipping stay inside the package: the tool window reads its pages from the SequenceResultStore.
+ *
+ * The same counts, taken for each depth in turn, tell how deep a callback can go within a SequenceBudget before
+ * a single sequence is generated. A graph built for some depth is walked at any lower depth as it is; the calls
+ * and cycles cut off below the depth limit because of the budget say so with their own markers,
+ * " (stopped expansion: budget)" and " --> (depth limit reached: budget)".
+ */
+public class CcfgSequenceGenerator {
+
+    private static final int NO_TOKEN = -1;
+
+    private final FrozenCcfg graph;
+
+    private final int maxDepth;
+
+    private final SymbolTable symbols;
+
+    // the token each vertex pushes, interned once
+    private final int[] tokens;
+
+    private final int stoppedExpansion;
+
+    private final int depthLimitReached;
+
+    // the number of sequences below each vertex, computed the first time a cursor skips
+    private long[] counts = null;
+
+    public CcfgSequenceGenerator(FrozenCcfg graph, int maxDepth, SymbolTable symbols) {
+        this.graph = graph;
+        this.maxDepth = maxDepth;
+        this.symbols = symbols;
+        this.tokens = new int[graph.size()];
+        for (int v = 0; v < graph.size(); v++) {
+            String name = graph.getName(v);
+            tokens[v] = graph.getNodeType(v) == Node.NodeTypes.METHOD || name.isEmpty() ? NO_TOKEN : symbols.intern(name);
+        }
+        this.stoppedExpansion = symbols.intern(" (stopped expansion)");
+        this.depthLimitReached = symbols.intern(" --> (depth limit reached)");
+    }
+
+    // the same graph at a lower depth, chosen to fit a budget
+    private CcfgSequenceGenerator(CcfgSequenceGenerator full, int depth) {
+        this.graph = full.graph;
+        this.maxDepth = depth;
+        this.symbols = full.symbols;
+        this.tokens = full.tokens;
+        this.stoppedExpansion = symbols.intern(" (stopped expansion: budget)");
+        this.depthLimitReached = symbols.intern(" --> (depth limit reached: budget)");
+    }
+
+    /**
+     * Send every sequence of the callback to the sink, built on the given path.
+     */
+    public void generate(TokenPath path, SequenceSink sequences) {
+        Cursor cursor = cursor(path);
+        while (cursor.next()) {
+            sequences.accept(path);
+        }
+    }
+
+    /**
+     * Send the sequences of the callback to the sink within the budget: at the deepest depth up to the depth
+     * limit whose sequences fit in count and size, and cut off with a last sequence that says why when the
+     * time or the budget runs out anyway. Returns the depth the sequences were generated at.
+     */
+    public int generate(TokenPath path, SequenceSink sequences, SequenceBudget budget) {
+        return generate(path, sequences, budget, System.nanoTime());
+    }
+
+    /**
+     * Like generate(path, sequences, budget), with the time budget counted from startNanos (System.nanoTime()),
+     * so the time spent on the callback before its graph was built counts too.
+     */
+    public int generate(TokenPath path, SequenceSink sequences, SequenceBudget budget, long startNanos) {
+        if (budget.isUnlimited()) {
+            generate(path, sequences);
+            return maxDepth;
+        }
+        long deadline = budget.getMaxMillis() == 0 ? Long.MAX_VALUE : startNanos + budget.getMaxMillis() * 1_000_000L;
+
+        // iterative deepening on the counts: one bottom-up pass per depth, no sequence built yet. A deeper body
+        // can end fewer sequences than the call it replaces, so every depth is tried and the deepest that fits
+        // wins; when none does, depth 1 is cut off below. Out of time, the deepest depth so far is kept, and the
+        // first sequence below is cut off.
+        int depth = Math.min(1, maxDepth);
+        for (int d = 1; d <= maxDepth && System.nanoTime() <= deadline; d++) {
+            long[][] measured = measure(d);
+            if (budget.fits(measured[0][graph.getEntry()], measured[1][graph.getEntry()])) {
+                depth = d;
+            }
+        }
+        CcfgSequenceGenerator generator = depth == maxDepth ? this : new CcfgSequenceGenerator(this, depth);
+
+        int root = path.mark();
+        Cursor cursor = generator.cursor(path);
+        long count = 0;
+        long bytes = 0;
+        String cutOff = null;
+        while (cursor.next()) {
+            if (budget.getMaxSequences() != 0 && count == budget.getMaxSequences()) {
+                cutOff = " --> (truncated: sequence budget)";
+                break;
+            }
+            if (budget.getMaxBytes() != 0) {
+                bytes += textLength(path);
+                if (bytes > budget.getMaxBytes()) {
+                    cutOff = " --> (truncated: size budget)";
+                    break;
+                }
+            }
+            if ((count & 0xFF) == 0 && System.nanoTime() > deadline) {
+                cutOff = " --> (truncated: time budget)";
+                break;
+            }
+            sequences.accept(path);
+            count++;
+        }
+        if (cutOff != null) {
+            path.reset(root);
+            path.push(tokens[graph.getEntry()]);
+            path.push(cutOff);
+            sequences.accept(path);
+            path.reset(root);
+        }
+        return depth;
+    }
+
+    /**
+     * A cursor at the start of the sequences, with a path of its own.
+     */
+    public Cursor cursor() {
+        return new Cursor(new TokenPath(symbols));
+    }
+
+    /**
+     * A cursor at the start of the sequences, building them on the given path.
+     */
+    public Cursor cursor(TokenPath path) {
+        return new Cursor(path);
+    }
+
+    /**
+     * The number of sequences of the callback, saturated at Long.MAX_VALUE.
+     */
+    public long getSequenceCount() {
+        return counts()[graph.getEntry()];
+    }
+
+    /**
+     * A position in the sequences. After next() returned true the path holds the sequence until the cursor is
+     * moved again. A cursor is used by one thread at a time; the generator can hand out any number of them.
+     */
+    public final class Cursor {
+
+        private final TokenPath path;
+
+        private int[] vertices = new int[16];
+
+        private int[] nextChild = new int[16];
+
+        private int[] marks = new int[16];
+
+        private int top = 0;
+
+        // how many METHOD vertices on the stack there are of each method, by name id
+        private final int[] onChain = new int[graph.getNameCount()];
+
+        private int depth = 0;
+
+        // where to cut the path back to before moving on from the current sequence, or -1
+        private int pendingReset = -1;
+
+        private boolean started = false;
+
+        private long position = 0;
+
+        private Cursor(TokenPath path) {
+            this.path = path;
+        }
+
+        /**
+         * Move to the next sequence. Returns false when there is none left.
+         */
+        public boolean next() {
+            for (int vertex = nextVertex(); vertex >= 0; vertex = nextVertex()) {
+                if (enter(vertex)) {
+                    position++;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Pass over the next n sequences without building them. Returns how many there were, less than n only
+         * at the end.
+         */
+        long skip(long n) {
+            long[] counts = counts();
+            long skipped = 0;
+            while (skipped < n) {
+                int vertex = nextVertex();
+                if (vertex < 0) {
+                    break;
+                }
+                if (counts[vertex] <= n - skipped) {
+                    skipped += counts[vertex]; // the whole subgraph, without going into it
+                } else if (enter(vertex)) {
+                    skipped++;
+                }
+            }
+            position += skipped;
+            return skipped;
+        }
+
+        /**
+         * The text of the next sequences, at most limit of them. An empty page means the end.
+         */
+        List<String> nextPage(int limit) {
+            List<String> page = new ArrayList<>(Math.min(limit, 1024));
+            while (page.size() < limit && next()) {
+                page.add(path.toText());
+            }
+            return page;
+        }
+
+        /**
+         * Send the next sequences to the sink, at most limit of them. Returns how many were sent.
+         */
+        int nextPage(int limit, SequenceSink sequences) {
+            int sent = 0;
+            while (sent < limit && next()) {
+                sequences.accept(path);
+                sent++;
+            }
+            return sent;
+        }
+
+        // the number of sequences passed so far, by next() or skip(); a new cursor gets back here with skip()
+        long getPosition() {
+            return position;
+        }
+
+        // the next vertex to enter, or -1 at the end; leaves the vertices that have no children left
+        private int nextVertex() {
+            if (pendingReset >= 0) {
+                path.reset(pendingReset);
+                pendingReset = -1;
+            }
+            if (!started) {
+                started = true;
+                return graph.getEntry();
+            }
+            while (top > 0) {
+                int current = vertices[top - 1];
+                if (nextChild[top - 1] < graph.getChildCount(current)) {
+                    return graph.getChild(current, nextChild[top - 1]++);
+                }
+                top--;
+                path.reset(marks[top]);
+                if (graph.getNodeType(current) == Node.NodeTypes.METHOD) {
+                    onChain[graph.getNameId(current)]--;
+                    depth--;
+                }
+            }
+            return -1;
+        }
+
+        // push what the vertex adds and keep it on the stack if it has children to walk; returns true when
+        // that ends a sequence, which is then on the path
+        private boolean enter(int vertex) {
+            int mark = path.mark();
+            Node.NodeTypes type = graph.getNodeType(vertex);
+            if (type == Node.NodeTypes.METHOD) {
+                onChain[graph.getNameId(vertex)]++;
+                depth++;
+                pushFrame(vertex, 0, mark);
+                return false;
+            }
+            if (type == Node.NodeTypes.POINTER) {
+                boolean cycle = tokens[vertex] != NO_TOKEN && onChain[graph.getNameId(graph.getChild(vertex, 0))] > 0;
+                if (cycle) {
+                    path.push(tokens[vertex]);
+                }
+                if (depth < maxDepth) {
+                    pushFrame(vertex, 0, mark);
+                    return false;
+                }
+                // at the limit, the body is not expanded; what follows the call still is
+                pushFrame(vertex, 1, mark);
+                pendingReset = path.mark();
+                path.push(cycle ? stoppedExpansion : depthLimitReached);
+                return true;
+            }
+            if (tokens[vertex] != NO_TOKEN) {
+                path.push(tokens[vertex]);
+            }
+            if (graph.getChildCount(vertex) == 0) {
+                ProgressManager.checkCanceled();
+                pendingReset = mark;
+                return true;
+            }
+            pushFrame(vertex, 0, mark);
+            return false;
+        }
+
+        private void pushFrame(int vertex, int firstChild, int mark) {
+            if (top == vertices.length) {
+                vertices = Arrays.copyOf(vertices, top * 2);
+                nextChild = Arrays.copyOf(nextChild, top * 2);
+                marks = Arrays.copyOf(marks, top * 2);
+            }
+            vertices[top] = vertex;
+            nextChild[top] = firstChild;
+            marks[top] = mark;
+            top++;
+        }
+    }
+
+    private synchronized long[] counts() {
+        if (counts == null) {
+            counts = measure(maxDepth)[0];
+        }
+        return counts;
+    }
+
+    // the length of the sequence as text, with its line break
+    private long textLength(TokenPath path) {
+        long length = 1;
+        for (int i = 0; i < path.size(); i++) {
+            length += symbols.symbol(path.tokenAt(i)).length();
+        }
+        return length;
+    }
+
+    /**
+     * The number of sequences below each vertex at the given depth limit, and their estimated size as text.
+     * Bottom up over the graph, which has no cycles: a METHOD's body only calls bodies one level deeper. The
+     * size leaves out the cycle labels, which depend on the path.
+     */
+    private long[][] measure(int depthLimit) {
+        int size = graph.size();
+        int[] depths = new int[size];
+        long[] result = new long[size];
+        long[] bytes = new long[size];
+        boolean[] done = new boolean[size];
+        int[] stack = new int[16];
+        int[] nextChild = new int[16];
+        int top = 0;
+        int entry = graph.getEntry();
+        depths[entry] = 0;
+        stack[top] = entry;
+        nextChild[top++] = 0;
+        while (top > 0) {
+            int vertex = stack[top - 1];
+            if (nextChild[top - 1] < graph.getChildCount(vertex)) {
+                int child = graph.getChild(vertex, nextChild[top - 1]++);
+                if (!done[child]) {
+                    // every vertex lies in the body of one METHOD, so its depth is the same along any path
+                    depths[child] = graph.getNodeType(child) == Node.NodeTypes.METHOD ? depths[vertex] + 1 : depths[vertex];
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, top * 2);
+                        nextChild = Arrays.copyOf(nextChild, top * 2);
+                    }
+                    stack[top] = child;
+                    nextChild[top++] = 0;
+                }
+                continue;
+            }
+            top--;
+            Node.NodeTypes type = graph.getNodeType(vertex);
+            int childCount = graph.getChildCount(vertex);
+            long count = 0;
+            long below = 0;
+            int firstChild = 0;
+            if (type == Node.NodeTypes.POINTER) {
+                if (depths[vertex] < depthLimit) {
+                    count = result[graph.getChild(vertex, 0)];
+                    below = bytes[graph.getChild(vertex, 0)];
+                } else {
+                    count = 1;
+                    below = symbols.symbol(depthLimitReached).length() + 1;
+                }
+                firstChild = 1;
+            } else if (childCount == 0) {
+                count = type == Node.NodeTypes.METHOD ? 0 : 1;
+                below = count;
+            }
+            for (int i = firstChild; i < childCount; i++) {
+                count = saturatedAdd(count, result[graph.getChild(vertex, i)]);
+                below = saturatedAdd(below, bytes[graph.getChild(vertex, i)]);
+            }
+            long own = tokens[vertex] == NO_TOKEN || type == Node.NodeTypes.POINTER ? 0 : symbols.symbol(tokens[vertex]).length();
+            result[vertex] = count;
+            bytes[vertex] = saturatedAdd(below, saturatedMultiply(own, count));
+            done[vertex] = true;
+        }
+        return new long[][]{result, bytes};
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    private static long saturatedMultiply(long a, long b) {
+        return b != 0 && a > Long.MAX_VALUE / b ? Long.MAX_VALUE : a * b;
+    }
+}
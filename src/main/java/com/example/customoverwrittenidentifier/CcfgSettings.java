@@ -0,0 +1,54 @@
+package com.example.customoverwrittenidentifier;
+
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * How the analysis of a project runs, kept in .idea/ccfg.xml next to the entry points.
+ *
+ * With "graphEngine" on (the default), the sequences are generated from a CCFG per callback (see CcfgBuilder)
+ * and the method summaries are not used. With it off, CallSequenceExplorer walks the PSI with its method
+ * summaries, and only then is the summary store on disk (see PersistentSummaryStore) opened.
+ *
+ * "budgetMillis", "budgetSequences" and "budgetBytes" are the SequenceBudget of every callback in the IDE, 0 for
+ * no limit (the default). The batch starter takes its own from the command line.
+ */
+@State(name = "CcfgSettings", storages = @Storage("ccfg.xml"))
+public final class CcfgSettings implements PersistentStateComponent<CcfgSettings.State> {
+
+    public static class State {
+        public boolean graphEngine = true;
+        public long budgetMillis = 0;
+        public long budgetSequences = 0;
+        public long budgetBytes = 0;
+    }
+
+    private State state = new State();
+
+    public static CcfgSettings getInstance(Project project) {
+        return project.getService(CcfgSettings.class);
+    }
+
+    @Override
+    public @NotNull State getState() {
+        return state;
+    }
+
+    @Override
+    public void loadState(@NotNull State state) {
+        this.state = state;
+    }
+
+    public boolean isGraphEngine() {
+        return state.graphEngine;
+    }
+
+    // a negative value in the file counts as no limit
+    public SequenceBudget getBudget() {
+        return new SequenceBudget(Math.max(0, state.budgetMillis), Math.max(0, state.budgetSequences),
+                Math.max(0, state.budgetBytes));
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.customoverwrittenidentifier;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Only counts the sequences, in total and per callback. Nothing is ever turned into text.
+ */
+public class CountingSequenceSink implements SequenceSink {
+
+    private final Map<String, Long> countsPerCallback = new LinkedHashMap<>();
+
+    private long total = 0;
+
+    private long current = 0;
+
+    @Override
+    public void startCallback(String callback) {
+        current = 0;
+    }
+
+    @Override
+    public void accept(TokenPath sequence) {
+        current++;
+        total++;
+    }
+
+    @Override
+    public void endCallback(String callback) {
+        countsPerCallback.merge(callback, current, Long::sum);
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public Map<String, Long> getCountsPerCallback() {
+        return Collections.unmodifiableMap(countsPerCallback);
+    }
+}
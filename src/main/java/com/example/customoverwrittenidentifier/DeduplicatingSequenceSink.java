@@ -0,0 +1,50 @@
+package com.example.customoverwrittenidentifier;
+
+/**
+ * Passes on only the sequences whose text was not seen before, across all callbacks, like a sort -u of the
+ * output without the sort. A sequence is known by the fingerprint of its path (see TokenPath), so a duplicate
+ * is dropped before it is turned into text, and only 16 bytes are kept per distinct sequence (see
+ * FingerprintSet). Two different sequences with the same 128-bit fingerprint would lose the second one; at a
+ * few billion sequences that is still far less likely than a disk error.
+ */
+public class DeduplicatingSequenceSink implements SequenceSink {
+
+    private final SequenceSink delegate;
+
+    private final FingerprintSet seen;
+
+    private long duplicateCount = 0;
+
+    public DeduplicatingSequenceSink(SequenceSink delegate) {
+        this.delegate = delegate;
+        this.seen = new FingerprintSet();
+    }
+
+    @Override
+    public void startCallback(String callback) {
+        delegate.startCallback(callback);
+    }
+
+    @Override
+    public void accept(TokenPath sequence) {
+        if (seen.add(sequence.getFingerprintHigh(), sequence.getFingerprintLow())) {
+            delegate.accept(sequence);
+        } else {
+            duplicateCount++;
+        }
+    }
+
+    @Override
+    public void endCallback(String callback) {
+        delegate.endCallback(callback);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    public long getDuplicateCount() {
+        return duplicateCount;
+    }
+}
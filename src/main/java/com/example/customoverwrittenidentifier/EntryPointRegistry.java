@@ -0,0 +1,185 @@
+package com.example.customoverwrittenidentifier;
+
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.searches.ClassInheritorsSearch;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The framework callbacks the analysis starts from: supertypes of the Android framework and the methods of
+ * theirs that the framework calls (the Activity and Fragment lifecycles, View.OnClickListener and so on).
+ * Every @Override used to be a callback, including toString, equals and hashCode; now only overrides of a
+ * registered method are, and they are found by searching the inheritors of the registered types, so the
+ * search only goes through the classes that extend one of them.
+ *
+ * The registry is kept per project in .idea/ccfg.xml, one "type#method" entry per callback, where the type is
+ * a qualified name (nested types with dots) and "*" stands for every method of the type. With "enabled" off,
+ * or when none of the types is in the project's classpath (not an Android project), every @Override method is
+ * a callback like before.
+ */
+@State(name = "CcfgEntryPoints", storages = @Storage("ccfg.xml"))
+public final class EntryPointRegistry implements PersistentStateComponent<EntryPointRegistry.State> {
+
+    static final List<String> DEFAULT_CALLBACKS = List.of(
+            "android.app.Activity#onCreate", "android.app.Activity#onStart", "android.app.Activity#onRestart",
+            "android.app.Activity#onResume", "android.app.Activity#onPause", "android.app.Activity#onStop",
+            "android.app.Activity#onDestroy", "android.app.Activity#onNewIntent",
+            "android.app.Activity#onSaveInstanceState", "android.app.Activity#onRestoreInstanceState",
+            "android.app.Activity#onActivityResult", "android.app.Activity#onRequestPermissionsResult",
+            "android.app.Activity#onBackPressed", "android.app.Activity#onConfigurationChanged",
+            "android.app.Activity#onCreateOptionsMenu", "android.app.Activity#onOptionsItemSelected",
+            "android.app.Fragment#onAttach", "android.app.Fragment#onCreate", "android.app.Fragment#onCreateView",
+            "android.app.Fragment#onViewCreated", "android.app.Fragment#onActivityCreated",
+            "android.app.Fragment#onStart", "android.app.Fragment#onResume", "android.app.Fragment#onPause",
+            "android.app.Fragment#onStop", "android.app.Fragment#onDestroyView", "android.app.Fragment#onDestroy",
+            "android.app.Fragment#onDetach", "android.app.Fragment#onActivityResult",
+            "androidx.fragment.app.Fragment#onAttach", "androidx.fragment.app.Fragment#onCreate",
+            "androidx.fragment.app.Fragment#onCreateView", "androidx.fragment.app.Fragment#onViewCreated",
+            "androidx.fragment.app.Fragment#onActivityCreated", "androidx.fragment.app.Fragment#onStart",
+            "androidx.fragment.app.Fragment#onResume", "androidx.fragment.app.Fragment#onPause",
+            "androidx.fragment.app.Fragment#onStop", "androidx.fragment.app.Fragment#onDestroyView",
+            "androidx.fragment.app.Fragment#onDestroy", "androidx.fragment.app.Fragment#onDetach",
+            "androidx.fragment.app.Fragment#onActivityResult",
+            "android.app.Service#onCreate", "android.app.Service#onStartCommand", "android.app.Service#onBind",
+            "android.app.Service#onUnbind", "android.app.Service#onRebind", "android.app.Service#onDestroy",
+            "android.app.IntentService#onHandleIntent",
+            "android.content.BroadcastReceiver#onReceive",
+            "android.content.ContentProvider#onCreate", "android.content.ContentProvider#query",
+            "android.content.ContentProvider#insert", "android.content.ContentProvider#update",
+            "android.content.ContentProvider#delete", "android.content.ContentProvider#getType",
+            "android.app.Application#onCreate", "android.app.Application#onTerminate",
+            "android.app.Application#onLowMemory", "android.app.Application#onTrimMemory",
+            "android.os.Handler#handleMessage",
+            "android.os.AsyncTask#onPreExecute", "android.os.AsyncTask#doInBackground",
+            "android.os.AsyncTask#onProgressUpdate", "android.os.AsyncTask#onPostExecute",
+            "android.os.AsyncTask#onCancelled",
+            "android.view.View.OnClickListener#*", "android.view.View.OnLongClickListener#*",
+            "android.view.View.OnTouchListener#*", "android.view.View.OnFocusChangeListener#*",
+            "android.view.View.OnKeyListener#*", "android.widget.AdapterView.OnItemClickListener#*",
+            "android.widget.AdapterView.OnItemSelectedListener#*",
+            "android.widget.CompoundButton.OnCheckedChangeListener#*", "android.widget.SeekBar.OnSeekBarChangeListener#*",
+            "android.widget.TextView.OnEditorActionListener#*", "android.text.TextWatcher#*",
+            "android.content.DialogInterface.OnClickListener#*", "android.hardware.SensorEventListener#*",
+            "android.location.LocationListener#*",
+            "androidx.recyclerview.widget.RecyclerView.Adapter#onCreateViewHolder",
+            "androidx.recyclerview.widget.RecyclerView.Adapter#onBindViewHolder",
+            "android.widget.BaseAdapter#getView");
+
+    public static class State {
+        public boolean enabled = true;
+        public List<String> callbacks = new ArrayList<>(DEFAULT_CALLBACKS);
+    }
+
+    private final Project project;
+
+    private State state = new State();
+
+    public EntryPointRegistry(Project project) {
+        this.project = project;
+    }
+
+    public static EntryPointRegistry getInstance(Project project) {
+        return project.getService(EntryPointRegistry.class);
+    }
+
+    @Override
+    public @NotNull State getState() {
+        return state;
+    }
+
+    @Override
+    public void loadState(@NotNull State state) {
+        this.state = state;
+    }
+
+    /**
+     * The callbacks of the scope, in file order and text order within a file. Needs a read action in smart mode.
+     */
+    public List<PsiMethod> findCallbacks(GlobalSearchScope scope) {
+        Map<PsiClass, Set<String>> registered = state.enabled ? resolveRegisteredTypes() : new LinkedHashMap<>();
+        if (registered.isEmpty()) {
+            return CallGraphIndex.findOverriddenMethods(project, scope);
+        }
+
+        Map<String, PsiMethod> callbacks = new TreeMap<>();
+        for (Map.Entry<PsiClass, Set<String>> type : registered.entrySet()) {
+            PsiClass base = type.getKey();
+            ClassInheritorsSearch.search(base, scope, true).forEach(inheritor -> {
+                ProgressManager.checkCanceled();
+                for (String name : type.getValue()) {
+                    for (PsiMethod method : inheritor.findMethodsByName(name, false)) {
+                        if (overrides(method, base) && method.getAnnotation("java.lang.Override") != null) {
+                            callbacks.put(positionOf(method), method);
+                        }
+                    }
+                }
+                return true;
+            });
+        }
+        return new ArrayList<>(callbacks.values());
+    }
+
+    // the registered types that exist in this project's classpath, with the method names registered for them
+    private Map<PsiClass, Set<String>> resolveRegisteredTypes() {
+        JavaPsiFacade facade = JavaPsiFacade.getInstance(project);
+        GlobalSearchScope everything = GlobalSearchScope.allScope(project);
+        Map<String, Set<String>> namesByType = new LinkedHashMap<>();
+        for (String entry : state.callbacks) {
+            int separator = entry.indexOf('#');
+            if (separator <= 0 || separator == entry.length() - 1) {
+                continue; // not type#method
+            }
+            namesByType.computeIfAbsent(entry.substring(0, separator).trim(), type -> new LinkedHashSet<>())
+                    .add(entry.substring(separator + 1).trim());
+        }
+        Map<PsiClass, Set<String>> types = new LinkedHashMap<>();
+        for (Map.Entry<String, Set<String>> type : namesByType.entrySet()) {
+            PsiClass psiClass = facade.findClass(type.getKey(), everything);
+            if (psiClass == null) {
+                continue;
+            }
+            Set<String> names = type.getValue();
+            if (names.contains("*")) {
+                names = new LinkedHashSet<>();
+                for (PsiMethod method : psiClass.getMethods()) {
+                    names.add(method.getName());
+                }
+            }
+            types.put(psiClass, names);
+        }
+        return types;
+    }
+
+    // whether the method overrides one that the registered type has, declared there or further up
+    private static boolean overrides(PsiMethod method, PsiClass base) {
+        if (method.hasModifierProperty(PsiModifier.STATIC)) {
+            return false;
+        }
+        for (PsiMethod superMethod : method.findDeepestSuperMethods()) {
+            PsiClass declaringClass = superMethod.getContainingClass();
+            if (declaringClass != null && (base.equals(declaringClass) || base.isInheritor(declaringClass, true))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String positionOf(PsiMethod method) {
+        PsiFile file = method.getContainingFile();
+        String path = file == null || file.getVirtualFile() == null ? "" : file.getVirtualFile().getPath();
+        return String.format("%s#%010d", path, method.getTextOffset());
+    }
+}
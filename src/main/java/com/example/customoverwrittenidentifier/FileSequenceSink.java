@@ -0,0 +1,54 @@
+package com.example.customoverwrittenidentifier;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Streams the sequences to a text file, one sequence per line. Line breaks inside a sequence (multi-line
+ * conditions, for example) are written as spaces so every line stays one sequence.
+ */
+public class FileSequenceSink implements SequenceSink {
+
+    private final Writer writer;
+
+    private long sequenceCount = 0;
+
+    public FileSequenceSink(Path file) throws IOException {
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void accept(TokenPath sequence) {
+        SymbolTable symbols = sequence.getSymbols();
+        try {
+            for (int i = 0; i < sequence.size(); i++) {
+                String token = symbols.symbol(sequence.tokenAt(i));
+                if (token.indexOf('\n') >= 0 || token.indexOf('\r') >= 0) {
+                    token = token.replace("\r\n", " ").replace('\n', ' ').replace('\r', ' ');
+                }
+                writer.write(token);
+            }
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        sequenceCount++;
+    }
+
+    public long getSequenceCount() {
+        return sequenceCount;
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
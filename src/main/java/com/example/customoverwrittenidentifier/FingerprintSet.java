@@ -0,0 +1,70 @@
+package com.example.customoverwrittenidentifier;
+
+/**
+ * The 128-bit fingerprints of the sequences seen so far (see TokenPath), in an open-addressing table of longs:
+ * 16 bytes a slot, and no object per entry. The table is kept at most two thirds full.
+ */
+public class FingerprintSet {
+
+    // high, low of each slot; (0, 0) is an empty slot
+    private long[] table;
+
+    private int size = 0;
+
+    private int mask;
+
+    public FingerprintSet() {
+        table = new long[2 * 1024];
+        mask = 1024 - 1;
+    }
+
+    /**
+     * Add a fingerprint. Returns false when it was already there.
+     */
+    public boolean add(long high, long low) {
+        if (high == 0 && low == 0) {
+            low = TokenPath.MODULUS; // no hash takes this value, so it cannot clash with another fingerprint
+        }
+        int slot = slot(high, low);
+        while (table[2 * slot] != 0 || table[2 * slot + 1] != 0) {
+            if (table[2 * slot] == high && table[2 * slot + 1] == low) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[2 * slot] = high;
+        table[2 * slot + 1] = low;
+        if (++size * 3 > (mask + 1) * 2) {
+            grow();
+        }
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int slot(long high, long low) {
+        return (int) ((high ^ low * 0x9e3779b97f4a7c15L) >>> 32) & mask;
+    }
+
+    private void grow() {
+        long[] old = table;
+        int capacity = (mask + 1) * 2;
+        table = new long[2 * capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < old.length; i += 2) {
+            long high = old[i];
+            long low = old[i + 1];
+            if (high == 0 && low == 0) {
+                continue;
+            }
+            int slot = slot(high, low);
+            while (table[2 * slot] != 0 || table[2 * slot + 1] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[2 * slot] = high;
+            table[2 * slot + 1] = low;
+        }
+    }
+}
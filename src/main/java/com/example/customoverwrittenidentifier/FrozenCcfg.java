@@ -0,0 +1,372 @@
+package com.example.customoverwrittenidentifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A finished CCFG in a compact, read-only form. Node is the builder: it needs its lists of fathers, loops,
+ * switches and pending functions while the graph grows, but once the graph is built every vertex only needs
+ * its type, its name and a few neighbours. Here a vertex is an int (the entry is 0, the others follow in
+ * depth-first order), children and fathers are CSR arrays (the neighbours of v are targets[offsets[v]] up to
+ * targets[offsets[v + 1]]), the types are a byte array, and the exits and partners that Node looks up by
+ * scanning children are computed once, so the queries are array operations.
+ *
+ * A frozen graph is never changed, so any number of threads can query it at once; the traversals keep their
+ * state in a local bit set.
+ */
+public final class FrozenCcfg {
+
+    public static final int NONE = -1;
+
+    private static final Node.NodeTypes[] TYPES = Node.NodeTypes.values();
+
+    private static final byte RECURSIVE = 1;
+    private static final byte FIRST_MEMBER_OF_MULTIPLE_FUNCTIONS = 2;
+
+    private final int size;
+
+    private final byte[] types;
+
+    private final byte[] flags;
+
+    // names are shared: most vertices of a CCFG repeat a few method and statement names
+    private final int[] nameIds;
+
+    private final String[] names;
+
+    private final int[] childOffsets;
+
+    private final int[] children;
+
+    private final int[] fatherOffsets;
+
+    private final int[] fathers;
+
+    private final int[] partners;
+
+    private final int[] mainFathers;
+
+    private final int[] pointerCounts;
+
+    private final int[] veryNextStatements;
+
+    // the most inner loop, and the most inner loop or switch, around each vertex
+    private final int[] innerLoops;
+
+    private final int[] innerLoopsOrSwitches;
+
+    // per vertex: its first LOOP_EXIT child, its first LOOP_EXIT or SWITCH_EXIT child, and its last exit child
+    // of any kind (the one getChildlessNodes leaves out)
+    private final int[] loopExits;
+
+    private final int[] loopOrSwitchExits;
+
+    private final int[] exitPoints;
+
+    // the function node a recursive METHOD vertex repeats, from its chain of potential functions
+    private final int[] originalFunctions;
+
+    private FrozenCcfg(int size) {
+        this.size = size;
+        this.types = new byte[size];
+        this.flags = new byte[size];
+        this.nameIds = new int[size];
+        this.childOffsets = new int[size + 1];
+        this.fatherOffsets = new int[size + 1];
+        this.partners = new int[size];
+        this.mainFathers = new int[size];
+        this.pointerCounts = new int[size];
+        this.veryNextStatements = new int[size];
+        this.innerLoops = new int[size];
+        this.innerLoopsOrSwitches = new int[size];
+        this.loopExits = new int[size];
+        this.loopOrSwitchExits = new int[size];
+        this.exitPoints = new int[size];
+        this.originalFunctions = new int[size];
+        this.children = null;
+        this.fathers = null;
+        this.names = null;
+    }
+
+    private FrozenCcfg(FrozenCcfg shell, int[] children, int[] fathers, String[] names) {
+        this.size = shell.size;
+        this.types = shell.types;
+        this.flags = shell.flags;
+        this.nameIds = shell.nameIds;
+        this.childOffsets = shell.childOffsets;
+        this.fatherOffsets = shell.fatherOffsets;
+        this.partners = shell.partners;
+        this.mainFathers = shell.mainFathers;
+        this.pointerCounts = shell.pointerCounts;
+        this.veryNextStatements = shell.veryNextStatements;
+        this.innerLoops = shell.innerLoops;
+        this.innerLoopsOrSwitches = shell.innerLoopsOrSwitches;
+        this.loopExits = shell.loopExits;
+        this.loopOrSwitchExits = shell.loopOrSwitchExits;
+        this.exitPoints = shell.exitPoints;
+        this.originalFunctions = shell.originalFunctions;
+        this.children = children;
+        this.fathers = fathers;
+        this.names = names;
+    }
+
+    /**
+     * Freeze the graph reachable from the entry node through children. Fathers, partners and the other links
+     * are kept when they point into that graph and dropped otherwise.
+     */
+    public static FrozenCcfg freeze(Node entry) {
+        List<Node> order = new ArrayList<>();
+        Map<Node, Integer> ids = new IdentityHashMap<>();
+        // depth first, children in order, with an explicit stack so deep graphs do not overflow the Java stack
+        List<Node> stack = new ArrayList<>();
+        stack.add(entry);
+        while (!stack.isEmpty()) {
+            Node node = stack.remove(stack.size() - 1);
+            if (ids.containsKey(node)) {
+                continue;
+            }
+            ids.put(node, order.size());
+            order.add(node);
+            List<Node> nodeChildren = node.getChildren();
+            for (int i = nodeChildren.size() - 1; i >= 0; i--) {
+                if (!ids.containsKey(nodeChildren.get(i))) {
+                    stack.add(nodeChildren.get(i));
+                }
+            }
+        }
+
+        int size = order.size();
+        FrozenCcfg shell = new FrozenCcfg(size);
+        Map<String, Integer> nameTable = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        int childCount = 0;
+        int fatherCount = 0;
+        for (int v = 0; v < size; v++) {
+            Node node = order.get(v);
+            shell.types[v] = (byte) node.getNodeType().ordinal();
+            shell.flags[v] = (byte) ((node.isMethodRecursive() ? RECURSIVE : 0)
+                    | (node.isMethodFirstMemberOfMultipleFunctions() ? FIRST_MEMBER_OF_MULTIPLE_FUNCTIONS : 0));
+            shell.nameIds[v] = nameTable.computeIfAbsent(node.getName(), name -> {
+                names.add(name);
+                return names.size() - 1;
+            });
+            childCount += node.getChildren().size();
+            shell.childOffsets[v + 1] = childCount;
+            for (Node father : node.getFathers()) {
+                if (ids.containsKey(father)) {
+                    fatherCount++;
+                }
+            }
+            shell.fatherOffsets[v + 1] = fatherCount;
+            shell.partners[v] = idOf(ids, node.getPartner());
+            shell.mainFathers[v] = idOf(ids, node.getMainFather());
+            shell.pointerCounts[v] = node.getPointerCounts();
+            shell.veryNextStatements[v] = idOf(ids, node.getVeryNextStatementNodeOfLatterPartOfAMethod());
+            shell.innerLoops[v] = idOf(ids, node.getMostInnerLoop());
+            shell.innerLoopsOrSwitches[v] = idOf(ids, node.getMostInnerLoopsOrSwitch());
+            shell.originalFunctions[v] = idOf(ids, node.getTheOriginalFunctionNode());
+        }
+
+        int[] children = new int[childCount];
+        int[] fathers = new int[fatherCount];
+        for (int v = 0; v < size; v++) {
+            Node node = order.get(v);
+            int at = shell.childOffsets[v];
+            int loopExit = NONE;
+            int loopOrSwitchExit = NONE;
+            int exitPoint = NONE;
+            for (Node child : node.getChildren()) {
+                int c = ids.get(child);
+                children[at++] = c;
+                Node.NodeTypes type = child.getNodeType();
+                if (type == Node.NodeTypes.LOOP_EXIT && loopExit == NONE) {
+                    loopExit = c;
+                }
+                if ((type == Node.NodeTypes.LOOP_EXIT || type == Node.NodeTypes.SWITCH_EXIT) && loopOrSwitchExit == NONE) {
+                    loopOrSwitchExit = c;
+                }
+                if (type == Node.NodeTypes.LOOP_EXIT || type == Node.NodeTypes.SWITCH_EXIT
+                        || type == Node.NodeTypes.METHOD_EXIT) {
+                    exitPoint = c;
+                }
+            }
+            shell.loopExits[v] = loopExit;
+            shell.loopOrSwitchExits[v] = loopOrSwitchExit;
+            shell.exitPoints[v] = exitPoint;
+            at = shell.fatherOffsets[v];
+            for (Node father : node.getFathers()) {
+                Integer f = ids.get(father);
+                if (f != null) {
+                    fathers[at++] = f;
+                }
+            }
+        }
+        return new FrozenCcfg(shell, children, fathers, names.toArray(new String[0]));
+    }
+
+    private static int idOf(Map<Node, Integer> ids, Node node) {
+        Integer id = node == null ? null : ids.get(node);
+        return id == null ? NONE : id;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getEntry() {
+        return 0;
+    }
+
+    public String getName(int v) {
+        return names[nameIds[v]];
+    }
+
+    // equal for the vertices with equal names, so names can be compared as ints
+    public int getNameId(int v) {
+        return nameIds[v];
+    }
+
+    public int getNameCount() {
+        return names.length;
+    }
+
+    public Node.NodeTypes getNodeType(int v) {
+        return TYPES[types[v]];
+    }
+
+    public boolean isMethodRecursive(int v) {
+        return (flags[v] & RECURSIVE) != 0;
+    }
+
+    public boolean isMethodFirstMemberOfMultipleFunctions(int v) {
+        return (flags[v] & FIRST_MEMBER_OF_MULTIPLE_FUNCTIONS) != 0;
+    }
+
+    public int getChildCount(int v) {
+        return childOffsets[v + 1] - childOffsets[v];
+    }
+
+    // the i-th child of v, in the order the children were added
+    public int getChild(int v, int i) {
+        return children[childOffsets[v] + i];
+    }
+
+    public int[] getChildren(int v) {
+        return Arrays.copyOfRange(children, childOffsets[v], childOffsets[v + 1]);
+    }
+
+    public boolean hasChild(int v) {
+        return childOffsets[v + 1] > childOffsets[v];
+    }
+
+    public int getFatherCount(int v) {
+        return fatherOffsets[v + 1] - fatherOffsets[v];
+    }
+
+    public int getFather(int v, int i) {
+        return fathers[fatherOffsets[v] + i];
+    }
+
+    public int[] getFathers(int v) {
+        return Arrays.copyOfRange(fathers, fatherOffsets[v], fatherOffsets[v + 1]);
+    }
+
+    public int getPartner(int v) {
+        return partners[v];
+    }
+
+    public int getMainFather(int v) {
+        return mainFathers[v];
+    }
+
+    public int getPointerCounts(int v) {
+        return pointerCounts[v];
+    }
+
+    public int getVeryNextStatementNodeOfLatterPartOfAMethod(int v) {
+        return veryNextStatements[v];
+    }
+
+    public int getMostInnerLoop(int v) {
+        return innerLoops[v];
+    }
+
+    public int getExitPointOfMostInnerLoop(int v) {
+        int loop = innerLoops[v];
+        return loop == NONE ? NONE : loopExits[loop];
+    }
+
+    public int getMostInnerLoopsOrSwitch(int v) {
+        return innerLoopsOrSwitches[v];
+    }
+
+    public int getExitPointOfMostInnerLoopsOrSwitch(int v) {
+        int loopOrSwitch = innerLoopsOrSwitches[v];
+        return loopOrSwitch == NONE ? NONE : loopOrSwitchExits[loopOrSwitch];
+    }
+
+    public boolean doesThisExitsInChainPotentialFunctions(int v) {
+        return originalFunctions[v] != NONE;
+    }
+
+    public int getTheOriginalFunctionNode(int v) {
+        return originalFunctions[v];
+    }
+
+    /**
+     * The vertices without children below v, of the given type or of any type with ALL, in depth-first order;
+     * the exit point of v itself is left out.
+     */
+    public int[] getChildlessNodes(int v, Node.NodeTypes nodeType) {
+        return collect(v, nodeType, true);
+    }
+
+    /**
+     * The vertices of the given type below v that have exactly one child, in depth-first order.
+     */
+    public int[] getSingleChildNodes(int v, Node.NodeTypes nodeType) {
+        return collect(v, nodeType, false);
+    }
+
+    private int[] collect(int from, Node.NodeTypes nodeType, boolean childless) {
+        byte target = (byte) nodeType.ordinal();
+        boolean anyType = nodeType == Node.NodeTypes.ALL;
+        int excluded = childless ? exitPoints[from] : NONE;
+        BitSet visited = new BitSet(size);
+        int[] stack = new int[Math.max(16, children.length + 1)];
+        int top = 0;
+        int[] found = new int[16];
+        int count = 0;
+        stack[top++] = from;
+        while (top > 0) {
+            int v = stack[--top];
+            if (visited.get(v)) {
+                continue;
+            }
+            visited.set(v);
+            int first = childOffsets[v];
+            int last = childOffsets[v + 1];
+            boolean matches = childless
+                    ? first == last && (anyType || types[v] == target) && v != excluded
+                    : last - first == 1 && types[v] == target;
+            if (matches) {
+                if (count == found.length) {
+                    found = Arrays.copyOf(found, count * 2);
+                }
+                found[count++] = v;
+            }
+            // pushed in reverse, so the first child is walked first like in the recursive version
+            for (int i = last - 1; i >= first; i--) {
+                if (!visited.get(children[i])) {
+                    stack[top++] = children[i];
+                }
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+}
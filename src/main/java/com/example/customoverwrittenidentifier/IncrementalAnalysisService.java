@@ -0,0 +1,319 @@
+package com.example.customoverwrittenidentifier;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiModificationTracker;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps the sequences of every callback between two runs, and explores again only the callbacks that an edit
+ * can have changed.
+ *
+ * A PSI listener collects the methods whose bodies were edited, and the reverse call map recorded by the
+ * explorer leads from them to the callbacks that expand them. Those callbacks, and all the callbacks of the
+ * edited files (an edit may add or remove one), are explored again; the others are replayed from their kept
+ * buffers. An edit outside of a method body (a signature, a field, an import, a new file) can change how calls
+ * resolve anywhere in the project, so it makes the next run a full one.
+ *
+ * The kept buffers stay on the heap up to MAX_KEPT_TOKENS in all; the buffers kept past that are moved to
+ * their temporary files (see TokenBuffer.moveToDisk), so the heap does not grow with the number of callbacks.
+ */
+public final class IncrementalAnalysisService implements Disposable {
+
+    private static final Logger LOG = Logger.getInstance(IncrementalAnalysisService.class);
+
+    static final long MAX_KEPT_TOKENS = 16 * 1024 * 1024;
+
+    private final Project project;
+
+    // everything below is guarded by this; the listener only touches the pending changes
+    private SymbolTable symbols = new SymbolTable();
+
+    private CallDependencies dependencies = new CallDependencies();
+
+    private List<CallbackEntry> callbacks = null;
+
+    private final Set<String> editedMethods = new HashSet<>();
+
+    private final Set<VirtualFile> editedFiles = new LinkedHashSet<>();
+
+    private boolean fullRunNeeded = true;
+
+    // the budget the kept buffers were generated with; another one in the settings makes the next run a full one
+    private SequenceBudget budget = null;
+
+    // the tokens of the kept buffers that are on the heap
+    private long keptTokens = 0;
+
+    private static final class CallbackEntry {
+        private final SmartPsiElementPointer<PsiMethod> pointer;
+        private final String key;
+        private final VirtualFile file;
+        private ParallelSequenceEngine.CallbackResult result = null;
+        private int resultTokens = 0;
+
+        private CallbackEntry(SmartPsiElementPointer<PsiMethod> pointer, String key, VirtualFile file) {
+            this.pointer = pointer;
+            this.key = key;
+            this.file = file;
+        }
+    }
+
+    public IncrementalAnalysisService(Project project) {
+        this.project = project;
+        PsiManager.getInstance(project).addPsiTreeChangeListener(new EditListener(), this);
+    }
+
+    public static IncrementalAnalysisService getInstance(Project project) {
+        return project.getService(IncrementalAnalysisService.class);
+    }
+
+    // the depth every run of the service explores to
+    public int getMaxDepth() {
+        return CallSequenceExplorer.MAX_DEPTH;
+    }
+
+    /**
+     * Stream the sequences of every callback to the sink, like CallSequenceAnalysis.run, reusing what did not
+     * change since the previous run. Runs of the same project wait for each other.
+     */
+    public synchronized void run(ProgressIndicator indicator, SequenceSink sink) {
+        Set<String> edited;
+        Set<VirtualFile> files;
+        boolean full;
+        SequenceBudget settingsBudget = CcfgSettings.getInstance(project).getBudget();
+        synchronized (editedMethods) {
+            edited = new HashSet<>(editedMethods);
+            files = new LinkedHashSet<>(editedFiles);
+            full = fullRunNeeded || callbacks == null || !settingsBudget.equals(budget);
+            editedMethods.clear();
+            editedFiles.clear();
+            fullRunNeeded = false;
+        }
+
+        CallSequenceAnalysis analysis = new CallSequenceAnalysis(project, getMaxDepth());
+        boolean completed = false;
+        try {
+            if (full) {
+                forgetCallbacks();
+                symbols = new SymbolTable();
+                dependencies = new CallDependencies();
+                callbacks = toEntries(analysis.collectCallbacks(indicator), indicator);
+                budget = settingsBudget;
+            } else {
+                dependencies.removeCallsFrom(edited);
+                Set<String> affected = dependencies.dependentsOf(edited);
+                for (CallbackEntry callback : callbacks) {
+                    if (affected.contains(callback.key)) {
+                        forgetResult(callback);
+                    }
+                }
+                for (VirtualFile file : files) {
+                    replaceCallbacksOf(file, analysis, indicator);
+                }
+            }
+
+            List<SmartPsiElementPointer<PsiMethod>> pointers = new ArrayList<>(callbacks.size());
+            for (CallbackEntry callback : callbacks) {
+                pointers.add(callback.pointer);
+            }
+            List<CallbackEntry> entries = callbacks;
+            boolean graphEngine = CcfgSettings.getInstance(project).isGraphEngine();
+            // the graph does not use the method summaries, so their store stays closed
+            PersistentSummaryStore diskSummaries = graphEngine ? null : PersistentSummaryStore.openOrNull(project, symbols);
+            try {
+                MethodSummaryCache summaryCache = new MethodSummaryCache(
+                        PsiModificationTracker.getInstance(project), diskSummaries);
+                CallSequenceExplorer explorer = new CallSequenceExplorer(
+                        project.getBasePath(), symbols, summaryCache, dependencies, getMaxDepth());
+                new ParallelSequenceEngine(project, explorer, ParallelSequenceEngine.defaultParallelism(), graphEngine,
+                        settingsBudget)
+                        .explore(pointers, indicator, sink, new ParallelSequenceEngine.ResultCache() {
+                            @Override
+                            public ParallelSequenceEngine.CallbackResult get(int index) {
+                                return entries.get(index).result;
+                            }
+
+                            @Override
+                            public void put(int index, ParallelSequenceEngine.CallbackResult result) {
+                                keep(entries.get(index), result);
+                            }
+                        });
+                LOG.info(explorer.getResolutionCache().toString());
+            } finally {
+                if (diskSummaries != null) {
+                    diskSummaries.close();
+                }
+            }
+            completed = true;
+        } finally {
+            if (!completed) {
+                // a cancelled run leaves the call map half recorded; start over next time
+                synchronized (editedMethods) {
+                    fullRunNeeded = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Collect the callbacks of an edited file again, in place of the ones it had.
+     */
+    private void replaceCallbacksOf(VirtualFile file, CallSequenceAnalysis analysis, ProgressIndicator indicator) {
+        List<CallbackEntry> collected = file.isValid()
+                ? toEntries(analysis.collectCallbacks(indicator, GlobalSearchScope.fileScope(project, file)), indicator)
+                : new ArrayList<>();
+        List<CallbackEntry> replaced = new ArrayList<>(callbacks.size() + collected.size());
+        boolean inserted = false;
+        for (CallbackEntry callback : callbacks) {
+            if (!file.equals(callback.file)) {
+                replaced.add(callback);
+                continue;
+            }
+            forgetResult(callback);
+            if (!inserted) {
+                replaced.addAll(collected);
+                inserted = true;
+            }
+        }
+        if (!inserted) {
+            replaced.addAll(collected);
+        }
+        callbacks = replaced;
+    }
+
+    private List<CallbackEntry> toEntries(List<SmartPsiElementPointer<PsiMethod>> pointers,
+                                          ProgressIndicator indicator) {
+        return ReadAction
+                .nonBlocking(() -> {
+                    List<CallbackEntry> entries = new ArrayList<>(pointers.size());
+                    for (SmartPsiElementPointer<PsiMethod> pointer : pointers) {
+                        PsiMethod method = pointer.getElement();
+                        if (method != null) {
+                            entries.add(new CallbackEntry(pointer, CallDependencies.keyOf(method), pointer.getVirtualFile()));
+                        }
+                    }
+                    return entries;
+                })
+                .inSmartMode(project)
+                .wrapProgress(indicator)
+                .executeSynchronously();
+    }
+
+    private void keep(CallbackEntry callback, ParallelSequenceEngine.CallbackResult result) {
+        int tokens = result.getInMemoryTokens();
+        if (tokens == 0 || keptTokens + tokens > MAX_KEPT_TOKENS) {
+            result.moveToDisk(); // also closes the file of a buffer that spilled on its own
+            tokens = 0;
+        }
+        callback.result = result;
+        callback.resultTokens = tokens;
+        keptTokens += tokens;
+    }
+
+    private void forgetResult(CallbackEntry callback) {
+        if (callback.result != null) {
+            callback.result.discard();
+            callback.result = null;
+            keptTokens -= callback.resultTokens;
+            callback.resultTokens = 0;
+        }
+    }
+
+    private void forgetCallbacks() {
+        if (callbacks != null) {
+            for (CallbackEntry callback : callbacks) {
+                forgetResult(callback);
+            }
+            callbacks = null;
+        }
+    }
+
+    @Override
+    public void dispose() {
+        synchronized (this) {
+            forgetCallbacks();
+        }
+    }
+
+    /**
+     * Records which method bodies an edit touched. It runs inside the write action, so it only looks at the PSI.
+     */
+    private class EditListener extends PsiTreeChangeAdapter {
+
+        @Override
+        public void childAdded(@NotNull PsiTreeChangeEvent event) {
+            edited(event);
+        }
+
+        @Override
+        public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+            edited(event);
+        }
+
+        @Override
+        public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+            edited(event);
+        }
+
+        @Override
+        public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+            edited(event);
+        }
+
+        @Override
+        public void childMoved(@NotNull PsiTreeChangeEvent event) {
+            edited(event);
+        }
+
+        @Override
+        public void propertyChanged(@NotNull PsiTreeChangeEvent event) {
+            edited(event);
+        }
+
+        private void edited(PsiTreeChangeEvent event) {
+            PsiFile file = event.getFile();
+            if (file != null && !(file instanceof PsiJavaFile)) {
+                return; // layouts, manifests and the like do not take part in the sequences
+            }
+            List<PsiMethod> methods = file == null ? new ArrayList<>() : methodBodiesAround(event.getParent());
+            synchronized (editedMethods) {
+                if (methods.isEmpty()) {
+                    fullRunNeeded = true;
+                    return;
+                }
+                for (PsiMethod method : methods) {
+                    editedMethods.add(CallDependencies.keyOf(method));
+                }
+                if (file.getVirtualFile() != null) {
+                    editedFiles.add(file.getVirtualFile());
+                }
+            }
+        }
+
+        // every method whose body contains the element; an edit in a local or anonymous class is an edit of the
+        // method that declares the class too, since nothing outside of that method can call into the class
+        private List<PsiMethod> methodBodiesAround(@Nullable PsiElement element) {
+            List<PsiMethod> methods = new ArrayList<>();
+            for (PsiElement current = element; current != null && !(current instanceof PsiFile); current = current.getParent()) {
+                if (current instanceof PsiCodeBlock && current.getParent() instanceof PsiMethod) {
+                    methods.add((PsiMethod) current.getParent());
+                }
+            }
+            return methods;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.customoverwrittenidentifier;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A method body lowered out of the PSI (see MethodIrCache): the statements the explorer cares about, tagged
+ * with their kind, their texts already interned in the symbol table, and their calls already resolved to the
+ * ids of other MethodIrs. It is immutable and holds no PSI, so once lowered it is read without a read action,
+ * from any thread.
+ */
+public final class MethodIr {
+
+    /**
+     * The callee of a call that does not resolve.
+     */
+    public static final int UNRESOLVED = -1;
+
+    /**
+     * The callee of a call that resolves outside the project.
+     */
+    public static final int EXTERNAL = -2;
+
+    /**
+     * What a statement is, and what its tokens and children mean.
+     */
+    public enum Kind {
+        // children: the statements, side by side
+        BLOCK,
+        // tokens: the condition; children: the then branch and the else branch, either may be null. An else
+        // branch that is an IF is an else-if.
+        IF,
+        // tokens: the condition, the exit; children: the body, may be null
+        LOOP,
+        // tokens: " --> Do", the condition, the exit; children: the body, may be null
+        DO_WHILE,
+        // children: CASE labels and the statements after them, in order; null without a body
+        SWITCH,
+        // tokens: the label
+        CASE,
+        // children: its TRY_BLOCK, CATCH and FINALLY sections
+        TRY,
+        // tokens: the section's token; children: its block, may be null for a CATCH
+        TRY_BLOCK,
+        CATCH,
+        FINALLY,
+        // tokens: the one token it leaves on the path
+        BREAK,
+        CONTINUE,
+        STATEMENT,
+        // tokens: each one ends a sequence on its own, and none stays on the path
+        EMIT,
+        // tokens: " --> name", then " (external)" for an external callee
+        CALL,
+        // tokens: "[Assignment with MethodCall: x = ", the callee's "name]" or "[UnresolvedCall]]", then
+        // " (external assignment)" for an external callee
+        ASSIGNMENT_CALL
+    }
+
+    public static final class Statement {
+
+        private static final Statement[] NO_CHILDREN = new Statement[0];
+
+        private final Kind kind;
+
+        private final int[] tokens;
+
+        private final Statement[] children;
+
+        private final int callee;
+
+        Statement(Kind kind, int[] tokens, @Nullable Statement[] children, int callee) {
+            this.kind = kind;
+            this.tokens = tokens;
+            this.children = children;
+            this.callee = callee;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public int getTokenCount() {
+            return tokens.length;
+        }
+
+        public int getToken(int i) {
+            return tokens[i];
+        }
+
+        /**
+         * The children, see Kind. Null only for a SWITCH without a body. Not to be modified.
+         */
+        @Nullable
+        public Statement[] getChildren() {
+            return children;
+        }
+
+        @Nullable
+        public Statement getChild(int i) {
+            return children == null || i >= children.length ? null : children[i];
+        }
+
+        /**
+         * The id of the called method for a CALL or an ASSIGNMENT_CALL, or UNRESOLVED or EXTERNAL.
+         */
+        public int getCallee() {
+            return callee;
+        }
+
+        static Statement[] noChildren() {
+            return NO_CHILDREN;
+        }
+    }
+
+    private final int id;
+
+    private final String name;
+
+    private final String key;
+
+    private final Statement body;
+
+    private final int[] callees;
+
+    MethodIr(int id, String name, String key, @Nullable Statement body, int[] callees) {
+        this.id = id;
+        this.name = name;
+        this.key = key;
+        this.body = body;
+        this.callees = callees;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The method's CallDependencies key.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * The body as a BLOCK, or null when the method has none.
+     */
+    @Nullable
+    public Statement getBody() {
+        return body;
+    }
+
+    public boolean isEmpty() {
+        return body == null || body.getChildren().length == 0;
+    }
+
+    /**
+     * The ids of the project methods the body calls, each once. Not to be modified.
+     */
+    public int[] getCallees() {
+        return callees;
+    }
+}
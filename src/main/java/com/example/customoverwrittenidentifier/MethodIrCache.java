@@ -0,0 +1,392 @@
+package com.example.customoverwrittenidentifier;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lowers method bodies to MethodIr, each once per run: a method called from many callbacks is walked in the
+ * PSI only the first time. Lowering needs a read action; what it returns does not.
+ *
+ * Shared by the worker threads of a run. Like CallSiteResolutionCache, everything is dropped as soon as the PSI
+ * changes. Ids are only valid within the Lowered they come with.
+ */
+public class MethodIrCache {
+
+    /**
+     * A callback and the bodies it reaches within the depth limit, lowered. It has its own map of the methods
+     * it reached, so the cache can go on lowering for other callbacks while it is read. The callees one level
+     * past the depth limit are only named (no body, no callees), since their bodies are never expanded.
+     */
+    public static final class Lowered {
+        private final MethodIr callback;
+        private final Map<Integer, MethodIr> methods;
+
+        Lowered(MethodIr callback, Map<Integer, MethodIr> methods) {
+            this.callback = callback;
+            this.methods = methods;
+        }
+
+        public MethodIr getCallback() {
+            return callback;
+        }
+
+        /**
+         * The method with this id; every callee of a reached body is there.
+         */
+        public MethodIr get(int id) {
+            return methods.get(id);
+        }
+
+        // every reached method, the callback first
+        public Collection<MethodIr> getMethods() {
+            return methods.values();
+        }
+    }
+
+    // the ids and bodies of one PSI state; replaced, not cleared, when the PSI changes
+    private static final class Generation {
+        private final long modificationCount;
+        private final Map<PsiMethod, Integer> ids = new HashMap<>();
+        private final List<PsiMethod> methodsById = new ArrayList<>();
+        private MethodIr[] methods = new MethodIr[256];
+
+        private Generation(long modificationCount) {
+            this.modificationCount = modificationCount;
+        }
+    }
+
+    private final SymbolTable symbols;
+
+    private final CallSiteResolutionCache resolutionCache;
+
+    private final ModificationTracker modificationTracker;
+
+    private Generation generation;
+
+    public MethodIrCache(SymbolTable symbols, CallSiteResolutionCache resolutionCache, ModificationTracker modificationTracker) {
+        this.symbols = symbols;
+        this.resolutionCache = resolutionCache;
+        this.modificationTracker = modificationTracker;
+        this.generation = new Generation(modificationTracker.getModificationCount());
+    }
+
+    /**
+     * Lower the callback and, breadth first, the bodies it calls into down to the depth limit, plus the callees
+     * one level further that only need to be told apart.
+     */
+    public Lowered lowerReachable(PsiMethod callback, int maxDepth) {
+        Generation current = currentGeneration();
+        MethodIr root = lower(current, callback);
+        Map<Integer, MethodIr> reached = new LinkedHashMap<>();
+        reached.put(root.getId(), root);
+        List<MethodIr> level = List.of(root);
+        // the callees found at depth d are at depth d + 1, past the limit when d is the limit itself; the
+        // callback's own callees are named even when the limit leaves its body unexpanded
+        for (int depth = 1; depth <= Math.max(maxDepth, 1) && !level.isEmpty(); depth++) {
+            List<MethodIr> next = new ArrayList<>();
+            for (MethodIr method : level) {
+                for (int callee : method.getCallees()) {
+                    if (!reached.containsKey(callee)) {
+                        PsiMethod psiMethod = methodOf(current, callee);
+                        MethodIr lowered = depth < maxDepth ? lower(current, psiMethod) : named(current, psiMethod);
+                        reached.put(callee, lowered);
+                        next.add(lowered);
+                    }
+                }
+            }
+            level = next;
+        }
+        return new Lowered(root, reached);
+    }
+
+    private synchronized Generation currentGeneration() {
+        long modificationCount = modificationTracker.getModificationCount();
+        if (generation.modificationCount != modificationCount) {
+            generation = new Generation(modificationCount);
+        }
+        return generation;
+    }
+
+    private MethodIr lower(Generation current, PsiMethod method) {
+        int id = idOf(current, method);
+        synchronized (this) {
+            if (current.methods[id] != null) {
+                return current.methods[id];
+            }
+        }
+        Lowering lowering = new Lowering(current);
+        PsiCodeBlock body = method.getBody();
+        MethodIr lowered = new MethodIr(id, method.getName(), CallDependencies.keyOf(method),
+                body == null ? null : lowering.block(body), lowering.callees());
+        // two threads may lower the same method at once; both get the same result, the first one is kept
+        synchronized (this) {
+            if (current.methods[id] == null) {
+                current.methods[id] = lowered;
+            }
+            return current.methods[id];
+        }
+    }
+
+    // the method's name and key only, taken from its lowering when there is one already; not cached
+    private MethodIr named(Generation current, PsiMethod method) {
+        int id = idOf(current, method);
+        MethodIr lowered;
+        synchronized (this) {
+            lowered = current.methods[id];
+        }
+        if (lowered != null) {
+            return new MethodIr(id, lowered.getName(), lowered.getKey(), null, new int[0]);
+        }
+        return new MethodIr(id, method.getName(), CallDependencies.keyOf(method), null, new int[0]);
+    }
+
+    private synchronized int idOf(Generation current, PsiMethod method) {
+        Integer id = current.ids.get(method);
+        if (id == null) {
+            id = current.ids.size();
+            current.ids.put(method, id);
+            current.methodsById.add(method);
+            if (id == current.methods.length) {
+                current.methods = Arrays.copyOf(current.methods, id * 2);
+            }
+        }
+        return id;
+    }
+
+    private synchronized PsiMethod methodOf(Generation current, int id) {
+        return current.methodsById.get(id);
+    }
+
+    /**
+     * The lowering of one body, with the callees it finds.
+     */
+    private final class Lowering {
+
+        private final Generation current;
+
+        private final Set<Integer> callees = new LinkedHashSet<>();
+
+        private Lowering(Generation current) {
+            this.current = current;
+        }
+
+        private int[] callees() {
+            return callees.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        private MethodIr.Statement block(PsiCodeBlock block) {
+            PsiStatement[] statements = block.getStatements();
+            MethodIr.Statement[] lowered = new MethodIr.Statement[statements.length];
+            for (int i = 0; i < statements.length; i++) {
+                lowered[i] = statement(statements[i]);
+            }
+            return node(MethodIr.Kind.BLOCK, lowered);
+        }
+
+        @Nullable
+        private MethodIr.Statement statement(@Nullable PsiStatement statement) {
+            ProgressManager.checkCanceled();
+            if (statement == null) {
+                return null;
+            }
+
+            switch (CallSequenceExplorer.getStatementType(statement)) {
+                case "If":
+                    return ifStatement((PsiIfStatement) statement);
+                case "For": {
+                    PsiExpression condition = ((PsiForStatement) statement).getCondition();
+                    String conditionText = (condition == null) ? "For (?)" : ("For (" + condition.getText() + ")");
+                    return node(MethodIr.Kind.LOOP, tokens(" --> " + conditionText, " --> (exit for)"),
+                            statement(((PsiForStatement) statement).getBody()));
+                }
+                case "While": {
+                    PsiExpression condition = ((PsiWhileStatement) statement).getCondition();
+                    String conditionText = (condition == null) ? "While (?)" : ("While (" + condition.getText() + ")");
+                    return node(MethodIr.Kind.LOOP, tokens(" --> " + conditionText, " --> (exit while)"),
+                            statement(((PsiWhileStatement) statement).getBody()));
+                }
+                case "Do While": {
+                    PsiExpression condition = ((PsiDoWhileStatement) statement).getCondition();
+                    String condText = (condition == null) ? "(?)" : condition.getText();
+                    return node(MethodIr.Kind.DO_WHILE,
+                            tokens(" --> Do", " --> While(" + condText + ")", " --> (exit do-while)"),
+                            statement(((PsiDoWhileStatement) statement).getBody()));
+                }
+                case "Switch":
+                    return switchStatement((PsiSwitchStatement) statement);
+                case "Try":
+                    return tryStatement((PsiTryStatement) statement);
+                case "Break":
+                    return leaf(MethodIr.Kind.BREAK, tokens(" --> Break"));
+                case "Continue":
+                    return leaf(MethodIr.Kind.CONTINUE, tokens(" --> Continue"));
+                case "MethodCall":
+                    return methodCall((PsiMethodCallExpression) ((PsiExpressionStatement) statement).getExpression());
+                case "Declaration":
+                    return declaration((PsiDeclarationStatement) statement);
+                case "Assignment":
+                    return assignment((PsiExpressionStatement) statement);
+                case "IncrementDecrement":
+                    return leaf(MethodIr.Kind.STATEMENT, tokens(" --> [Increment/Decrement: " + statement.getText() + "]"));
+                default:
+                    if (statement instanceof PsiBlockStatement) {
+                        return block(((PsiBlockStatement) statement).getCodeBlock());
+                    }
+                    return leaf(MethodIr.Kind.EMIT, tokens(" --> [Unidentified Statement]"));
+            }
+        }
+
+        private MethodIr.Statement ifStatement(PsiIfStatement ifStmt) {
+            PsiExpression condition = ifStmt.getCondition();
+            String conditionText = (condition == null) ? "If (?)" : ("If (" + condition.getText() + ")");
+            PsiStatement elseBranch = ifStmt.getElseBranch();
+            return node(MethodIr.Kind.IF, tokens(" --> " + conditionText),
+                    statement(ifStmt.getThenBranch()),
+                    elseBranch instanceof PsiIfStatement ? ifStatement((PsiIfStatement) elseBranch) : statement(elseBranch));
+        }
+
+        private MethodIr.Statement switchStatement(PsiSwitchStatement switchStmt) {
+            PsiCodeBlock body = switchStmt.getBody();
+            if (body == null) {
+                return new MethodIr.Statement(MethodIr.Kind.SWITCH, new int[0], null, MethodIr.UNRESOLVED);
+            }
+            List<MethodIr.Statement> children = new ArrayList<>();
+            for (PsiStatement st : body.getStatements()) {
+                if (st instanceof PsiSwitchLabelStatement) {
+                    PsiSwitchLabelStatement labelStmt = (PsiSwitchLabelStatement) st;
+                    if (labelStmt.isDefaultCase()) {
+                        children.add(leaf(MethodIr.Kind.CASE, tokens(" --> [default]")));
+                    } else {
+                        PsiCaseLabelElementList labelList = labelStmt.getCaseLabelElementList();
+                        if (labelList != null) {
+                            StringBuilder labels = new StringBuilder();
+                            for (PsiCaseLabelElement elem : labelList.getElements()) {
+                                if (labels.length() > 0) labels.append("|");
+                                labels.append(elem.getText());
+                            }
+                            children.add(leaf(MethodIr.Kind.CASE, tokens(" --> [case: " + labels + "]")));
+                        }
+                    }
+                } else {
+                    children.add(statement(st));
+                }
+            }
+            return node(MethodIr.Kind.SWITCH, children.toArray(new MethodIr.Statement[0]));
+        }
+
+        private MethodIr.Statement tryStatement(PsiTryStatement tryStmt) {
+            List<MethodIr.Statement> sections = new ArrayList<>();
+            PsiCodeBlock tryBlock = tryStmt.getTryBlock();
+            if (tryBlock != null) {
+                sections.add(node(MethodIr.Kind.TRY_BLOCK, tokens(" --> TryBlock"), block(tryBlock)));
+            }
+            for (PsiCatchSection c : tryStmt.getCatchSections()) {
+                PsiParameter param = c.getParameter();
+                PsiCodeBlock catchBlock = c.getCatchBlock();
+                sections.add(node(MethodIr.Kind.CATCH,
+                        tokens(param != null ? " --> Catch(" + param.getType().getCanonicalText() + ")" : " --> Catch()"),
+                        catchBlock == null ? null : block(catchBlock)));
+            }
+            PsiCodeBlock finallyBlock = tryStmt.getFinallyBlock();
+            if (finallyBlock != null) {
+                sections.add(node(MethodIr.Kind.FINALLY, tokens(" --> Finally"), block(finallyBlock)));
+            }
+            return node(MethodIr.Kind.TRY, sections.toArray(new MethodIr.Statement[0]));
+        }
+
+        private MethodIr.Statement methodCall(PsiMethodCallExpression callExpr) {
+            CallSiteResolutionCache.Resolution resolution = resolutionCache.resolve(callExpr);
+            PsiMethod resolved = resolution.getTarget();
+            if (resolved == null) {
+                return leaf(MethodIr.Kind.STATEMENT, tokens(" --> [UnresolvedCall]"));
+            }
+            if (!resolution.isInProject()) {
+                return call(MethodIr.Kind.CALL, tokens(" --> " + resolved.getName(), " (external)"), MethodIr.EXTERNAL);
+            }
+            return call(MethodIr.Kind.CALL, tokens(" --> " + resolved.getName()), callee(resolved));
+        }
+
+        private MethodIr.Statement assignment(PsiExpressionStatement exprStmt) {
+            PsiExpression expr = exprStmt.getExpression();
+            if (!(expr instanceof PsiAssignmentExpression)) {
+                return leaf(MethodIr.Kind.EMIT, tokens(" --> [Assignment: " + exprStmt.getText() + "]"));
+            }
+
+            PsiAssignmentExpression assignExpr = (PsiAssignmentExpression) expr;
+            PsiExpression rhs = assignExpr.getRExpression();
+            if (!(rhs instanceof PsiMethodCallExpression)) {
+                return leaf(MethodIr.Kind.STATEMENT, tokens(" --> [Assignment: " + exprStmt.getText() + "]"));
+            }
+
+            String label = " --> [Assignment with MethodCall: " + assignExpr.getLExpression().getText() + " = ";
+            CallSiteResolutionCache.Resolution resolution = resolutionCache.resolve((PsiMethodCallExpression) rhs);
+            PsiMethod resolved = resolution.getTarget();
+            if (resolved == null) {
+                return call(MethodIr.Kind.ASSIGNMENT_CALL, tokens(label, "[UnresolvedCall]]"), MethodIr.UNRESOLVED);
+            }
+            if (!resolution.isInProject()) {
+                return call(MethodIr.Kind.ASSIGNMENT_CALL,
+                        tokens(label, resolved.getName() + "]", " (external assignment)"), MethodIr.EXTERNAL);
+            }
+            return call(MethodIr.Kind.ASSIGNMENT_CALL, tokens(label, resolved.getName() + "]"), callee(resolved));
+        }
+
+        private MethodIr.Statement declaration(PsiDeclarationStatement decl) {
+            List<String> emitted = new ArrayList<>();
+            for (PsiElement element : decl.getDeclaredElements()) {
+                if (element instanceof PsiVariable) {
+                    PsiExpression initializer = ((PsiVariable) element).getInitializer();
+                    if (initializer instanceof PsiMethodCallExpression) {
+                        String name = ((PsiMethodCallExpression) initializer).getMethodExpression().getReferenceName();
+                        emitted.add(" --> [VarInitCall: " + name + "]");
+                    } else {
+                        emitted.add(" --> [Declaration: " + decl.getText() + "]");
+                    }
+                }
+            }
+            return leaf(MethodIr.Kind.EMIT, tokens(emitted.toArray(new String[0])));
+        }
+
+        private int callee(PsiMethod method) {
+            int id = idOf(current, method);
+            callees.add(id);
+            return id;
+        }
+
+        private int[] tokens(String... texts) {
+            int[] ids = new int[texts.length];
+            for (int i = 0; i < texts.length; i++) {
+                ids[i] = symbols.intern(texts[i]);
+            }
+            return ids;
+        }
+
+        private MethodIr.Statement leaf(MethodIr.Kind kind, int[] tokens) {
+            return new MethodIr.Statement(kind, tokens, MethodIr.Statement.noChildren(), MethodIr.UNRESOLVED);
+        }
+
+        private MethodIr.Statement call(MethodIr.Kind kind, int[] tokens, int callee) {
+            return new MethodIr.Statement(kind, tokens, MethodIr.Statement.noChildren(), callee);
+        }
+
+        private MethodIr.Statement node(MethodIr.Kind kind, MethodIr.Statement... children) {
+            return new MethodIr.Statement(kind, new int[0], children, MethodIr.UNRESOLVED);
+        }
+
+        private MethodIr.Statement node(MethodIr.Kind kind, int[] tokens, MethodIr.Statement... children) {
+            return new MethodIr.Statement(kind, tokens, children, MethodIr.UNRESOLVED);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.customoverwrittenidentifier;
+
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.psi.PsiMethod;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Remembers, for a called method, every path suffix (as interned tokens) that expanding its body produces,
+ * so the body is walked once and the suffixes are spliced onto each path that reaches a call to it.
+ *
+ * Summaries are keyed by (method, remaining depth, inLoop). The cache is shared by the worker threads of a run,
+ * and it is dropped as soon as the PSI changes. With a PersistentSummaryStore, a summary that is not in memory
+ * is looked up on disk before the body is walked, and every new summary is written there too.
+ */
+public class MethodSummaryCache {
+
+    // bigger summaries are still used for the current call site, they are just not kept
+    static final int MAX_SUMMARY_SIZE = 10_000;
+
+    // one key may need a few summaries, one per distinct set of cycles seen on the call chain
+    private static final int MAX_VARIANTS_PER_KEY = 8;
+
+    private final ModificationTracker modificationTracker;
+
+    private final Map<Key, List<MethodSummary>> summaries = new ConcurrentHashMap<>();
+
+    private final PersistentSummaryStore diskStore;
+
+    private volatile long modificationCount;
+
+    public MethodSummaryCache(ModificationTracker modificationTracker) {
+        this(modificationTracker, null);
+    }
+
+    public MethodSummaryCache(ModificationTracker modificationTracker, @Nullable PersistentSummaryStore diskStore) {
+        this.modificationTracker = modificationTracker;
+        this.diskStore = diskStore;
+        this.modificationCount = modificationTracker.getModificationCount();
+    }
+
+    public MethodSummary find(PsiMethod method, int remainingDepth, boolean inLoop, CallChain callChain) {
+        dropIfOutdated();
+        List<MethodSummary> variants = summaries.get(new Key(method, remainingDepth, inLoop));
+        if (variants != null) {
+            for (MethodSummary summary : variants) {
+                if (summary.getModificationCount() == modificationCount && callChain.satisfies(summary)) {
+                    return summary;
+                }
+            }
+        }
+        if (diskStore == null) {
+            return null;
+        }
+        MethodSummary summary = diskStore.find(method, remainingDepth, inLoop, callChain, modificationCount);
+        if (summary != null) {
+            keep(method, remainingDepth, inLoop, summary);
+        }
+        return summary;
+    }
+
+    public void store(PsiMethod method, int remainingDepth, boolean inLoop, MethodSummary summary) {
+        dropIfOutdated();
+        if (summary.getSuffixes().size() > MAX_SUMMARY_SIZE || summary.getModificationCount() != modificationCount) {
+            return;
+        }
+        keep(method, remainingDepth, inLoop, summary);
+        if (diskStore != null) {
+            diskStore.write(method, remainingDepth, inLoop, summary);
+        }
+    }
+
+    private void keep(PsiMethod method, int remainingDepth, boolean inLoop, MethodSummary summary) {
+        List<MethodSummary> variants = summaries.computeIfAbsent(new Key(method, remainingDepth, inLoop),
+                key -> new CopyOnWriteArrayList<>());
+        if (variants.size() < MAX_VARIANTS_PER_KEY) {
+            variants.add(summary);
+        }
+    }
+
+    public long currentModificationCount() {
+        return modificationTracker.getModificationCount();
+    }
+
+    private void dropIfOutdated() {
+        long current = modificationTracker.getModificationCount();
+        if (current != modificationCount) {
+            summaries.clear();
+            modificationCount = current;
+        }
+    }
+
+    /**
+     * The path suffixes produced by one expansion of a method body, the call chain memberships they rely on, the
+     * files whose method bodies went into them and the calls that were expanded on the way.
+     */
+    public static class MethodSummary {
+        private final List<int[]> suffixes;
+        private final Map<PsiMethod, Boolean> chainAssumptions;
+        private final Map<String, Boolean> keyedAssumptions;
+        private final Set<String> files;
+        private final Map<String, Set<String>> calls;
+        private final long modificationCount;
+
+        public MethodSummary(List<int[]> suffixes, CallChain.Recording recording, long modificationCount) {
+            this(suffixes, recording.getAssumptions(), recording.getKeyedAssumptions(), recording.getFiles(),
+                    recording.getCalls(), modificationCount);
+        }
+
+        public MethodSummary(List<int[]> suffixes,
+                             Map<PsiMethod, Boolean> chainAssumptions,
+                             Map<String, Boolean> keyedAssumptions,
+                             Set<String> files,
+                             Map<String, Set<String>> calls,
+                             long modificationCount) {
+            this.suffixes = suffixes;
+            this.chainAssumptions = chainAssumptions;
+            this.keyedAssumptions = keyedAssumptions;
+            this.files = files;
+            this.calls = calls;
+            this.modificationCount = modificationCount;
+        }
+
+        public List<int[]> getSuffixes() {
+            return suffixes;
+        }
+
+        public Map<PsiMethod, Boolean> getChainAssumptions() {
+            return chainAssumptions;
+        }
+
+        // assumptions of summaries read back from disk, by CallDependencies.keyOf
+        public Map<String, Boolean> getKeyedAssumptions() {
+            return keyedAssumptions;
+        }
+
+        public Set<String> getFiles() {
+            return files;
+        }
+
+        // callee keys by caller key, for CallDependencies
+        public Map<String, Set<String>> getCalls() {
+            return calls;
+        }
+
+        public long getModificationCount() {
+            return modificationCount;
+        }
+    }
+
+    private static final class Key {
+        private final PsiMethod method;
+        private final int remainingDepth;
+        private final boolean inLoop;
+
+        private Key(PsiMethod method, int remainingDepth, boolean inLoop) {
+            this.method = method;
+            this.remainingDepth = remainingDepth;
+            this.inLoop = inLoop;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return remainingDepth == key.remainingDepth && inLoop == key.inLoop && method.equals(key.method);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(method, remainingDepth, inLoop);
+        }
+    }
+}
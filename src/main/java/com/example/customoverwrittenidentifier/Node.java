@@ -1,9 +1,13 @@
 package com.example.customoverwrittenidentifier;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public class Node {
 
@@ -43,21 +47,23 @@ public class Node {
 
     private List<Node> unitedFathers = new ArrayList<>();
 
-    private List<Node> innerLoops = new ArrayList<>();
+    // the scopes around the node, innermost on top. A new child starts from the same stacks as its father, so they
+    // are shared and never changed, only replaced by a pushed or popped one.
+    private ScopeStack<Node> innerLoops = ScopeStack.empty();
 
-    private List<Node> innerLoopsAndSwitches = new ArrayList<>();
+    private ScopeStack<Node> innerLoopsAndSwitches = ScopeStack.empty();
 
-    private List<Node> chainPotentialFunctions = new ArrayList<>();
+    private ScopeStack<Node> chainPotentialFunctions = ScopeStack.empty();
 
     public List<Node> getPointersChain() {
-        return pointersChain;
+        return pointersChain.toList();
     }
 
     public void setPointersChain(List<Node> pointersChain) {
-        this.pointersChain = pointersChain;
+        this.pointersChain = ScopeStack.of(pointersChain);
     }
 
-    private List<Node> pointersChain = new ArrayList<>();
+    private ScopeStack<Node> pointersChain = ScopeStack.empty();
 
     private Node mainFather;
 
@@ -111,10 +117,6 @@ public class Node {
         this.name = name;
         this.mainFather = this;
         this.setNodeType(nodeType);
-        this.innerLoops = new ArrayList<>();
-        this.innerLoopsAndSwitches = new ArrayList<>();
-        this.chainPotentialFunctions = new ArrayList<>();
-        this.pointersChain = new ArrayList<>();
         // when ever a node is initialized, its mainFather will be itself by default. (*)
     }
 
@@ -130,32 +132,27 @@ public class Node {
         boolean childIsNewNode = child.getChildren().isEmpty();
 
         if(childIsNewNode) {
-            child.innerLoops = new ArrayList<>(this.innerLoops);
-            child.innerLoopsAndSwitches = new ArrayList<>(this.innerLoopsAndSwitches);
-            child.chainPotentialFunctions = new ArrayList<>(this.chainPotentialFunctions);
-            child.pointersChain = new ArrayList<>(this.pointersChain);
+            child.innerLoops = this.innerLoops;
+            child.innerLoopsAndSwitches = this.innerLoopsAndSwitches;
+            child.chainPotentialFunctions = this.chainPotentialFunctions;
+            child.pointersChain = this.pointersChain;
 
             if (this.nodeType == NodeTypes.LOOP) {
-                child.innerLoops.add(this);
-                child.innerLoopsAndSwitches.add(this);
+                child.innerLoops = innerLoops.push(this);
+                child.innerLoopsAndSwitches = innerLoopsAndSwitches.push(this);
             } else if (this.nodeType == NodeTypes.LOOP_EXIT) {
-                int mostInnerLoopIndex = innerLoops.size() - 1;
+                innerLoops.peek().introduceToPartner(child);
 
-                innerLoops.get(mostInnerLoopIndex).introduceToPartner(child);
-
-                child.innerLoops.remove(mostInnerLoopIndex);
-                int mostInnerLoopOrSwitchIndex = child.innerLoopsAndSwitches.size() - 1;
-                child.innerLoopsAndSwitches.remove(mostInnerLoopOrSwitchIndex);
+                child.innerLoops = innerLoops.pop();
+                child.innerLoopsAndSwitches = innerLoopsAndSwitches.pop();
             } else if (this.nodeType == NodeTypes.SWITCH) {
-                child.innerLoopsAndSwitches.add(this);
+                child.innerLoopsAndSwitches = innerLoopsAndSwitches.push(this);
             } else if (this.nodeType == NodeTypes.SWITCH_EXIT) {
-                int mostInnerLoopOrSwitchIndex = child.innerLoopsAndSwitches.size() - 1;
-
-                innerLoopsAndSwitches.get(mostInnerLoopOrSwitchIndex).introduceToPartner(child);
+                innerLoopsAndSwitches.peek().introduceToPartner(child);
 
-                child.innerLoopsAndSwitches.remove(mostInnerLoopOrSwitchIndex);
+                child.innerLoopsAndSwitches = innerLoopsAndSwitches.pop();
             } else if (this.nodeType == NodeTypes.METHOD) {
-                child.chainPotentialFunctions.add(this);
+                child.chainPotentialFunctions = chainPotentialFunctions.push(this);
             } else if (this.nodeType == NodeTypes.METHOD_EXIT) {
 
                 getLastMemberOfChainPotentialFunctions().introduceToPartner(child);
@@ -163,14 +160,12 @@ public class Node {
                 child.removeLastMemberOfChainPotentialFunctions();
             }
             else if(this.nodeType == NodeTypes.POINTER){
-                child.pointersChain.add(this);
+                child.pointersChain = pointersChain.push(this);
             }
             else if(this.nodeType == NodeTypes.POINTER_AFFILIATION){
-                int lastPointerIndex = innerLoops.size() - 1;
-
-                pointersChain.get(lastPointerIndex).introduceToPartner(child);
+                pointersChain.peek().introduceToPartner(child);
 
-                child.pointersChain.remove(lastPointerIndex);
+                child.pointersChain = pointersChain.pop();
             }
         }
 
@@ -178,7 +173,13 @@ public class Node {
     }
 
     public void removeChild(Node child){
-        children.remove(child);
+        // the builder removes the child it added last, so the search from the end stops right away
+        for (int i = children.size() - 1; i >= 0; i--) {
+            if (children.get(i) == child) {
+                children.remove(i);
+                return;
+            }
+        }
     }
 
     //----------------------------------------------------------------------------------------------------------------------------//
@@ -194,67 +195,41 @@ public class Node {
 
     // each node may have an exit node, and we don't want to get it as one of the childless nodes, so it is excluded from the list, if it exits.
     public List<Node> getChildlessNodes(NodeTypes nodeType) {
-        Node exitPointOfThis = null;
-        for(Node child :this.getChildren()){
-            if(child.getNodeType() == NodeTypes.LOOP_EXIT || child.getNodeType() == NodeTypes.SWITCH_EXIT || child.getNodeType() == NodeTypes.METHOD_EXIT) {
-                exitPointOfThis = child;
-            }
-        }
+        Node exitPointOfThis = getExitPoint();
         List<Node> childlessNodesList = new ArrayList<>();
-        getChildlessNodesRecursive(this, childlessNodesList, nodeType);
-        this.setAllChildrenUnvisited();
-        if(exitPointOfThis != null){
-            childlessNodesList.remove(exitPointOfThis);
-        }
-        return childlessNodesList;
-    }
-
-    private void getChildlessNodesRecursive(Node node, List<Node> childlessNodesList, NodeTypes targetType) {
-        if (!node.isVisited()) {
-            node.setVisited();
-
-            if (node.hasChild()) {
-                for (Node child : node.getChildren()) {
-                    getChildlessNodesRecursive(child, childlessNodesList, targetType);
-                }
-            } else {
-                if(targetType == NodeTypes.ALL){
-                    childlessNodesList.add(node);
-                }
-                else{
-                    if (node.getNodeType() == targetType) {
-                        childlessNodesList.add(node);
-                    }
-                }
+        forEachNodeBelow(node -> {
+            if (!node.hasChild() && node != exitPointOfThis
+                    && (nodeType == NodeTypes.ALL || node.getNodeType() == nodeType)) {
+                childlessNodesList.add(node);
             }
-        }
+        });
+        return childlessNodesList;
     }
 
     public List<Node> getChainPotentialFunctions() {
-        return chainPotentialFunctions;
+        return chainPotentialFunctions.toList();
     }
 
     public void setChainPotentialFunctions(List<Node> chainPotentialFunctions) {
-        this.chainPotentialFunctions = chainPotentialFunctions;
+        this.chainPotentialFunctions = ScopeStack.of(chainPotentialFunctions);
     }
 
     public void addToChainPotentialFunctions(Node chainPotentialFunction) {
-        this.chainPotentialFunctions.add(chainPotentialFunction);
+        this.chainPotentialFunctions = this.chainPotentialFunctions.push(chainPotentialFunction);
     }
 
     public void removeLastMemberOfChainPotentialFunctions() {
-        int lastMemberOfChainPotentialFunctionsIndex = this.chainPotentialFunctions.size() - 1;
-        this.chainPotentialFunctions.remove(lastMemberOfChainPotentialFunctionsIndex);
+        this.chainPotentialFunctions = this.chainPotentialFunctions.pop();
     }
 
     public Node getLastMemberOfChainPotentialFunctions() {
-        int lastMemberOfChainPotentialFunctionsIndex = this.chainPotentialFunctions.size() - 1;
-        return this.chainPotentialFunctions.get(lastMemberOfChainPotentialFunctionsIndex);
+        return this.chainPotentialFunctions.peek();
     }
 
     public boolean doesThisExitsInChainPotentialFunctions(){
-        for(int i = chainPotentialFunctions.size() -1; i > 0; i--){
-            Node chainPotentialFunction = chainPotentialFunctions.get(i);
+        // from the innermost function outwards, leaving out the outermost one
+        for(ScopeStack<Node> chain = chainPotentialFunctions; chain.size() > 1; chain = chain.pop()){
+            Node chainPotentialFunction = chain.peek();
             if(chainPotentialFunction.getName().equals(this.getName())){
                 return true;
             }
@@ -263,8 +238,9 @@ public class Node {
     }
 
     public Node getTheOriginalFunctionNode(){
-        for(int i = chainPotentialFunctions.size() -1; i > 0; i--){
-            Node chainPotentialFunction = chainPotentialFunctions.get(i);
+        // from the innermost function outwards, leaving out the outermost one
+        for(ScopeStack<Node> chain = chainPotentialFunctions; chain.size() > 1; chain = chain.pop()){
+            Node chainPotentialFunction = chain.peek();
             if(chainPotentialFunction.getName().equals(this.getName())){
                 return chainPotentialFunction;
             }
@@ -273,13 +249,14 @@ public class Node {
     }
 
     public Node getMostInnerLoop() {
-        int mostInnerLoopIndex = innerLoops.size() - 1;
-        return innerLoops.get(mostInnerLoopIndex);
+        return innerLoops.peek();
     }
 
     public Node getExitPointOfMostInnerLoop() {
-        int mostInnerLoopIndex = innerLoops.size() - 1;
-        Node mostInnerLoopNode = innerLoops.get(mostInnerLoopIndex);
+        Node mostInnerLoopNode = innerLoops.peek();
+        if (mostInnerLoopNode == null) {
+            return null;
+        }
 
         List<Node> childrenOfMostInnerLoop = mostInnerLoopNode.getChildren();
 
@@ -292,12 +269,14 @@ public class Node {
     }
 
     public Node getMostInnerLoopsOrSwitch() {
-        int mostInnerLoopIndex = innerLoopsAndSwitches.size() - 1;
-        return innerLoopsAndSwitches.get(mostInnerLoopIndex);
+        return innerLoopsAndSwitches.peek();
     }
 
     public Node getExitPointOfMostInnerLoopsOrSwitch() {
         Node mostInnerLoopOrSwitchNode = this.getMostInnerLoopsOrSwitch();
+        if (mostInnerLoopOrSwitchNode == null) {
+            return null;
+        }
 
         List<Node> childrenOfMostInnerLoop = mostInnerLoopOrSwitchNode.getChildren();
 
@@ -314,51 +293,51 @@ public class Node {
 
     public List<Node> getSingleChildNodes(NodeTypes nodeType) {
         List<Node> singleChildNodesList = new ArrayList<>();
-        getSingleChildNodesRecursive(this, singleChildNodesList, nodeType);
-        this.setAllChildrenUnvisited();
+        forEachNodeBelow(node -> {
+            if (node.getNodeType() == nodeType && node.getChildren().size() == 1) {
+                singleChildNodesList.add(node);
+            }
+        });
         return singleChildNodesList;
     }
 
-    private void getSingleChildNodesRecursive(Node node, List<Node> singleChildNodesList, NodeTypes targetType) {
-        if (!node.isVisited()) {
-            node.setVisited();
-
-            if (node.hasChild()) {
-                if (node.getNodeType() == targetType && node.getChildren().size() == 1) {
-                    singleChildNodesList.add(node);
-                }
-
-                for (Node child : node.getChildren()) {
-                    getSingleChildNodesRecursive(child, singleChildNodesList, targetType);
-                }
+    // the last LOOP_EXIT, SWITCH_EXIT or METHOD_EXIT child of this node, if it has one
+    private Node getExitPoint() {
+        Node exitPoint = null;
+        for(Node child :this.getChildren()){
+            if(child.getNodeType() == NodeTypes.LOOP_EXIT || child.getNodeType() == NodeTypes.SWITCH_EXIT || child.getNodeType() == NodeTypes.METHOD_EXIT) {
+                exitPoint = child;
             }
         }
-    }
-
-
-    // visitedNodes map is used because the main point of the method 'setAllChildrenUnvisited' is to set them unvisited,
-    // to do so, we need a map to keep the track of visited method using it.
-    Map<Node, Boolean> visitedNodes = new HashMap<>();
-    public void setAllChildrenUnvisited() {
-        setAllChildrenUnvisitedRecursive(this);
-        visitedNodes.clear();
-    }
-
-    private void setAllChildrenUnvisitedRecursive(Node node) {
-        if(!visitedNodes.containsKey(node)){
-            visitedNodes.put(node, true);
-            node.setUnvisited();
-
-            if (node.hasChild()) {
-                for (Node child : node.getChildren()) {
-                    setAllChildrenUnvisitedRecursive(child);
+        return exitPoint;
+    }
+
+    // visits this node and every node below it once, depth first with the children in order. What was visited is
+    // kept by the walk itself, not in the nodes, so walks don't have to clean up after themselves and several
+    // threads can walk the same graph at once; the stack is explicit, so a deep graph can't overflow the Java stack.
+    private void forEachNodeBelow(Consumer<Node> action) {
+        Set<Node> visitedNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            if (!visitedNodes.add(node)) {
+                continue;
+            }
+            action.accept(node);
+            List<Node> nodeChildren = node.getChildren();
+            for (int i = nodeChildren.size() - 1; i >= 0; i--) {
+                if (!visitedNodes.contains(nodeChildren.get(i))) {
+                    stack.push(nodeChildren.get(i));
                 }
             }
         }
     }
 
-
-
+    // the visited flags are only for callers that mark nodes themselves; the queries above don't use them
+    public void setAllChildrenUnvisited() {
+        forEachNodeBelow(Node::setUnvisited);
+    }
 
     public List<Node> getChildren() {
         return children;
@@ -372,6 +351,19 @@ public class Node {
         return mainFather;
     }
 
+    public List<Node> getInnerLoops() {
+        return innerLoops.toList();
+    }
+
+    public List<Node> getInnerLoopsAndSwitches() {
+        return innerLoopsAndSwitches.toList();
+    }
+
+    // the finished graph below this node, in the compact read-only form
+    public FrozenCcfg freeze() {
+        return FrozenCcfg.freeze(this);
+    }
+
 
 
     private void addFather(Node father) {
@@ -383,7 +375,7 @@ public class Node {
     }
 
     public boolean hasChild(){
-        return this.getChildren() != null;
+        return !this.getChildren().isEmpty();
     }
 
     public String getName() {
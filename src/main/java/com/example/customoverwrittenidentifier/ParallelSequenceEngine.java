@@ -0,0 +1,394 @@
+package com.example.customoverwrittenidentifier;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans the overridden methods out over a bounded worker pool. Every callback is explored in its own
+ * non-blocking read action and writes into its own result buffer; the buffers are replayed into the sink
+ * in the order of the callbacks, so the output is the same as the one of the sequential mode. Only a few
+ * callbacks per worker are ahead of the merge at any time, so the buffers waiting for it stay few however
+ * large the project is.
+ *
+ * With a ResultCache, the callbacks that already have a result are replayed from it without being explored,
+ * and the buffers of the others are handed to the cache instead of being freed.
+ *
+ * By default the read action only lowers the bodies the callback reaches (see MethodIrCache), most of them
+ * already lowered for an earlier callback; its CCFG is built from them (see CcfgBuilder) and the sequences are
+ * generated from the graph after the read lock is released, so a long enumeration does not hold off write actions.
+ * Without the graph, the explorer walks the PSI with its method summaries, all inside the read action.
+ */
+public class ParallelSequenceEngine {
+
+    private final Project project;
+    private final CallSequenceExplorer explorer;
+    private final int parallelism;
+    private final CcfgBuilder builder;
+    private final SequenceBudget budget;
+
+    // beyond this a callback is big enough to be started early, no need to count further
+    private static final int MAX_REACHABLE_NAMES = 1000;
+
+    // how many callbacks per worker may be submitted but not merged yet, each holding its buffer
+    private static final int RESULTS_PER_WORKER = 2;
+
+    public ParallelSequenceEngine(Project project, CallSequenceExplorer explorer, int parallelism) {
+        this(project, explorer, parallelism, true);
+    }
+
+    public ParallelSequenceEngine(Project project, CallSequenceExplorer explorer, int parallelism, boolean graphDriven) {
+        this(project, explorer, parallelism, graphDriven, SequenceBudget.UNLIMITED);
+    }
+
+    /**
+     * The budget holds for each callback on its own, so one that blows up cannot hold up the others; its time
+     * counts from the read action that lowers the callback. It only applies to the graph; without it the
+     * explorer walks the PSI down to the depth limit.
+     */
+    public ParallelSequenceEngine(Project project,
+                                  CallSequenceExplorer explorer,
+                                  int parallelism,
+                                  boolean graphDriven,
+                                  SequenceBudget budget) {
+        this.project = project;
+        this.explorer = explorer;
+        this.parallelism = Math.max(1, parallelism);
+        this.builder = graphDriven ? new CcfgBuilder(explorer) : null;
+        this.budget = budget;
+    }
+
+    /**
+     * The results of the callbacks of an earlier run, by position in the list of callbacks.
+     */
+    public interface ResultCache {
+        // null when the callback has to be explored
+        @Nullable CallbackResult get(int index);
+
+        void put(int index, CallbackResult result);
+    }
+
+    public static int defaultParallelism() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    public void explore(List<SmartPsiElementPointer<PsiMethod>> callbacks,
+                        ProgressIndicator indicator,
+                        SequenceSink sink) {
+        explore(callbacks, indicator, sink, null);
+    }
+
+    public void explore(List<SmartPsiElementPointer<PsiMethod>> callbacks,
+                        ProgressIndicator indicator,
+                        SequenceSink sink,
+                        @Nullable ResultCache cache) {
+        int total = callbacks.size();
+        AtomicInteger done = new AtomicInteger();
+        indicator.setIndeterminate(false);
+        indicator.setText("Exploring callbacks (0/" + total + ")");
+
+        // A single worker does not need a pool; it runs right here, in the task's thread
+        if (parallelism == 1 || total < 2) {
+            for (int i = 0; i < total; i++) {
+                indicator.checkCanceled();
+                CallbackResult cached = cache == null ? null : cache.get(i);
+                CallbackResult result = cached != null ? cached : exploreCallback(callbacks.get(i), indicator);
+                try {
+                    merge(i, result, sink, cache);
+                } catch (RuntimeException | Error e) {
+                    if (cached == null) {
+                        result.buffer.discard();
+                    }
+                    throw e;
+                }
+                reportProgress(indicator, done.incrementAndGet(), total);
+            }
+            return;
+        }
+
+        ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+                "CCFG Sequence Explorer", Math.min(parallelism, total));
+        // A finished buffer waits until the callbacks before it are merged, so only a window of callbacks past
+        // the merge is submitted at a time; a small callback at the head cannot leave the whole project buffered
+        int window = RESULTS_PER_WORKER * Math.min(parallelism, total);
+        List<Future<CallbackResult>> futures = new ArrayList<>(Collections.nCopies(total, null));
+        Map<String, Set<String>> calleesByName = new HashMap<>();
+        int submitted = 0;
+        int merged = 0;
+        try {
+            while (merged < total) {
+                // the window is refilled once half of it is merged, so there is a batch to put in order
+                if (submitted < total && submitted - merged <= window / 2) {
+                    int end = Math.min(total, merged + window);
+                    for (int i : largestFirst(callbacks, submitted, end, cache, calleesByName, indicator)) {
+                        submit(i, callbacks, cache, executor, futures, done, indicator);
+                    }
+                    submitted = end;
+                }
+
+                // Deterministic merge: wait for the buffers in callback order, whatever order the workers finish in
+                CallbackResult result = await(futures.get(merged), indicator);
+                merge(merged, result, sink, cache);
+                // only once it is merged, so a merge that fails leaves the result to the cleanup below
+                futures.set(merged, null);
+                merged++;
+            }
+        } finally {
+            for (int i = merged; i < submitted; i++) {
+                discard(futures.get(i), cache != null && cache.get(i) != null);
+            }
+            executor.shutdownNow();
+        }
+    }
+
+    private void submit(int index,
+                        List<SmartPsiElementPointer<PsiMethod>> callbacks,
+                        @Nullable ResultCache cache,
+                        ExecutorService executor,
+                        List<Future<CallbackResult>> futures,
+                        AtomicInteger done,
+                        ProgressIndicator indicator) {
+        int total = callbacks.size();
+        CallbackResult cached = cache == null ? null : cache.get(index);
+        if (cached != null) {
+            futures.set(index, CompletableFuture.completedFuture(cached));
+            reportProgress(indicator, done.incrementAndGet(), total);
+            return;
+        }
+        SmartPsiElementPointer<PsiMethod> callback = callbacks.get(index);
+        futures.set(index, executor.submit(() -> {
+            CallbackResult result = exploreCallback(callback, indicator);
+            reportProgress(indicator, done.incrementAndGet(), total);
+            return result;
+        }));
+    }
+
+    private void merge(int index, CallbackResult result, SequenceSink sink, @Nullable ResultCache cache) {
+        result.replayInto(explorer.getSymbols(), sink);
+        if (cache == null) {
+            result.buffer.discard();
+        } else if (cache.get(index) != result) {
+            cache.put(index, result);
+        }
+    }
+
+    /**
+     * The order to submit a batch of callbacks in, from..to in the list: the ones that reach the most methods
+     * first, so the pool does not end up waiting for one big callback of the batch that was started last. The
+     * size of a callback is estimated from the call graph index, as the number of method names reachable from
+     * its body within the depth limit. The callee names looked up stay in calleesByName for the next batches.
+     * The merge still goes in the order of the list.
+     */
+    private List<Integer> largestFirst(List<SmartPsiElementPointer<PsiMethod>> callbacks,
+                                       int from,
+                                       int to,
+                                       @Nullable ResultCache cache,
+                                       Map<String, Set<String>> calleesByName,
+                                       ProgressIndicator indicator) {
+        int[] sizes = ReadAction
+                .nonBlocking(() -> {
+                    GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+                    int[] reachable = new int[to - from];
+                    for (int i = from; i < to; i++) {
+                        PsiMethod method = cache != null && cache.get(i) != null ? null : callbacks.get(i).getElement();
+                        if (method != null) {
+                            reachable[i - from] = reachableNames(method, scope, calleesByName);
+                        }
+                    }
+                    return reachable;
+                })
+                .inSmartMode(project)
+                .wrapProgress(indicator)
+                .executeSynchronously();
+        List<Integer> order = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            order.add(i);
+        }
+        order.sort((a, b) -> Integer.compare(sizes[b - from], sizes[a - from]));
+        return order;
+    }
+
+    private int reachableNames(PsiMethod method, GlobalSearchScope scope, Map<String, Set<String>> calleesByName) {
+        Set<String> reached = new HashSet<>();
+        Set<String> level = CallGraphIndex.getCalleeNames(method);
+        for (int depth = 1; depth < explorer.getMaxDepth() && !level.isEmpty()
+                && reached.size() < MAX_REACHABLE_NAMES; depth++) {
+            Set<String> next = new HashSet<>();
+            for (String name : level) {
+                if (reached.add(name)) {
+                    ProgressManager.checkCanceled();
+                    next.addAll(calleesByName.computeIfAbsent(name,
+                            callee -> CallGraphIndex.getCalleeNames(project, callee, scope)));
+                }
+            }
+            level = next;
+        }
+        return reached.size();
+    }
+
+    private CallbackResult exploreCallback(SmartPsiElementPointer<PsiMethod> callback, ProgressIndicator indicator) {
+        if (builder != null) {
+            return generateCallback(callback, indicator);
+        }
+        return ReadAction
+                .nonBlocking(() -> {
+                    // A restarted read action starts over with a fresh buffer, so nothing is reported twice
+                    TokenBuffer buffer = new TokenBuffer();
+                    PsiMethod method = callback.getElement();
+                    if (method == null) {
+                        return new CallbackResult(null, buffer);
+                    }
+                    try {
+                        explorer.exploreOverriddenMethod(method, buffer);
+                    } catch (ProcessCanceledException e) {
+                        buffer.discard();
+                        throw e;
+                    }
+                    return new CallbackResult(CallSequenceExplorer.callbackName(method), buffer);
+                })
+                .inSmartMode(project)
+                .wrapProgress(indicator)
+                .executeSynchronously();
+    }
+
+    private CallbackResult generateCallback(SmartPsiElementPointer<PsiMethod> callback, ProgressIndicator indicator) {
+        long start = System.nanoTime();
+        LoweredCallback lowered = ReadAction
+                .nonBlocking(() -> {
+                    PsiMethod method = callback.getElement();
+                    return method == null ? null : new LoweredCallback(CallSequenceExplorer.callbackName(method), builder.lower(method));
+                })
+                .inSmartMode(project)
+                .wrapProgress(indicator)
+                .executeSynchronously();
+
+        TokenBuffer buffer = new TokenBuffer();
+        if (lowered == null) {
+            return new CallbackResult(null, buffer);
+        }
+        if (lowered.bodies != null) {
+            try {
+                ProgressManager.getInstance().executeProcessUnderProgress(() -> {
+                    FrozenCcfg graph = builder.build(lowered.bodies);
+                    new CcfgSequenceGenerator(graph, builder.getMaxDepth(), explorer.getSymbols())
+                            .generate(new TokenPath(explorer.getSymbols()), buffer, budget, start);
+                }, indicator);
+            } catch (ProcessCanceledException e) {
+                buffer.discard();
+                throw e;
+            }
+        }
+        return new CallbackResult(lowered.callback, buffer);
+    }
+
+    private static final class LoweredCallback {
+        private final String callback;
+        private final MethodIrCache.Lowered bodies; // null when the method is not explored
+
+        private LoweredCallback(String callback, @Nullable MethodIrCache.Lowered bodies) {
+            this.callback = callback;
+            this.bodies = bodies;
+        }
+    }
+
+    private static void reportProgress(ProgressIndicator indicator, int done, int total) {
+        indicator.setText("Exploring callbacks (" + done + "/" + total + ")");
+        indicator.setFraction((double) done / total);
+    }
+
+    private static void discard(Future<CallbackResult> future, boolean cached) {
+        if (cached) {
+            return; // still owned by the cache
+        }
+        future.cancel(true);
+        if (future.isDone() && !future.isCancelled()) {
+            try {
+                future.get().buffer.discard();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ignored) {
+                // nothing was buffered
+            }
+        }
+    }
+
+    private static <T> T await(Future<T> future, ProgressIndicator indicator) {
+        while (true) {
+            indicator.checkCanceled();
+            try {
+                return future.get(50, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ignored) {
+                // keep polling so a cancel from the progress bar is noticed quickly
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ProcessCanceledException();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            }
+        }
+    }
+
+    /**
+     * The sequences of one callback, as token ids of the explorer's symbol table.
+     */
+    public static class CallbackResult {
+        private final String callback;
+        private final TokenBuffer buffer;
+
+        private CallbackResult(String callback, TokenBuffer buffer) {
+            this.callback = callback;
+            this.buffer = buffer;
+        }
+
+        private void replayInto(SymbolTable symbols, SequenceSink sink) {
+            if (callback == null) {
+                return;
+            }
+            sink.startCallback(callback);
+            buffer.replay(symbols, sink);
+            sink.endCallback(callback);
+        }
+
+        public int getInMemoryTokens() {
+            return buffer.getInMemoryTokens();
+        }
+
+        // see TokenBuffer.moveToDisk
+        public void moveToDisk() {
+            buffer.moveToDisk();
+        }
+
+        public void discard() {
+            buffer.discard();
+        }
+    }
+}
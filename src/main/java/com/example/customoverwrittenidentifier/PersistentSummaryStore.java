@@ -0,0 +1,505 @@
+package com.example.customoverwrittenidentifier;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiMethod;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Method summaries kept on disk, so they survive the IDE. One file per project, in the IDE system directory.
+ *
+ * A summary is keyed by the method (CallDependencies.keyOf), the content hash of its file, the remaining depth
+ * and inLoop. It also lists the content hash of every file whose method bodies it expanded, and it is only
+ * reused while all of them are unchanged, so after a restart only the methods whose own or expanded files
+ * changed are walked again.
+ *
+ * The file is a header followed by records that are only ever appended:
+ *   int length, long key hash, key, files (path and hash), chain assumptions (method key and membership),
+ *   calls (caller key and callee keys), the symbols of the record, the suffixes as varint symbol numbers, and
+ *   the CRC32 of all that after the length. A record whose CRC does not match is skipped like a miss.
+ * Opening the store reads the record headers only; the file is memory mapped and a record is decoded the first
+ * time its key is looked up.
+ */
+public class PersistentSummaryStore implements Closeable {
+
+    private static final Logger LOG = Logger.getInstance(PersistentSummaryStore.class);
+
+    private static final int MAGIC = 0x43434647; // "CCFG"
+
+    private static final int VERSION = 3;
+
+    private static final int HEADER_SIZE = 8;
+
+    // the file never grows past this; once it is within RESET_MARGIN of it, it is started over at the next open,
+    // which also drops the outdated records
+    private static final long MAX_FILE_SIZE = 512L * 1024 * 1024;
+
+    private static final long RESET_MARGIN = MAX_FILE_SIZE / 8;
+
+    private final Project project;
+
+    private final SymbolTable symbols;
+
+    private final FileChannel channel;
+
+    private final FileLock lock;
+
+    private final MappedByteBuffer mapped;
+
+    // key hash -> offsets of the records that have it, for the records that were there when the store was opened
+    private final Map<Long, int[]> index;
+
+    private final Map<String, FileHash> fileHashes = new ConcurrentHashMap<>();
+
+    private long end;
+
+    private PersistentSummaryStore(Project project, SymbolTable symbols, FileChannel channel, FileLock lock,
+                                   MappedByteBuffer mapped, Map<Long, int[]> index, long end) {
+        this.project = project;
+        this.symbols = symbols;
+        this.channel = channel;
+        this.lock = lock;
+        this.mapped = mapped;
+        this.index = index;
+        this.end = end;
+    }
+
+    public static Path defaultLocation(Project project) {
+        return Paths.get(PathManager.getSystemPath(), "ccfg-summaries", project.getLocationHash() + ".bin");
+    }
+
+    /**
+     * Open the store of the project, or return null if it cannot be used right now (another process has it open,
+     * or the file cannot be written); the analysis then simply runs without it.
+     */
+    public static @Nullable PersistentSummaryStore openOrNull(Project project, SymbolTable symbols) {
+        try {
+            return open(defaultLocation(project), project, symbols);
+        } catch (IOException e) {
+            LOG.warn("The method summaries on disk are not available", e);
+            return null;
+        }
+    }
+
+    public static @Nullable PersistentSummaryStore open(Path file, Project project, SymbolTable symbols) throws IOException {
+        Files.createDirectories(file.getParent());
+        if (Files.exists(file) && Files.size(file) + RESET_MARGIN >= MAX_FILE_SIZE) {
+            Files.delete(file);
+        }
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                channel.close();
+                return null;
+            }
+            if (!hasValidHeader(channel)) {
+                channel.truncate(0);
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+                header.flip();
+                channel.write(header, 0);
+            }
+
+            // only the headers are read: length and key hash of every record, up to the last complete one
+            Map<Long, int[]> index = new HashMap<>();
+            ByteBuffer recordHeader = ByteBuffer.allocate(12);
+            long size = channel.size();
+            long position = HEADER_SIZE;
+            while (position + 12 <= size) {
+                recordHeader.clear();
+                readFully(channel, recordHeader, position);
+                recordHeader.flip();
+                int length = recordHeader.getInt();
+                long keyHash = recordHeader.getLong();
+                if (length < 12 || position + 4 + length > size) {
+                    break;
+                }
+                int[] offsets = index.get(keyHash);
+                if (offsets == null) {
+                    offsets = new int[]{(int) position};
+                } else {
+                    offsets = Arrays.copyOf(offsets, offsets.length + 1);
+                    offsets[offsets.length - 1] = (int) position;
+                }
+                index.put(keyHash, offsets);
+                position += 4 + length;
+            }
+            if (position < size) {
+                channel.truncate(position); // a record cut short when the IDE went down
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, position);
+            return new PersistentSummaryStore(project, symbols, channel, lock, mapped, index, position);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The summary stored for this method, if every file it expanded is unchanged and the call chain gives the
+     * same answers as when it was recorded. Must be called inside a read action.
+     */
+    public @Nullable MethodSummaryCache.MethodSummary find(PsiMethod method,
+                                                          int remainingDepth,
+                                                          boolean inLoop,
+                                                          CallChain callChain,
+                                                          long modificationCount) {
+        if (index.isEmpty()) {
+            return null;
+        }
+        String key = keyOf(method, remainingDepth, inLoop);
+        if (key == null) {
+            return null;
+        }
+        int[] offsets = index.get(hash64(key));
+        if (offsets == null) {
+            return null;
+        }
+        for (int offset : offsets) {
+            MethodSummaryCache.MethodSummary summary = readIfValid(offset, key, callChain, modificationCount);
+            if (summary != null) {
+                return summary;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Append a summary that was just recorded. Must be called inside a read action.
+     */
+    public void write(PsiMethod method, int remainingDepth, boolean inLoop, MethodSummaryCache.MethodSummary summary) {
+        String key = keyOf(method, remainingDepth, inLoop);
+        if (key == null) {
+            return;
+        }
+        Map<String, FileHash> files = new LinkedHashMap<>();
+        for (String path : summary.getFiles()) {
+            FileHash hash = currentHash(path);
+            if (hash == null) {
+                return;
+            }
+            files.put(path, hash);
+        }
+        Map<String, Boolean> assumptions = new LinkedHashMap<>(summary.getKeyedAssumptions());
+        for (Map.Entry<PsiMethod, Boolean> assumption : summary.getChainAssumptions().entrySet()) {
+            assumptions.put(CallDependencies.keyOf(assumption.getKey()), assumption.getValue());
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(hash64(key));
+            writeString(out, key);
+            out.writeInt(files.size());
+            for (Map.Entry<String, FileHash> file : files.entrySet()) {
+                writeString(out, file.getKey());
+                out.writeLong(file.getValue().high);
+                out.writeLong(file.getValue().low);
+            }
+            out.writeInt(assumptions.size());
+            for (Map.Entry<String, Boolean> assumption : assumptions.entrySet()) {
+                writeString(out, assumption.getKey());
+                out.writeBoolean(assumption.getValue());
+            }
+            out.writeInt(summary.getCalls().size());
+            for (Map.Entry<String, Set<String>> calls : summary.getCalls().entrySet()) {
+                writeString(out, calls.getKey());
+                out.writeInt(calls.getValue().size());
+                for (String callee : calls.getValue()) {
+                    writeString(out, callee);
+                }
+            }
+
+            // the symbol ids of a run mean nothing to the next one, so the record carries its own strings
+            Map<Integer, Integer> localIds = new HashMap<>();
+            List<String> localSymbols = new ArrayList<>();
+            for (int[] suffix : summary.getSuffixes()) {
+                for (int token : suffix) {
+                    if (!localIds.containsKey(token)) {
+                        localIds.put(token, localSymbols.size());
+                        localSymbols.add(symbols.symbol(token));
+                    }
+                }
+            }
+            out.writeInt(localSymbols.size());
+            for (String symbol : localSymbols) {
+                writeString(out, symbol);
+            }
+            out.writeInt(summary.getSuffixes().size());
+            for (int[] suffix : summary.getSuffixes()) {
+                writeVarInt(out, suffix.length);
+                for (int token : suffix) {
+                    writeVarInt(out, localIds.get(token));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        byte[] body = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        ByteBuffer record = ByteBuffer.allocate(4 + body.length + 4);
+        record.putInt(body.length + 4).put(body).putInt((int) crc.getValue());
+        record.flip();
+        synchronized (this) {
+            if (end + record.remaining() > MAX_FILE_SIZE || !channel.isOpen()) {
+                return;
+            }
+            try {
+                long position = end;
+                while (record.hasRemaining()) {
+                    position += channel.write(record, position);
+                }
+                end = position;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            lock.release();
+            channel.close();
+        } catch (IOException e) {
+            LOG.warn("Could not close the method summaries on disk", e);
+        }
+    }
+
+    private @Nullable MethodSummaryCache.MethodSummary readIfValid(int offset,
+                                                                   String key,
+                                                                   CallChain callChain,
+                                                                   long modificationCount) {
+        try {
+            return read(offset, key, callChain, modificationCount);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                 | NegativeArraySizeException e) {
+            // a damaged record is a miss; the body is walked again and a good record is appended
+            LOG.debug("Skipping a corrupt record of the method summaries on disk", e);
+            return null;
+        }
+    }
+
+    private @Nullable MethodSummaryCache.MethodSummary read(int offset,
+                                                            String key,
+                                                            CallChain callChain,
+                                                            long modificationCount) {
+        // every reader gets its own view of the mapping, the positions of a shared one would clash
+        ByteBuffer record = mapped.duplicate();
+        int length = record.getInt(offset);
+        CRC32 crc = new CRC32();
+        record.limit(offset + length).position(offset + 4);
+        crc.update(record);
+        if ((int) crc.getValue() != mapped.getInt(offset + length)) {
+            return null;
+        }
+        record.limit(offset + length).position(offset + 4 + 8);
+        if (!key.equals(readString(record))) {
+            return null;
+        }
+        int fileCount = record.getInt();
+        Set<String> files = new HashSet<>();
+        for (int i = 0; i < fileCount; i++) {
+            String path = readString(record);
+            long high = record.getLong();
+            long low = record.getLong();
+            FileHash current = currentHash(path);
+            if (current == null || current.high != high || current.low != low) {
+                return null;
+            }
+            files.add(path);
+        }
+        int assumptionCount = record.getInt();
+        Map<String, Boolean> assumptions = new LinkedHashMap<>();
+        for (int i = 0; i < assumptionCount; i++) {
+            String methodKey = readString(record);
+            assumptions.put(methodKey, record.get() != 0);
+        }
+        if (!callChain.satisfiesKeys(assumptions)) {
+            return null;
+        }
+        int callerCount = record.getInt();
+        Map<String, Set<String>> calls = new LinkedHashMap<>();
+        for (int i = 0; i < callerCount; i++) {
+            String caller = readString(record);
+            int calleeCount = record.getInt();
+            Set<String> callees = new LinkedHashSet<>();
+            for (int j = 0; j < calleeCount; j++) {
+                callees.add(readString(record));
+            }
+            calls.put(caller, callees);
+        }
+
+        int[] ids = new int[record.getInt()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = symbols.intern(readString(record));
+        }
+        int suffixCount = record.getInt();
+        List<int[]> suffixes = new ArrayList<>(suffixCount);
+        for (int i = 0; i < suffixCount; i++) {
+            int[] suffix = new int[readVarInt(record)];
+            for (int j = 0; j < suffix.length; j++) {
+                suffix[j] = ids[readVarInt(record)];
+            }
+            suffixes.add(suffix);
+        }
+        return new MethodSummaryCache.MethodSummary(
+                suffixes, Collections.emptyMap(), assumptions, files, calls, modificationCount);
+    }
+
+    private @Nullable String keyOf(PsiMethod method, int remainingDepth, boolean inLoop) {
+        PsiFile file = method.getContainingFile();
+        if (file == null || file.getVirtualFile() == null) {
+            return null;
+        }
+        FileHash hash = currentHash(file.getVirtualFile().getPath());
+        if (hash == null) {
+            return null;
+        }
+        return CallDependencies.keyOf(method) + "|" + String.format("%016x%016x", hash.high, hash.low)
+                + "|" + remainingDepth + "|" + inLoop;
+    }
+
+    /**
+     * The hash of the text of a file as the PSI sees it, so an edit that is not saved yet counts too.
+     */
+    private @Nullable FileHash currentHash(String path) {
+        VirtualFile virtualFile = LocalFileSystem.getInstance().findFileByPath(path);
+        if (virtualFile == null || !virtualFile.isValid()) {
+            return null;
+        }
+        PsiFile psiFile = PsiManager.getInstance(project).findFile(virtualFile);
+        if (psiFile == null) {
+            return null;
+        }
+        long stamp = psiFile.getModificationStamp();
+        FileHash known = fileHashes.get(path);
+        if (known != null && known.stamp == stamp) {
+            return known;
+        }
+        FileHash hash = FileHash.of(stamp, psiFile.getViewProvider().getContents());
+        fileHashes.put(path, hash);
+        return hash;
+    }
+
+    private static boolean hasValidHeader(FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        header.flip();
+        return header.getInt() == MAGIC && header.getInt() == VERSION;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of the summary file");
+            }
+            position += read;
+        }
+    }
+
+    // FNV-1a over the characters; only used to find the candidate records, the key itself is compared after
+    private static long hash64(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static final class FileHash {
+        private final long stamp;
+        private final long high;
+        private final long low;
+
+        private FileHash(long stamp, long high, long low) {
+            this.stamp = stamp;
+            this.high = high;
+            this.low = low;
+        }
+
+        private static FileHash of(long stamp, CharSequence text) {
+            try {
+                byte[] digest = MessageDigest.getInstance("MD5")
+                        .digest(text.toString().getBytes(StandardCharsets.UTF_8));
+                ByteBuffer buffer = ByteBuffer.wrap(digest);
+                return new FileHash(stamp, buffer.getLong(), buffer.getLong());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
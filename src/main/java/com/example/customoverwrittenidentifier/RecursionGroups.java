@@ -0,0 +1,134 @@
+package com.example.customoverwrittenidentifier;
+
+import java.util.Arrays;
+
+/**
+ * The strongly connected components of a callback's call graph (Tarjan), taken from its lowered bodies. A call
+ * can only close a cycle when the callee is on the call chain, and then the callee reaches the caller, so both
+ * are in the same component. Calls between components, and calls within a component of one method that does not
+ * call itself, never close a cycle and need no check; only the recursive groups do.
+ */
+public final class RecursionGroups {
+
+    private static final int UNVISITED = -1;
+
+    // component by method id, UNVISITED for the methods the callback does not reach
+    private final int[] components;
+
+    private final boolean[] recursive;
+
+    private RecursionGroups(int[] components, boolean[] recursive) {
+        this.components = components;
+        this.recursive = recursive;
+    }
+
+    /**
+     * The components of the methods the callback reaches through lowered bodies. A method that was not lowered
+     * calls nothing as far as this is concerned; its body is never expanded, so it is never on the chain.
+     */
+    public static RecursionGroups of(MethodIrCache.Lowered lowered) {
+        int size = 0;
+        for (MethodIr method : lowered.getMethods()) {
+            size = Math.max(size, method.getId() + 1);
+        }
+        int[] index = new int[size];
+        int[] lowLink = new int[size];
+        int[] components = new int[size];
+        boolean[] onStack = new boolean[size];
+        Arrays.fill(index, UNVISITED);
+        Arrays.fill(components, UNVISITED);
+
+        int[] stack = new int[16];
+        int stackSize = 0;
+        // the depth-first walk, with the next callee to look at for every method on it
+        int[] walk = new int[16];
+        int[] nextCallee = new int[16];
+        int walkSize = 0;
+        int nextIndex = 0;
+        int componentCount = 0;
+        boolean[] recursive = new boolean[16];
+
+        int root = lowered.getCallback().getId();
+        walk[walkSize] = root;
+        nextCallee[walkSize++] = 0;
+        index[root] = lowLink[root] = nextIndex++;
+        stack[stackSize++] = root;
+        onStack[root] = true;
+        while (walkSize > 0) {
+            int method = walk[walkSize - 1];
+            int[] callees = callees(lowered, method);
+            if (nextCallee[walkSize - 1] < callees.length) {
+                int callee = callees[nextCallee[walkSize - 1]++];
+                if (index[callee] == UNVISITED) {
+                    if (walkSize == walk.length) {
+                        walk = Arrays.copyOf(walk, walkSize * 2);
+                        nextCallee = Arrays.copyOf(nextCallee, walkSize * 2);
+                    }
+                    walk[walkSize] = callee;
+                    nextCallee[walkSize++] = 0;
+                    index[callee] = lowLink[callee] = nextIndex++;
+                    if (stackSize == stack.length) {
+                        stack = Arrays.copyOf(stack, stackSize * 2);
+                    }
+                    stack[stackSize++] = callee;
+                    onStack[callee] = true;
+                } else if (onStack[callee]) {
+                    lowLink[method] = Math.min(lowLink[method], index[callee]);
+                }
+                continue;
+            }
+
+            walkSize--;
+            if (walkSize > 0) {
+                int caller = walk[walkSize - 1];
+                lowLink[caller] = Math.min(lowLink[caller], lowLink[method]);
+            }
+            if (lowLink[method] == index[method]) {
+                if (componentCount == recursive.length) {
+                    recursive = Arrays.copyOf(recursive, componentCount * 2);
+                }
+                int members = 0;
+                int member;
+                do {
+                    member = stack[--stackSize];
+                    onStack[member] = false;
+                    components[member] = componentCount;
+                    members++;
+                } while (member != method);
+                recursive[componentCount] = members > 1 || callsItself(callees, method);
+                componentCount++;
+            }
+        }
+        return new RecursionGroups(components, Arrays.copyOf(recursive, componentCount));
+    }
+
+    /**
+     * Whether the call can find the callee on the call chain, i.e. both are in the same recursive group.
+     */
+    public boolean mayCloseCycle(int caller, int callee) {
+        int component = components[caller];
+        return component != UNVISITED && component == components[callee] && recursive[component];
+    }
+
+    public boolean isRecursive(int method) {
+        return components[method] != UNVISITED && recursive[components[method]];
+    }
+
+    public int getComponentCount() {
+        return recursive.length;
+    }
+
+    private static int[] callees(MethodIrCache.Lowered lowered, int method) {
+        MethodIr lowering = lowered.get(method);
+        return lowering == null ? new int[0] : lowering.getCallees();
+    }
+
+    private static boolean callsItself(int[] callees, int method) {
+        for (int callee : callees) {
+            if (callee == method) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
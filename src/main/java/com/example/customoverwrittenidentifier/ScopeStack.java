@@ -0,0 +1,81 @@
+package com.example.customoverwrittenidentifier;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable stack: push and pop return a new stack that shares everything below its top with the old one.
+ * Node keeps its loops, switches, pending functions and pointers around it in these, so a child starts from its
+ * father's stacks as they are, and entering or leaving a scope costs one small object instead of copying the
+ * stack into every child.
+ */
+public final class ScopeStack<T> {
+
+    private static final ScopeStack<?> EMPTY = new ScopeStack<>(null, null, 0);
+
+    private final T top;
+
+    private final ScopeStack<T> rest;
+
+    private final int size;
+
+    private ScopeStack(T top, ScopeStack<T> rest, int size) {
+        this.top = top;
+        this.rest = rest;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> ScopeStack<T> empty() {
+        return (ScopeStack<T>) EMPTY;
+    }
+
+    /**
+     * A stack with the elements of the list, the last one on top.
+     */
+    public static <T> ScopeStack<T> of(List<T> elements) {
+        ScopeStack<T> stack = empty();
+        for (T element : elements) {
+            stack = stack.push(element);
+        }
+        return stack;
+    }
+
+    public ScopeStack<T> push(T element) {
+        return new ScopeStack<>(element, this, size + 1);
+    }
+
+    public ScopeStack<T> pop() {
+        if (size == 0) {
+            throw new NoSuchElementException("pop of an empty scope stack");
+        }
+        return rest;
+    }
+
+    // the top, or null when the stack is empty
+    public T peek() {
+        return top;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The elements from the bottom to the top, as a list that is not kept in sync with anything.
+     */
+    public List<T> toList() {
+        List<T> elements = new ArrayList<>(size);
+        for (ScopeStack<T> stack = this; stack.size > 0; stack = stack.rest) {
+            elements.add(stack.top);
+        }
+        Collections.reverse(elements);
+        return elements;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.customoverwrittenidentifier;
+
+import java.util.Objects;
+
+/**
+ * What one callback may cost: wall time, number of sequences and their estimated size as text. A limit of 0
+ * means no limit. Within the budget the depth goes as far as the depth limit; a callback that would not fit
+ * gets a lower depth, and one that still does not fit is cut off (see CcfgSequenceGenerator).
+ */
+public final class SequenceBudget {
+
+    public static final SequenceBudget UNLIMITED = new SequenceBudget(0, 0, 0);
+
+    private final long maxMillis;
+
+    private final long maxSequences;
+
+    private final long maxBytes;
+
+    public SequenceBudget(long maxMillis, long maxSequences, long maxBytes) {
+        if (maxMillis < 0 || maxSequences < 0 || maxBytes < 0) {
+            throw new IllegalArgumentException("a budget cannot be negative");
+        }
+        this.maxMillis = maxMillis;
+        this.maxSequences = maxSequences;
+        this.maxBytes = maxBytes;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    public long getMaxSequences() {
+        return maxSequences;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public boolean isUnlimited() {
+        return maxMillis == 0 && maxSequences == 0 && maxBytes == 0;
+    }
+
+    /**
+     * Whether this many sequences of this size fit; the time is only known while generating.
+     */
+    public boolean fits(long sequences, long bytes) {
+        return (maxSequences == 0 || sequences <= maxSequences) && (maxBytes == 0 || bytes <= maxBytes);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SequenceBudget)) {
+            return false;
+        }
+        SequenceBudget budget = (SequenceBudget) o;
+        return maxMillis == budget.maxMillis && maxSequences == budget.maxSequences && maxBytes == budget.maxBytes;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(maxMillis, maxSequences, maxBytes);
+    }
+
+    @Override
+    public String toString() {
+        return isUnlimited() ? "no budget"
+                : "budget of " + (maxMillis == 0 ? "-" : maxMillis + " ms") + ", "
+                + (maxSequences == 0 ? "-" : maxSequences + " sequences") + ", "
+                + (maxBytes == 0 ? "-" : maxBytes + " bytes");
+    }
+}
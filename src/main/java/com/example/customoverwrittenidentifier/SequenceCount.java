@@ -0,0 +1,86 @@
+package com.example.customoverwrittenidentifier;
+
+import java.math.BigInteger;
+
+/**
+ * A number of sequences. It is kept as a long and only becomes a BigInteger once it no longer fits.
+ */
+public final class SequenceCount implements Comparable<SequenceCount> {
+
+    public static final SequenceCount ZERO = new SequenceCount(0, null);
+
+    public static final SequenceCount ONE = new SequenceCount(1, null);
+
+    private final long value;
+
+    private final BigInteger bigValue;
+
+    private SequenceCount(long value, BigInteger bigValue) {
+        this.value = value;
+        this.bigValue = bigValue;
+    }
+
+    public static SequenceCount of(long value) {
+        return value == 0 ? ZERO : value == 1 ? ONE : new SequenceCount(value, null);
+    }
+
+    public SequenceCount plus(SequenceCount other) {
+        if (other.isZero()) {
+            return this;
+        }
+        if (isZero()) {
+            return other;
+        }
+        if (bigValue == null && other.bigValue == null) {
+            long sum = value + other.value;
+            // both are positive, so an overflow always shows up as a negative sum
+            if (sum >= 0) {
+                return new SequenceCount(sum, null);
+            }
+        }
+        return new SequenceCount(0, toBigInteger().add(other.toBigInteger()));
+    }
+
+    public SequenceCount plusOne() {
+        return plus(ONE);
+    }
+
+    public boolean isZero() {
+        return bigValue == null && value == 0;
+    }
+
+    public boolean fitsInLong() {
+        return bigValue == null;
+    }
+
+    public long longValue() {
+        return bigValue == null ? value : bigValue.longValue();
+    }
+
+    public BigInteger toBigInteger() {
+        return bigValue != null ? bigValue : BigInteger.valueOf(value);
+    }
+
+    @Override
+    public int compareTo(SequenceCount other) {
+        if (bigValue == null && other.bigValue == null) {
+            return Long.compare(value, other.value);
+        }
+        return toBigInteger().compareTo(other.toBigInteger());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof SequenceCount && compareTo((SequenceCount) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return toBigInteger().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return bigValue != null ? bigValue.toString() : Long.toString(value);
+    }
+}
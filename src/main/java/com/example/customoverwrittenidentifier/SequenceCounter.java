@@ -0,0 +1,241 @@
+package com.example.customoverwrittenidentifier;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.psi.*;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Computes how many sequences CallSequenceExplorer would emit, without building any path.
+ *
+ * It follows the same If/For/While/Switch/Try/MethodCall structure as exploreStatement, but adds up the
+ * counts of the branches instead of walking them with a prefix. The count of a call does not depend on the
+ * call chain (a cycle only changes the label of the call), so the count of every expanded method body is
+ * computed once per depth and reused by every call site and every callback.
+ */
+public class SequenceCounter {
+
+    private final String basePath;
+
+    private final ModificationTracker modificationTracker;
+
+    private final int maxDepth;
+
+    private final Map<BodyKey, SequenceCount> bodyCounts = new ConcurrentHashMap<>();
+
+    private volatile long modificationCount;
+
+    public SequenceCounter(String basePath, ModificationTracker modificationTracker) {
+        this(basePath, modificationTracker, CallSequenceExplorer.MAX_DEPTH);
+    }
+
+    // maxDepth as for the explorer whose sequences are counted
+    public SequenceCounter(String basePath, ModificationTracker modificationTracker, int maxDepth) {
+        this.basePath = basePath;
+        this.modificationTracker = modificationTracker;
+        this.maxDepth = maxDepth;
+        this.modificationCount = modificationTracker.getModificationCount();
+    }
+
+    /**
+     * The number of sequences exploreOverriddenMethod emits for this method.
+     */
+    public SequenceCount countOverriddenMethod(PsiMethod psiMethod) {
+        long current = modificationTracker.getModificationCount();
+        if (current != modificationCount) {
+            bodyCounts.clear();
+            modificationCount = current;
+        }
+
+        if (!isInProject(psiMethod) || psiMethod.getAnnotation("java.lang.Override") == null) {
+            return SequenceCount.ZERO;
+        }
+        PsiCodeBlock body = psiMethod.getBody();
+        if (body == null) {
+            return SequenceCount.ZERO;
+        }
+        return countBlock(body, 1);
+    }
+
+    private SequenceCount countStatement(PsiStatement statement, int depth) {
+        ProgressManager.checkCanceled();
+
+        if (depth > maxDepth) {
+            return SequenceCount.ONE;
+        }
+        if (statement == null) {
+            return SequenceCount.ZERO;
+        }
+
+        switch (CallSequenceExplorer.getStatementType(statement)) {
+            case "If":
+                return countIfStatement((PsiIfStatement) statement, depth);
+            case "For": {
+                PsiStatement body = ((PsiForStatement) statement).getBody();
+                return countSubStatements(body, depth).plusOne(); // + (exit for)
+            }
+            case "While": {
+                PsiStatement body = ((PsiWhileStatement) statement).getBody();
+                return countSubStatements(body, depth).plusOne(); // + (exit while)
+            }
+            case "Do While": {
+                PsiStatement body = ((PsiDoWhileStatement) statement).getBody();
+                return countSubStatements(body, depth).plusOne(); // + (exit do-while)
+            }
+            case "Switch":
+                return countSwitchStatement((PsiSwitchStatement) statement, depth);
+            case "Try":
+                return countTryStatement((PsiTryStatement) statement, depth);
+            case "MethodCall":
+                return countCall(((PsiMethodCallExpression) ((PsiExpressionStatement) statement).getExpression()), depth);
+            case "Declaration": {
+                long variables = 0;
+                for (PsiElement element : ((PsiDeclarationStatement) statement).getDeclaredElements()) {
+                    if (element instanceof PsiVariable) {
+                        variables++;
+                    }
+                }
+                return SequenceCount.of(variables);
+            }
+            case "Assignment": {
+                PsiExpression expr = ((PsiExpressionStatement) statement).getExpression();
+                PsiExpression rhs = ((PsiAssignmentExpression) expr).getRExpression();
+                if (rhs instanceof PsiMethodCallExpression) {
+                    return countCall((PsiMethodCallExpression) rhs, depth);
+                }
+                return SequenceCount.ONE;
+            }
+            case "Break":
+            case "Continue":
+            case "IncrementDecrement":
+                return SequenceCount.ONE;
+            default:
+                if (statement instanceof PsiBlockStatement) {
+                    return countBlock(((PsiBlockStatement) statement).getCodeBlock(), depth);
+                }
+                return SequenceCount.ONE; // [Unidentified Statement]
+        }
+    }
+
+    private SequenceCount countIfStatement(PsiIfStatement ifStmt, int depth) {
+        SequenceCount count = SequenceCount.ZERO;
+        if (ifStmt.getThenBranch() != null) {
+            count = count.plus(countSubStatements(ifStmt.getThenBranch(), depth));
+        }
+        PsiStatement elseBranch = ifStmt.getElseBranch();
+        if (elseBranch instanceof PsiIfStatement) {
+            count = count.plus(countIfStatement((PsiIfStatement) elseBranch, depth));
+        } else if (elseBranch != null) {
+            count = count.plus(countSubStatements(elseBranch, depth));
+        }
+        return count;
+    }
+
+    private SequenceCount countSwitchStatement(PsiSwitchStatement switchStmt, int depth) {
+        PsiCodeBlock body = switchStmt.getBody();
+        if (body == null) {
+            return SequenceCount.ONE; // (empty switch)
+        }
+        SequenceCount count = SequenceCount.ONE; // (exit switch)
+        for (PsiStatement st : body.getStatements()) {
+            if (!(st instanceof PsiSwitchLabelStatement)) {
+                count = count.plus(countStatement(st, depth));
+            }
+        }
+        return count;
+    }
+
+    private SequenceCount countTryStatement(PsiTryStatement tryStmt, int depth) {
+        SequenceCount count = SequenceCount.ONE; // (end try)
+        if (tryStmt.getTryBlock() != null) {
+            count = count.plus(countBlock(tryStmt.getTryBlock(), depth));
+        }
+        for (PsiCatchSection c : tryStmt.getCatchSections()) {
+            if (c.getCatchBlock() != null) {
+                count = count.plus(countBlock(c.getCatchBlock(), depth));
+            }
+        }
+        if (tryStmt.getFinallyBlock() != null) {
+            count = count.plus(countBlock(tryStmt.getFinallyBlock(), depth));
+        }
+        return count;
+    }
+
+    private SequenceCount countCall(PsiMethodCallExpression callExpr, int depth) {
+        PsiMethod resolved = callExpr.resolveMethod();
+        if (resolved == null || !isInProject(resolved)) {
+            return SequenceCount.ONE; // [UnresolvedCall] or (external)
+        }
+        // a cycle expands exactly like any other call below maxDepth, and stops with one sequence at it
+        return countMethodBody(resolved, depth);
+    }
+
+    private SequenceCount countMethodBody(PsiMethod method, int depth) {
+        if (depth >= maxDepth) {
+            return SequenceCount.ONE; // (depth limit reached)
+        }
+        BodyKey key = new BodyKey(method, depth);
+        SequenceCount cached = bodyCounts.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        PsiCodeBlock body = method.getBody();
+        SequenceCount count = body == null || body.getStatements().length == 0
+                ? SequenceCount.ONE // (empty method)
+                : countBlock(body, depth + 1);
+        bodyCounts.put(key, count);
+        return count;
+    }
+
+    private SequenceCount countSubStatements(PsiStatement statement, int depth) {
+        if (statement == null) {
+            return SequenceCount.ZERO;
+        }
+        if (statement instanceof PsiBlockStatement) {
+            return countBlock(((PsiBlockStatement) statement).getCodeBlock(), depth);
+        }
+        return countStatement(statement, depth);
+    }
+
+    private SequenceCount countBlock(PsiCodeBlock block, int depth) {
+        SequenceCount count = SequenceCount.ZERO;
+        for (PsiStatement st : block.getStatements()) {
+            count = count.plus(countStatement(st, depth));
+        }
+        return count;
+    }
+
+    private boolean isInProject(PsiMethod method) {
+        PsiFile containingFile = method.getContainingFile();
+        return containingFile != null
+                && containingFile.getVirtualFile() != null
+                && containingFile.getVirtualFile().getPath().startsWith(basePath);
+    }
+
+    private static final class BodyKey {
+        private final PsiMethod method;
+        private final int depth;
+
+        private BodyKey(PsiMethod method, int depth) {
+            this.method = method;
+            this.depth = depth;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof BodyKey)) {
+                return false;
+            }
+            BodyKey key = (BodyKey) o;
+            return depth == key.depth && method.equals(key.method);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(method, depth);
+        }
+    }
+}
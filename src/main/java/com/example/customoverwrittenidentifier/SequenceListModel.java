@@ -0,0 +1,115 @@
+package com.example.customoverwrittenidentifier;
+
+import javax.swing.AbstractListModel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A virtual list over a result store: one header row per callback followed by its sequences. Nothing is
+ * loaded up front; a row is read from the store, one page at a time, only when the list asks for it, and
+ * only the last few pages are kept in memory.
+ */
+public class SequenceListModel extends AbstractListModel<Object> {
+
+    private static final int CACHED_PAGES = 32;
+
+    private SequenceResultStore store;
+
+    private List<SequenceResultStore.CallbackRange> callbacks = Collections.emptyList();
+
+    // headerRows[i] is the row of the header of callbacks[i]; its sequences are the rows right after it
+    private int[] headerRows = new int[0];
+
+    private int size = 0;
+
+    private final Map<Integer, List<String>> pages = new LinkedHashMap<Integer, List<String>>(CACHED_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<String>> eldest) {
+            return size() > CACHED_PAGES;
+        }
+    };
+
+    public void setStore(SequenceResultStore store) {
+        int oldSize = size;
+        this.store = store;
+        callbacks = Collections.emptyList();
+        headerRows = new int[0];
+        size = 0;
+        pages.clear();
+        if (oldSize > 0) {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+        refresh();
+    }
+
+    /**
+     * Pick up the callbacks completed since the last refresh.
+     */
+    public void refresh() {
+        if (store == null) {
+            return;
+        }
+        List<SequenceResultStore.CallbackRange> newCallbacks = store.getCallbacks();
+        if (newCallbacks.size() == callbacks.size()) {
+            return;
+        }
+        int oldSize = size;
+        int[] newHeaderRows = Arrays.copyOf(headerRows, newCallbacks.size());
+        int row = size;
+        for (int i = callbacks.size(); i < newCallbacks.size(); i++) {
+            newHeaderRows[i] = row;
+            row += 1 + newCallbacks.get(i).getCount();
+        }
+        callbacks = newCallbacks;
+        headerRows = newHeaderRows;
+        size = row;
+        // the last page may have been cached while it was still being written
+        pages.clear();
+        fireIntervalAdded(this, oldSize, size - 1);
+    }
+
+    public int getSequenceCount() {
+        int count = 0;
+        for (SequenceResultStore.CallbackRange callback : callbacks) {
+            count += callback.getCount();
+        }
+        return count;
+    }
+
+    public int getCallbackCount() {
+        return callbacks.size();
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * A CallbackRange for a header row, the text of the sequence otherwise.
+     */
+    @Override
+    public Object getElementAt(int row) {
+        int callbackIndex = Arrays.binarySearch(headerRows, row);
+        if (callbackIndex >= 0) {
+            return callbacks.get(callbackIndex);
+        }
+        SequenceResultStore.CallbackRange callback = callbacks.get(-callbackIndex - 2);
+        int sequence = callback.getFirstSequence() + row - headerRows[-callbackIndex - 2] - 1;
+        return sequenceAt(sequence);
+    }
+
+    private String sequenceAt(int sequence) {
+        int page = sequence / SequenceResultStore.PAGE_SIZE;
+        List<String> pageSequences = pages.get(page);
+        if (pageSequences == null) {
+            pageSequences = store.read(page * SequenceResultStore.PAGE_SIZE, SequenceResultStore.PAGE_SIZE);
+            pages.put(page, pageSequences);
+        }
+        int offset = sequence % SequenceResultStore.PAGE_SIZE;
+        return offset < pageSequences.size() ? pageSequences.get(offset) : "";
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.customoverwrittenidentifier;
+
+import com.intellij.openapi.util.io.FileUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The sink behind the results view. The sequences of a run are kept in a temporary file, one length-prefixed
+ * UTF-8 record each, instead of on the heap. The offset of every PAGE_SIZE-th record is remembered, so any page
+ * is read with one seek, and each callback is kept as a range of sequence indices.
+ *
+ * The store is written by the engine and read by the UI, so all its methods are synchronized.
+ */
+public class SequenceResultStore implements SequenceSink {
+
+    public static final int PAGE_SIZE = 256;
+
+    private final File file;
+
+    private final DataOutputStream output;
+
+    private long bytesWritten = 0;
+
+    private long[] pageOffsets = new long[64];
+
+    private int size = 0;
+
+    private final List<CallbackRange> callbacks = new ArrayList<>();
+
+    private String currentCallback = null;
+
+    private int currentCallbackStart = 0;
+
+    private FileChannel reader = null;
+
+    private boolean finished = false;
+
+    private boolean disposed = false;
+
+    private final int maxDepth;
+
+    // maxDepth is the depth the sequences are explored to, for the view
+    public SequenceResultStore(int maxDepth) {
+        this.maxDepth = maxDepth;
+        try {
+            file = FileUtil.createTempFile("ccfg-sequences", ".bin", true);
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void startCallback(String callback) {
+        currentCallback = callback;
+        currentCallbackStart = size;
+    }
+
+    @Override
+    public synchronized void accept(TokenPath sequence) {
+        append(sequence.toText());
+    }
+
+    @Override
+    public synchronized void endCallback(String callback) {
+        if (size > currentCallbackStart) {
+            callbacks.add(new CallbackRange(currentCallback, currentCallbackStart, size - currentCallbackStart));
+        }
+        currentCallback = null;
+    }
+
+    public synchronized void append(String sequence) {
+        if (disposed) {
+            return;
+        }
+        if (size % PAGE_SIZE == 0) {
+            int page = size / PAGE_SIZE;
+            if (page == pageOffsets.length) {
+                pageOffsets = Arrays.copyOf(pageOffsets, page * 2);
+            }
+            pageOffsets[page] = bytesWritten;
+        }
+        byte[] bytes = sequence.getBytes(StandardCharsets.UTF_8);
+        try {
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        bytesWritten += 4 + bytes.length;
+        size++;
+    }
+
+    // no more sequences will come; the run that filled the store is over (finished, cancelled or failed)
+    public synchronized void finish() {
+        finished = true;
+        if (disposed) {
+            return;
+        }
+        try {
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized List<CallbackRange> getCallbacks() {
+        return Collections.unmodifiableList(new ArrayList<>(callbacks));
+    }
+
+    /**
+     * Read up to count sequences, starting at the given index.
+     */
+    public synchronized List<String> read(int from, int count) {
+        List<String> sequences = new ArrayList<>();
+        if (disposed || from < 0 || from >= size || count <= 0) {
+            return sequences;
+        }
+        int to = Math.min(size, from + count);
+        try {
+            output.flush();
+            if (reader == null) {
+                reader = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            }
+            reader.position(pageOffsets[from / PAGE_SIZE]);
+            DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(reader), 1 << 16));
+            for (int index = from - from % PAGE_SIZE; index < to; index++) {
+                int length = input.readInt();
+                if (index < from) {
+                    skipFully(input, length);
+                    continue;
+                }
+                byte[] bytes = new byte[length];
+                input.readFully(bytes);
+                sequences.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sequences;
+    }
+
+    private static void skipFully(DataInputStream input, int length) throws IOException {
+        int skipped = 0;
+        while (skipped < length) {
+            int n = input.skipBytes(length - skipped);
+            if (n <= 0) {
+                throw new EOFException();
+            }
+            skipped += n;
+        }
+    }
+
+    public synchronized void dispose() {
+        if (disposed) {
+            return;
+        }
+        disposed = true;
+        try {
+            output.close();
+            if (reader != null) {
+                reader.close();
+            }
+        } catch (IOException ignored) {
+            // nothing to do, the file is deleted below
+        }
+        FileUtil.delete(file);
+    }
+
+    /**
+     * The sequences of one callback: [firstSequence, firstSequence + count).
+     */
+    public static class CallbackRange {
+        private final String callback;
+        private final int firstSequence;
+        private final int count;
+
+        public CallbackRange(String callback, int firstSequence, int count) {
+            this.callback = callback;
+            this.firstSequence = firstSequence;
+            this.count = count;
+        }
+
+        public String getCallback() {
+            return callback;
+        }
+
+        public int getFirstSequence() {
+            return firstSequence;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+}
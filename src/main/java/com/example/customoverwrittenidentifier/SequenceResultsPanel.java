@@ -0,0 +1,96 @@
+package com.example.customoverwrittenidentifier;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.project.Project;
+import com.intellij.ui.ColoredListCellRenderer;
+import com.intellij.ui.SimpleTextAttributes;
+import com.intellij.ui.components.JBList;
+import com.intellij.ui.components.JBScrollPane;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.BorderFactory;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JPanel;
+import javax.swing.Timer;
+import java.awt.BorderLayout;
+
+/**
+ * The content of the CCFG Sequences tool window. The prototype value gives the list a fixed cell height, so
+ * Swing never measures all the rows and only the visible ones are ever loaded and rendered.
+ */
+public class SequenceResultsPanel extends JPanel implements Disposable {
+
+    private final SequenceListModel model = new SequenceListModel();
+
+    private final JLabel summary = new JLabel();
+
+    private SequenceResultStore results;
+
+    // while a run is still writing to the store, the list picks up the finished callbacks every second
+    private final Timer refreshTimer = new Timer(1000, e -> refresh());
+
+    public SequenceResultsPanel(Project project) {
+        super(new BorderLayout());
+
+        JBList<Object> list = new JBList<>(model);
+        list.setCellRenderer(new ColoredListCellRenderer<Object>() {
+            @Override
+            protected void customizeCellRenderer(@NotNull JList<?> list, Object value, int index,
+                                                 boolean selected, boolean hasFocus) {
+                if (value instanceof SequenceResultStore.CallbackRange) {
+                    SequenceResultStore.CallbackRange callback = (SequenceResultStore.CallbackRange) value;
+                    append(callback.getCallback(), SimpleTextAttributes.REGULAR_BOLD_ATTRIBUTES);
+                    append("  " + callback.getCount() + " sequences", SimpleTextAttributes.GRAYED_ATTRIBUTES);
+                } else {
+                    append("    " + value, SimpleTextAttributes.REGULAR_ATTRIBUTES);
+                }
+            }
+        });
+        // measured with the renderer above, after it has been set
+        list.setPrototypeCellValue("onCreate --> If (savedInstanceState == null) --> setContentView");
+
+        summary.setBorder(BorderFactory.createEmptyBorder(4, 6, 4, 6));
+        add(summary, BorderLayout.NORTH);
+        add(new JBScrollPane(list), BorderLayout.CENTER);
+
+        CcfgResultsService service = CcfgResultsService.getInstance(project);
+        service.addListener(this::showResults, this);
+        showResults(service.getResults());
+    }
+
+    private void showResults(SequenceResultStore newResults) {
+        results = newResults;
+        model.setStore(newResults);
+        updateSummary();
+        if (newResults != null && !newResults.isFinished()) {
+            refreshTimer.start();
+        } else {
+            refreshTimer.stop();
+        }
+    }
+
+    private void refresh() {
+        model.refresh();
+        updateSummary();
+        if (results == null || results.isFinished()) {
+            refreshTimer.stop();
+        }
+    }
+
+    private void updateSummary() {
+        if (results == null) {
+            summary.setText("Run Tools | Build the CCFG to see the call sequences here.");
+            return;
+        }
+        String state = results.isFinished() ? "" : " (running...)";
+        summary.setText("Number of sequences: " + model.getSequenceCount()
+                + " in " + model.getCallbackCount() + " callbacks, capped at depth of "
+                + results.getMaxDepth() + state);
+    }
+
+    @Override
+    public void dispose() {
+        refreshTimer.stop();
+    }
+}
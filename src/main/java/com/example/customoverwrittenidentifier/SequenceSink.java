@@ -0,0 +1,22 @@
+package com.example.customoverwrittenidentifier;
+
+/**
+ * Receives the call sequences as they are produced, instead of keeping all of them in one list.
+ *
+ * The engine calls a sink from one thread at a time, callback by callback in a fixed order: startCallback,
+ * accept for each sequence of the callback, then endCallback. The path handed to accept is only valid during
+ * the call; a sink that keeps a sequence has to copy it or turn it into text.
+ */
+public interface SequenceSink {
+
+    default void startCallback(String callback) {
+    }
+
+    void accept(TokenPath sequence);
+
+    default void endCallback(String callback) {
+    }
+
+    default void close() {
+    }
+}
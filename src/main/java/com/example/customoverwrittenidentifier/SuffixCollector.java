@@ -0,0 +1,64 @@
+package com.example.customoverwrittenidentifier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The sink of a body walk that collects the suffixes the walk adds on top of the path, for a method summary.
+ * Past MethodSummaryCache.MAX_SUMMARY_SIZE suffixes it stops collecting: the ones so far go to the caller's sink,
+ * and so does every later sequence as soon as the walk produces it. Such a summary is incomplete and is not kept,
+ * but the heap never holds more than MAX_SUMMARY_SIZE suffixes for a body being walked.
+ *
+ * Plain Java, so BytecodeSequenceExplorer can use it outside the IDE.
+ */
+public final class SuffixCollector implements SequenceSink {
+
+    private final int mark;
+
+    private final SequenceSink sequences;
+
+    private List<int[]> suffixes = new ArrayList<>();
+
+    private long count = 0;
+
+    public SuffixCollector(TokenPath path, SequenceSink sequences) {
+        this.mark = path.mark();
+        this.sequences = sequences;
+    }
+
+    @Override
+    public void accept(TokenPath completed) {
+        count++;
+        if (suffixes == null) {
+            sequences.accept(completed);
+            return;
+        }
+        int[] suffix = completed.copyTokens(mark);
+        suffixes.add(suffix);
+        if (suffixes.size() > MethodSummaryCache.MAX_SUMMARY_SIZE) {
+            // the walk goes on from this path, so it is put back as it was once the others are sent
+            for (int[] collected : suffixes) {
+                completed.reset(mark);
+                completed.pushAll(collected);
+                sequences.accept(completed);
+            }
+            completed.reset(mark);
+            completed.pushAll(suffix);
+            suffixes = null;
+        }
+    }
+
+    // null once the suffixes went to the caller's sink
+    public List<int[]> getSuffixes() {
+        return suffixes;
+    }
+
+    public boolean isStreamed() {
+        return suffixes == null;
+    }
+
+    // every sequence seen, collected or not
+    public long getCount() {
+        return count;
+    }
+}
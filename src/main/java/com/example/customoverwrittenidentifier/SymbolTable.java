@@ -0,0 +1,75 @@
+package com.example.customoverwrittenidentifier;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns the text fragments of the call sequences ("onClick", " --> If (x > 0)", " (external)", ...)
+ * so a path can be kept as an array of ints. Interning is thread-safe; ids are never reused.
+ *
+ * Every symbol also gets the two polynomial hashes of its text that TokenPath combines into the fingerprint
+ * of a sequence, along with the power of the base that appends a symbol to the hash of what comes before it.
+ */
+public class SymbolTable {
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    private volatile String[] symbols = new String[1024];
+
+    // high hash, high power, low hash, low power for each id; written before the id is published
+    private volatile long[] hashes = new long[4 * 1024];
+
+    private int size = 0;
+
+    public int intern(String symbol) {
+        Integer id = ids.get(symbol);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(symbol);
+            if (id != null) {
+                return id;
+            }
+            String[] current = symbols;
+            long[] currentHashes = hashes;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, size * 2);
+                currentHashes = Arrays.copyOf(currentHashes, size * 8);
+            }
+            current[size] = symbol;
+            hash(symbol, TokenPath.HIGH_BASE, currentHashes, 4 * size);
+            hash(symbol, TokenPath.LOW_BASE, currentHashes, 4 * size + 2);
+            hashes = currentHashes;
+            symbols = current;
+            // the id is published after the symbol, so whoever reads the id can read the symbol too
+            ids.put(symbol, size);
+            return size++;
+        }
+    }
+
+    public String symbol(int id) {
+        return symbols[id];
+    }
+
+    // the hashes of a symbol, in the order of the hashes array
+    long[] hashes() {
+        return hashes;
+    }
+
+    private static void hash(String symbol, long base, long[] hashes, int at) {
+        long hash = 0;
+        long power = 1;
+        for (int i = 0; i < symbol.length(); i++) {
+            hash = TokenPath.addMod(TokenPath.multiplyMod(hash, base), symbol.charAt(i) + 1);
+            power = TokenPath.multiplyMod(power, base);
+        }
+        hashes[at] = hash;
+        hashes[at + 1] = power;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.customoverwrittenidentifier;
+
+import com.intellij.openapi.util.io.FileUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * The result buffer of one callback: its sequences as token ids, one length followed by the tokens.
+ * A worker fills it inside its read action and the engine replays it into the sink once the callbacks
+ * before it are done; an incremental run keeps it and replays it again while the callback is unaffected.
+ * Past a few million tokens the buffer moves to a temporary file, so a huge callback does not grow the heap.
+ * A finished buffer that is kept for later can be moved there too, and then holds no open file.
+ */
+public class TokenBuffer implements SequenceSink {
+
+    static final int MAX_IN_MEMORY_TOKENS = 4 * 1024 * 1024;
+
+    private int[] data = new int[256];
+
+    private int size = 0;
+
+    private int sequenceCount = 0;
+
+    private File spillFile = null;
+
+    private DataOutputStream spillOutput = null;
+
+    @Override
+    public void accept(TokenPath sequence) {
+        if (spillFile != null && spillOutput == null) {
+            throw new IllegalStateException("the buffer was moved to disk");
+        }
+        int length = sequence.size();
+        sequenceCount++;
+        if (spillOutput == null && size + length + 1 > MAX_IN_MEMORY_TOKENS) {
+            spill();
+        }
+        if (spillOutput != null) {
+            try {
+                spillOutput.writeInt(length);
+                for (int i = 0; i < length; i++) {
+                    spillOutput.writeInt(sequence.tokenAt(i));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
+        if (size + length + 1 > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, size + length + 1));
+        }
+        data[size++] = length;
+        for (int i = 0; i < length; i++) {
+            data[size++] = sequence.tokenAt(i);
+        }
+    }
+
+    public int getSequenceCount() {
+        return sequenceCount;
+    }
+
+    // the tokens held on the heap; none once the buffer is on disk
+    public int getInMemoryTokens() {
+        return size;
+    }
+
+    /**
+     * Move a finished buffer to its temporary file and close the file; it can still be replayed, but no more
+     * sequences can be added. An empty buffer stays as it is.
+     */
+    public void moveToDisk() {
+        if (spillFile == null && size > 0) {
+            spill();
+        }
+        if (spillOutput != null) {
+            try {
+                spillOutput.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            spillOutput = null;
+        }
+    }
+
+    /**
+     * Hand every buffered sequence to the sink, in the order they were produced. The buffer stays as it is,
+     * so it can be replayed again; discard it once it is no longer needed.
+     */
+    public void replay(SymbolTable symbols, SequenceSink sink) {
+        TokenPath path = new TokenPath(symbols);
+        try {
+            if (spillFile == null) {
+                for (int i = 0; i < size; ) {
+                    int length = data[i++];
+                    path.reset(0);
+                    path.pushAll(data, i, length);
+                    sink.accept(path);
+                    i += length;
+                }
+                return;
+            }
+            if (spillOutput != null) {
+                spillOutput.flush();
+            }
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(spillFile)))) {
+                while (true) {
+                    int length;
+                    try {
+                        length = input.readInt();
+                    } catch (EOFException end) {
+                        break;
+                    }
+                    path.reset(0);
+                    for (int i = 0; i < length; i++) {
+                        path.push(input.readInt());
+                    }
+                    sink.accept(path);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void discard() {
+        data = new int[0];
+        size = 0;
+        if (spillFile != null) {
+            try {
+                if (spillOutput != null) {
+                    spillOutput.close();
+                }
+            } catch (IOException ignored) {
+                // the file is deleted right after anyway
+            }
+            FileUtil.delete(spillFile);
+            spillFile = null;
+            spillOutput = null;
+        }
+    }
+
+    private void spill() {
+        try {
+            spillFile = FileUtil.createTempFile("ccfg-callback", ".tokens", true);
+            spillOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile)));
+            for (int i = 0; i < size; i++) {
+                spillOutput.writeInt(data[i]);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        data = new int[0];
+        size = 0;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.customoverwrittenidentifier;
+
+import java.util.Arrays;
+
+/**
+ * The path that is currently being explored, as a stack of interned tokens. Branches push their tokens
+ * on the way in and reset to a mark on the way out, so no prefix is ever copied; the text of a sequence
+ * is only built when it is emitted.
+ *
+ * The path also has a fingerprint of its text, for dropping duplicate sequences without building them (see
+ * DeduplicatingSequenceSink). It is made of two polynomial hashes modulo 2^61 - 1 with different bases, so
+ * equal texts get equal fingerprints however they are split into tokens. The fingerprint of every prefix is
+ * kept, so after a reset only the tokens pushed since are hashed again, and a path that is never asked for
+ * its fingerprint never hashes anything.
+ */
+public class TokenPath {
+
+    static final long MODULUS = (1L << 61) - 1;
+
+    static final long HIGH_BASE = 0x1b873593a5b2c9L;
+
+    static final long LOW_BASE = 0xcc9e2d51e6546bL;
+
+    private final SymbolTable symbols;
+
+    private int[] tokens = new int[64];
+
+    private int size = 0;
+
+    // the fingerprints of the prefixes: index i holds those of the first i tokens, valid up to hashedSize
+    private long[] highPrefixes = new long[65];
+
+    private long[] lowPrefixes = new long[65];
+
+    private int hashedSize = 0;
+
+    public TokenPath(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    public void push(String token) {
+        push(symbols.intern(token));
+    }
+
+    public void push(int token) {
+        if (size == tokens.length) {
+            tokens = Arrays.copyOf(tokens, size * 2);
+        }
+        tokens[size++] = token;
+    }
+
+    public void pushAll(int[] suffix) {
+        pushAll(suffix, 0, suffix.length);
+    }
+
+    public void pushAll(int[] source, int from, int length) {
+        if (size + length > tokens.length) {
+            tokens = Arrays.copyOf(tokens, Math.max(size * 2, size + length));
+        }
+        System.arraycopy(source, from, tokens, size, length);
+        size += length;
+    }
+
+    // the current size, to be passed to reset() once the branch is done
+    public int mark() {
+        return size;
+    }
+
+    public void reset(int mark) {
+        size = mark;
+        hashedSize = Math.min(hashedSize, mark);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int tokenAt(int index) {
+        return tokens[index];
+    }
+
+    public int[] copyTokens(int from) {
+        return Arrays.copyOfRange(tokens, from, size);
+    }
+
+    public long getFingerprintHigh() {
+        hashPrefixes();
+        return highPrefixes[size];
+    }
+
+    public long getFingerprintLow() {
+        hashPrefixes();
+        return lowPrefixes[size];
+    }
+
+    private void hashPrefixes() {
+        if (hashedSize == size) {
+            return;
+        }
+        if (size >= highPrefixes.length) {
+            highPrefixes = Arrays.copyOf(highPrefixes, tokens.length + 1);
+            lowPrefixes = Arrays.copyOf(lowPrefixes, tokens.length + 1);
+        }
+        long[] hashes = symbols.hashes();
+        for (int i = hashedSize; i < size; i++) {
+            int at = 4 * tokens[i];
+            highPrefixes[i + 1] = addMod(multiplyMod(highPrefixes[i], hashes[at + 1]), hashes[at]);
+            lowPrefixes[i + 1] = addMod(multiplyMod(lowPrefixes[i], hashes[at + 3]), hashes[at + 2]);
+        }
+        hashedSize = size;
+    }
+
+    // a * b modulo MODULUS, for a and b below it
+    static long multiplyMod(long a, long b) {
+        long low = a * b;
+        long high = Math.multiplyHigh(a, b);
+        long sum = (low & MODULUS) + ((low >>> 61) | (high << 3));
+        sum = (sum & MODULUS) + (sum >>> 61);
+        return sum >= MODULUS ? sum - MODULUS : sum;
+    }
+
+    static long addMod(long a, long b) {
+        long sum = a + b;
+        return sum >= MODULUS ? sum - MODULUS : sum;
+    }
+
+    public String toText() {
+        return toText(0);
+    }
+
+    public String toText(int from) {
+        StringBuilder text = new StringBuilder();
+        for (int i = from; i < size; i++) {
+            text.append(symbols.symbol(tokens[i]));
+        }
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toText();
+    }
+}
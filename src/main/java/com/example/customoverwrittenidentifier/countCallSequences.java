@@ -0,0 +1,72 @@
+package com.example.customoverwrittenidentifier;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Shows how many sequences each callback would produce, before committing to a full enumeration.
+ */
+public class countCallSequences extends AnAction {
+
+    @Override
+    public void actionPerformed(AnActionEvent anActionEvent) {
+        Project project = anActionEvent.getProject();
+        if (project == null) {
+            return;
+        }
+
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Counting the CCFG sequences", true) {
+            private final CallSequenceAnalysis analysis = new CallSequenceAnalysis(project);
+
+            private Map<String, SequenceCount> counts = Collections.emptyMap();
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                counts = analysis.countSequences(indicator);
+            }
+
+            @Override
+            public void onSuccess() {
+                showDialog(project, analysis.getMaxDepth(), counts);
+            }
+        });
+    }
+
+    /**
+     * Show the total and the count of every callback, the biggest first.
+     */
+    private void showDialog(Project project, int maxDepth, Map<String, SequenceCount> counts) {
+        String title = "Number of Call Sequences per Callback (Capped at depth of " + maxDepth + ")";
+        List<Map.Entry<String, SequenceCount>> callbacks = new ArrayList<>(counts.entrySet());
+        callbacks.sort(Map.Entry.<String, SequenceCount>comparingByValue().reversed());
+
+        SequenceCount total = SequenceCount.ZERO;
+        for (SequenceCount count : counts.values()) {
+            total = total.plus(count);
+        }
+
+        StringBuilder message = new StringBuilder("Number of sequences: ").append(total)
+                .append(" in ").append(counts.size()).append(" callbacks\n\n");
+        for (Map.Entry<String, SequenceCount> callback : callbacks) {
+            message.append(callback.getValue()).append("  ").append(callback.getKey()).append("\n");
+        }
+        Messages.showMessageDialog(project, message.toString(), title, Messages.getInformationIcon());
+    }
+
+    @Override
+    public void update(AnActionEvent e) {
+        e.getPresentation().setEnabled(e.getProject() != null);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.customoverwrittenidentifier;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+
+/**
+ * Streams every call sequence of the project to a text file, one per line, without keeping them in memory. A file
+ * named .ccfgseq gets the much smaller format of BinarySequenceSink instead.
+ */
+public class exportCallSequences extends AnAction {
+
+    @Override
+    public void actionPerformed(AnActionEvent anActionEvent) {
+        Project project = anActionEvent.getProject();
+        if (project == null) {
+            return;
+        }
+
+        FileSaverDescriptor descriptor = new FileSaverDescriptor(
+                "Export the CCFG Sequences", "Choose where to write the call sequences", "txt", BinarySequenceSink.EXTENSION);
+        VirtualFileWrapper target = FileChooserFactory.getInstance()
+                .createSaveFileDialog(descriptor, project)
+                .save((VirtualFile) null, "ccfg-sequences.txt");
+        if (target == null) {
+            return;
+        }
+        Path file = target.getFile().toPath();
+
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Exporting the CCFG sequences", true) {
+            private long sequenceCount = 0;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                boolean binary = file.getFileName().toString().endsWith("." + BinarySequenceSink.EXTENSION);
+                SequenceSink sink;
+                try {
+                    sink = binary ? new BinarySequenceSink(file) : new FileSequenceSink(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                try {
+                    IncrementalAnalysisService.getInstance(project).run(indicator, sink);
+                } finally {
+                    sink.close();
+                }
+                sequenceCount = binary
+                        ? ((BinarySequenceSink) sink).getSequenceCount()
+                        : ((FileSequenceSink) sink).getSequenceCount();
+            }
+
+            @Override
+            public void onSuccess() {
+                Messages.showMessageDialog(project, sequenceCount + " sequences written to " + file,
+                        "Export the CCFG Sequences", Messages.getInformationIcon());
+            }
+
+            @Override
+            public void onThrowable(@NotNull Throwable error) {
+                Messages.showErrorDialog(project, "Could not export the sequences: " + error.getMessage(),
+                        "Export the CCFG Sequences");
+            }
+        });
+    }
+
+    @Override
+    public void update(AnActionEvent e) {
+        e.getPresentation().setEnabled(e.getProject() != null);
+    }
+}
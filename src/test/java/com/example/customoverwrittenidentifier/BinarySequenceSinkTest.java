@@ -0,0 +1,237 @@
+package com.example.customoverwrittenidentifier;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class BinarySequenceSinkTest {
+
+    private final List<Path> files = new ArrayList<>();
+
+    @After
+    public void deleteFiles() throws IOException {
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void sharedPrefixesReplayAsText() throws IOException {
+        SymbolTable symbols = new SymbolTable();
+        roundTrip(sink -> {
+            TokenPath path = new TokenPath(symbols);
+            sink.startCallback("onClick");
+            emit(sink, path, "onClick", " --> If (x)", " --> a()");
+            emit(sink, path, "onClick", " --> If (x)", " --> b()");
+            // the same sequence again, then one that is a prefix of it, then one longer than both
+            emit(sink, path, "onClick", " --> If (x)", " --> b()");
+            emit(sink, path, "onClick", " --> If (x)");
+            emit(sink, path, "onClick", " --> If (x)", " --> b()", " --> c()", " --> d()");
+            // nothing in common from the first token
+            emit(sink, path, "onTouch", " --> If (x)", " --> b()");
+            emit(sink, path);
+            emit(sink, path, "onClick", " --> If (x\n && y)", " --> a()");
+            sink.endCallback("onClick");
+            // a new callback starts from nothing, even when it begins like the last sequence
+            sink.startCallback("onTouch");
+            emit(sink, path, "onClick", " --> If (x\n && y)", " --> a()");
+            emit(sink, path, "onClick", " --> If (x\n && y)", " --> e()");
+            sink.endCallback("onTouch");
+        });
+    }
+
+    @Test
+    public void sharedPrefixesAreWrittenOnce() throws IOException {
+        SymbolTable symbols = new SymbolTable();
+        Path[] written = roundTrip(sink -> {
+            TokenPath path = new TokenPath(symbols);
+            sink.startCallback("onClick");
+            for (int i = 0; i < 50; i++) {
+                path.push(" --> step" + i + "()");
+            }
+            int mark = path.mark();
+            for (int i = 0; i < 1000; i++) {
+                path.reset(mark);
+                path.push(" --> last" + (i % 10) + "()");
+                sink.accept(path);
+            }
+            sink.endCallback("onClick");
+        });
+        // each sequence after the first is a tag, two counts and one token: four bytes, next to the symbols
+        long text = Files.size(written[0]);
+        long binary = Files.size(written[1]);
+        assertTrue(binary + " bytes", binary < 1000 * 4 + 2000);
+        assertTrue(binary * 100 < text);
+    }
+
+    @Test
+    public void anotherSymbolTableIsWrittenAgain() throws IOException {
+        SymbolTable first = new SymbolTable();
+        SymbolTable second = new SymbolTable();
+        // the same ids stand for other symbols in the second table, and the same symbols have other ids
+        second.intern(" --> b()");
+        second.intern(" --> a()");
+        roundTrip(sink -> {
+            TokenPath one = new TokenPath(first);
+            TokenPath two = new TokenPath(second);
+            sink.startCallback("onClick");
+            emit(sink, one, " --> a()", " --> b()");
+            emit(sink, two, " --> a()", " --> b()");
+            emit(sink, two, " --> a()", " --> c()");
+            emit(sink, one, " --> a()", " --> b()", " --> c()");
+            emit(sink, one, " --> a()", " --> b()", " --> d()");
+            sink.endCallback("onClick");
+        });
+    }
+
+    @Test
+    public void callbacksReplayInOrder() throws IOException {
+        Path binary = file();
+        SymbolTable symbols = new SymbolTable();
+        BinarySequenceSink sink = new BinarySequenceSink(binary);
+        TokenPath path = new TokenPath(symbols);
+        sink.startCallback("onClick");
+        emit(sink, path, "onClick", " --> a()");
+        sink.endCallback("onClick");
+        sink.startCallback("onTouch");
+        sink.endCallback("onTouch");
+        sink.close();
+        assertEquals(1, sink.getSequenceCount());
+
+        List<String> events = new ArrayList<>();
+        try (BinarySequenceReader reader = new BinarySequenceReader(binary)) {
+            reader.replay(new SequenceSink() {
+                @Override
+                public void startCallback(String callback) {
+                    events.add("start " + callback);
+                }
+
+                @Override
+                public void accept(TokenPath sequence) {
+                    events.add(sequence.toText());
+                }
+
+                @Override
+                public void endCallback(String callback) {
+                    events.add("end " + callback);
+                }
+            });
+        }
+        assertEquals(List.of("start onClick", "onClick --> a()", "end onClick", "start onTouch", "end onTouch"), events);
+    }
+
+    @Test
+    public void numbersAtTheVarintEdgesReplayAsText() throws IOException {
+        SymbolTable symbols = new SymbolTable();
+        roundTrip(sink -> {
+            TokenPath path = new TokenPath(symbols);
+            sink.startCallback("onClick");
+            // token numbers 0 to 129, added counts of 127, 128 and 130, a shared count of 128
+            for (int length : new int[]{127, 128, 130}) {
+                path.reset(0);
+                for (int i = 0; i < length; i++) {
+                    path.push(" --> s" + i + "()");
+                }
+                sink.accept(path);
+                path.reset(0);
+                sink.accept(path);
+            }
+            for (int i = 0; i < 130; i++) {
+                path.push(" --> s" + i + "()");
+            }
+            sink.accept(path);
+            path.reset(128);
+            path.push(" --> other()");
+            sink.accept(path);
+            // symbols of 127 and 128 bytes
+            emit(sink, path, "x".repeat(127), "y".repeat(128));
+            sink.endCallback("onClick");
+        });
+    }
+
+    @Test
+    public void varintsReadBackAtTheEdges() throws IOException {
+        int[] values = {0, 1, 127, 128, 16_383, 16_384, Integer.MAX_VALUE};
+        int[] lengths = {1, 1, 1, 2, 2, 3, 5};
+        ByteArrayOutputStream all = new ByteArrayOutputStream();
+        for (int i = 0; i < values.length; i++) {
+            ByteArrayOutputStream one = new ByteArrayOutputStream();
+            BinarySequenceSink.writeVarint(one, values[i]);
+            assertEquals("bytes for " + values[i], lengths[i], one.size());
+            BinarySequenceSink.writeVarint(all, values[i]);
+        }
+        assertArrayEquals(new byte[]{0}, bytesOf(0));
+        assertArrayEquals(new byte[]{0x7F}, bytesOf(127));
+        assertArrayEquals(new byte[]{(byte) 0x80, 0x01}, bytesOf(128));
+        assertArrayEquals(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07}, bytesOf(Integer.MAX_VALUE));
+
+        ByteArrayInputStream in = new ByteArrayInputStream(all.toByteArray());
+        for (int value : values) {
+            assertEquals(value, BinarySequenceReader.readVarint(in));
+        }
+        assertThrows(EOFException.class, () -> BinarySequenceReader.readVarint(in));
+        assertThrows(EOFException.class,
+                () -> BinarySequenceReader.readVarint(new ByteArrayInputStream(new byte[]{(byte) 0x80})));
+        assertThrows(IOException.class, () -> BinarySequenceReader.readVarint(new ByteArrayInputStream(
+                new byte[]{(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01})));
+    }
+
+    // sends the same sequences to a text file and through a binary file into another text file, which have to
+    // be the same; returns the text export and the binary file
+    private Path[] roundTrip(Consumer<SequenceSink> sequences) throws IOException {
+        Path text = file();
+        FileSequenceSink export = new FileSequenceSink(text);
+        sequences.accept(export);
+        export.close();
+
+        Path binary = file();
+        BinarySequenceSink sink = new BinarySequenceSink(binary);
+        sequences.accept(sink);
+        sink.close();
+        assertEquals(export.getSequenceCount(), sink.getSequenceCount());
+
+        Path replayed = file();
+        FileSequenceSink replay = new FileSequenceSink(replayed);
+        try (BinarySequenceReader reader = new BinarySequenceReader(binary)) {
+            reader.replay(replay);
+        }
+        replay.close();
+        assertEquals(export.getSequenceCount(), replay.getSequenceCount());
+        assertEquals(Files.readString(text), Files.readString(replayed));
+        return new Path[]{text, binary};
+    }
+
+    private static void emit(SequenceSink sink, TokenPath path, String... tokens) {
+        path.reset(0);
+        for (String token : tokens) {
+            path.push(token);
+        }
+        sink.accept(path);
+    }
+
+    private static byte[] bytesOf(int value) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinarySequenceSink.writeVarint(out, value);
+        return out.toByteArray();
+    }
+
+    private Path file() throws IOException {
+        Path file = Files.createTempFile("sequences", ".tmp");
+        files.add(file);
+        return file;
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.customoverwrittenidentifier;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CcfgSequenceGeneratorTest {
+
+    private final SymbolTable symbols = new SymbolTable();
+
+    @Test
+    public void cursorMatchesGenerate() {
+        CcfgSequenceGenerator generator = generator();
+        List<String> all = all(generator);
+
+        List<String> pulled = new ArrayList<>();
+        TokenPath path = new TokenPath(symbols);
+        CcfgSequenceGenerator.Cursor cursor = generator.cursor(path);
+        while (cursor.next()) {
+            pulled.add(path.toText());
+        }
+        assertEquals(all, pulled);
+        assertEquals(all.size(), generator.getSequenceCount());
+        assertEquals(all.size(), cursor.getPosition());
+    }
+
+    @Test
+    public void skipLandsWhereNextWould() {
+        CcfgSequenceGenerator generator = generator();
+        List<String> all = all(generator);
+        for (int n = 0; n <= all.size() + 2; n++) {
+            TokenPath path = new TokenPath(symbols);
+            CcfgSequenceGenerator.Cursor cursor = generator.cursor(path);
+            assertEquals(Math.min(n, all.size()), cursor.skip(n));
+            assertEquals(Math.min(n, all.size()), cursor.getPosition());
+            if (n < all.size()) {
+                assertTrue(cursor.next());
+                assertEquals(all.get(n), path.toText());
+            } else {
+                assertFalse(cursor.next());
+            }
+        }
+    }
+
+    @Test
+    public void pagesAddUpToAllSequences() {
+        CcfgSequenceGenerator generator = generator();
+        List<String> all = all(generator);
+        CcfgSequenceGenerator.Cursor cursor = generator.cursor();
+        List<String> paged = new ArrayList<>();
+        for (List<String> page = cursor.nextPage(5); !page.isEmpty(); page = cursor.nextPage(5)) {
+            assertTrue(page.size() <= 5);
+            paged.addAll(page);
+        }
+        assertEquals(all, paged);
+
+        List<String> sent = new ArrayList<>();
+        CcfgSequenceGenerator.Cursor sending = generator.cursor();
+        int pages = 0;
+        for (int count = sending.nextPage(7, sequence -> sent.add(sequence.toText())); count > 0;
+             count = sending.nextPage(7, sequence -> sent.add(sequence.toText()))) {
+            pages++;
+        }
+        assertEquals(all, sent);
+        assertEquals((all.size() + 6) / 7, pages);
+    }
+
+    @Test
+    public void skipAndPagesInterleave() {
+        CcfgSequenceGenerator generator = generator();
+        List<String> all = all(generator);
+        CcfgSequenceGenerator.Cursor cursor = generator.cursor();
+        assertEquals(3, cursor.skip(3));
+        assertEquals(all.subList(3, 5), cursor.nextPage(2));
+        assertEquals(9, cursor.skip(9));
+        assertEquals(all.subList(14, 15), cursor.nextPage(1));
+        assertEquals(15, cursor.getPosition());
+    }
+
+    @Test
+    public void newCursorResumesFromAPosition() {
+        CcfgSequenceGenerator generator = generator();
+        List<String> all = all(generator);
+        CcfgSequenceGenerator.Cursor first = generator.cursor();
+        List<String> seen = new ArrayList<>(first.nextPage(11));
+
+        // as after a restart: only the position is kept
+        CcfgSequenceGenerator.Cursor resumed = generator.cursor();
+        assertEquals(first.getPosition(), resumed.skip(first.getPosition()));
+        for (List<String> page = resumed.nextPage(4); !page.isEmpty(); page = resumed.nextPage(4)) {
+            seen.addAll(page);
+        }
+        assertEquals(all, seen);
+    }
+
+    @Test
+    public void callAtTheDepthLimitEndsItsSequence() {
+        List<String> all = all(new CcfgSequenceGenerator(sampleGraph().freeze(), 0, symbols));
+        assertTrue(all.contains("onClick --> run() --> (depth limit reached)"));
+        assertFalse(all.stream().anyMatch(sequence -> sequence.contains(" --> d()")));
+        assertTrue(all.contains("onClick --> run() --> f()"));
+    }
+
+    @Test
+    public void budgetDepthMarksItsCutOffs() {
+        CcfgSequenceGenerator generator = new CcfgSequenceGenerator(recursiveGraph(3).freeze(), 3, symbols);
+        assertEquals(List.of(
+                "onClick --> If (x) --> d()",
+                "onClick --> If (x) --> helper (loop/cycle!) --> If (x) --> d()",
+                "onClick --> If (x) --> helper (loop/cycle!) --> If (x) --> helper (loop/cycle!) --> If (x) --> d()",
+                "onClick --> If (x) --> helper (loop/cycle!) --> If (x) --> helper (loop/cycle!) --> If (x)"
+                        + " --> helper (loop/cycle!) (stopped expansion)"), all(generator));
+
+        // two sequences fit at depth 1 only, where the cycle is cut off by the budget and not by the depth limit
+        List<String> budgeted = new ArrayList<>();
+        int depth = generator.generate(new TokenPath(symbols), sequence -> budgeted.add(sequence.toText()),
+                new SequenceBudget(0, 2, 0));
+        assertEquals(1, depth);
+        assertEquals(List.of(
+                "onClick --> If (x) --> d()",
+                "onClick --> If (x) --> helper (loop/cycle!) (stopped expansion: budget)"), budgeted);
+    }
+
+    private CcfgSequenceGenerator generator() {
+        return new CcfgSequenceGenerator(sampleGraph().freeze(), 3, symbols);
+    }
+
+    private List<String> all(CcfgSequenceGenerator generator) {
+        List<String> all = new ArrayList<>();
+        generator.generate(new TokenPath(symbols), sequence -> all.add(sequence.toText()));
+        return all;
+    }
+
+    // three branches of four cases each, two of them sharing their tail, then a call with two ways through
+    private static Node sampleGraph() {
+        Node entry = new Node("onClick", Node.NodeTypes.ENTRY);
+        Node shared = new Node(" --> log()", Node.NodeTypes.STATEMENT);
+        add(shared, " --> a()", Node.NodeTypes.STATEMENT);
+        add(shared, " --> b()", Node.NodeTypes.STATEMENT);
+        for (int branch = 0; branch < 3; branch++) {
+            Node condition = add(entry, " --> If (x" + branch + ")", Node.NodeTypes.CONDITION);
+            for (int item = 0; item < 4; item++) {
+                Node statement = add(condition, " --> s" + branch + item + "()", Node.NodeTypes.STATEMENT);
+                if (branch < 2) {
+                    statement.addChild(shared);
+                }
+            }
+        }
+        Node run = add(entry, " --> run()", Node.NodeTypes.STATEMENT);
+        Node pointer = add(run, " --> helper", Node.NodeTypes.POINTER);
+        Node method = add(pointer, " --> helper", Node.NodeTypes.METHOD);
+        add(method, " --> d()", Node.NodeTypes.STATEMENT);
+        add(method, " --> e()", Node.NodeTypes.STATEMENT);
+        add(pointer, " --> f()", Node.NodeTypes.STATEMENT);
+        return entry;
+    }
+
+    // a method that calls itself in one branch, built down to the given depth
+    private static Node recursiveGraph(int depth) {
+        Node entry = new Node("onClick", Node.NodeTypes.ENTRY);
+        Node caller = entry;
+        for (int level = 0; level <= depth; level++) {
+            Node pointer = add(caller, " --> helper (loop/cycle!)", Node.NodeTypes.POINTER);
+            Node method = add(pointer, " --> helper", Node.NodeTypes.METHOD);
+            if (level < depth) {
+                caller = add(method, " --> If (x)", Node.NodeTypes.CONDITION);
+                add(caller, " --> d()", Node.NodeTypes.STATEMENT);
+            }
+        }
+        return entry;
+    }
+
+    private static Node add(Node parent, String name, Node.NodeTypes type) {
+        Node child = new Node(name, type);
+        parent.addChild(child);
+        return child;
+    }
+}
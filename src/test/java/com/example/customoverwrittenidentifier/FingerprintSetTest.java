@@ -0,0 +1,62 @@
+package com.example.customoverwrittenidentifier;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FingerprintSetTest {
+
+    @Test
+    public void addsEachFingerprintOnce() {
+        FingerprintSet set = new FingerprintSet();
+        assertTrue(set.add(1, 2));
+        assertTrue(set.add(2, 1));
+        assertTrue(set.add(1, 3));
+        assertFalse(set.add(1, 2));
+        assertFalse(set.add(2, 1));
+        assertEquals(3, set.size());
+    }
+
+    @Test
+    public void emptyFingerprintIsNotAnEmptySlot() {
+        // (0, 0) marks an empty slot, so it is stored as (0, MODULUS), which no hash takes
+        FingerprintSet set = new FingerprintSet();
+        assertTrue(set.add(0, 0));
+        assertFalse(set.add(0, 0));
+        assertEquals(1, set.size());
+        assertTrue(set.add(0, 1));
+        assertTrue(set.add(1, 0));
+        assertFalse(set.add(0, 0));
+        assertEquals(3, set.size());
+
+        // the empty sequence has that fingerprint
+        TokenPath empty = new TokenPath(new SymbolTable());
+        assertFalse(set.add(empty.getFingerprintHigh(), empty.getFingerprintLow()));
+    }
+
+    @Test
+    public void findsEverythingAfterGrowing() {
+        FingerprintSet set = new FingerprintSet();
+        int count = 100_000;
+        long[] high = new long[count];
+        long[] low = new long[count];
+        Random random = new Random(7);
+        for (int i = 0; i < count; i++) {
+            // some share a half, and a few have a zero half, to crowd the same slots
+            high[i] = i % 10 == 0 ? 0 : random.nextLong() & TokenPath.MODULUS;
+            low[i] = i % 3 == 0 ? i + 1 : random.nextLong() & TokenPath.MODULUS;
+            assertTrue(set.add(high[i], low[i]));
+            assertEquals(i + 1, set.size());
+        }
+        assertTrue(set.add(0, 0));
+        for (int i = 0; i < count; i++) {
+            assertFalse(set.add(high[i], low[i]));
+        }
+        assertFalse(set.add(0, 0));
+        assertEquals(count + 1, set.size());
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.customoverwrittenidentifier;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class FrozenCcfgTest {
+
+    @Test
+    public void frozenLookupsMatchTheBuilder() {
+        Node entry = sampleGraph();
+        FrozenCcfg frozen = entry.freeze();
+        Map<Node, Integer> vertices = vertices(entry, frozen);
+
+        assertEquals(0, frozen.getEntry());
+        assertEquals(vertices.size(), frozen.size());
+        for (Map.Entry<Node, Integer> vertex : vertices.entrySet()) {
+            Node node = vertex.getKey();
+            int v = vertex.getValue();
+            assertEquals(node.getName(), frozen.getName(v));
+            assertEquals(node.getNodeType(), frozen.getNodeType(v));
+            assertEquals(node.hasChild(), frozen.hasChild(v));
+            assertArrayEquals(idsOf(node.getChildren(), vertices), frozen.getChildren(v));
+            assertArrayEquals(idsOf(node.getFathers(), vertices), frozen.getFathers(v));
+            assertEquals(idOf(node.getPartner(), vertices), frozen.getPartner(v));
+            assertEquals(idOf(node.getMainFather(), vertices), frozen.getMainFather(v));
+            assertEquals(node.getPointerCounts(), frozen.getPointerCounts(v));
+            assertEquals(idOf(node.getMostInnerLoop(), vertices), frozen.getMostInnerLoop(v));
+            assertEquals(idOf(node.getExitPointOfMostInnerLoop(), vertices), frozen.getExitPointOfMostInnerLoop(v));
+            assertEquals(idOf(node.getMostInnerLoopsOrSwitch(), vertices), frozen.getMostInnerLoopsOrSwitch(v));
+            assertEquals(idOf(node.getExitPointOfMostInnerLoopsOrSwitch(), vertices),
+                    frozen.getExitPointOfMostInnerLoopsOrSwitch(v));
+            assertEquals(node.doesThisExitsInChainPotentialFunctions(), frozen.doesThisExitsInChainPotentialFunctions(v));
+            assertEquals(idOf(node.getTheOriginalFunctionNode(), vertices), frozen.getTheOriginalFunctionNode(v));
+            for (Node.NodeTypes type : Node.NodeTypes.values()) {
+                assertArrayEquals(idsOf(node.getChildlessNodes(type), vertices), frozen.getChildlessNodes(v, type));
+                assertArrayEquals(idsOf(node.getSingleChildNodes(type), vertices), frozen.getSingleChildNodes(v, type));
+            }
+        }
+    }
+
+    @Test
+    public void exitsAndPartnersArePrecomputed() {
+        Node entry = new Node("onClick", Node.NodeTypes.ENTRY);
+        Node loop = add(entry, " --> While (i < n)", Node.NodeTypes.LOOP);
+        Node body = add(loop, " --> a()", Node.NodeTypes.STATEMENT);
+        Node exit = add(loop, " --> (exit while)", Node.NodeTypes.LOOP_EXIT);
+        Node after = add(exit, " --> b()", Node.NodeTypes.STATEMENT);
+
+        FrozenCcfg frozen = entry.freeze();
+        Map<Node, Integer> vertices = vertices(entry, frozen);
+        int v = vertices.get(body);
+        assertEquals((int) vertices.get(loop), frozen.getMostInnerLoop(v));
+        assertEquals((int) vertices.get(exit), frozen.getExitPointOfMostInnerLoop(v));
+        assertEquals((int) vertices.get(exit), frozen.getExitPointOfMostInnerLoopsOrSwitch(v));
+        // the node after the exit is the partner of the loop
+        assertEquals((int) vertices.get(after), frozen.getPartner(vertices.get(loop)));
+        assertEquals(FrozenCcfg.NONE, frozen.getMostInnerLoop(vertices.get(after)));
+    }
+
+    @Test
+    public void removedChildIsNotFrozen() {
+        Node entry = new Node("onClick", Node.NodeTypes.ENTRY);
+        Node kept = add(entry, " --> If (x)", Node.NodeTypes.CONDITION);
+        add(kept, " --> a()", Node.NodeTypes.STATEMENT);
+        Node empty = add(entry, " --> Else", Node.NodeTypes.CONDITION);
+        entry.removeChild(empty);
+
+        FrozenCcfg frozen = entry.freeze();
+        assertEquals(3, frozen.size());
+        assertEquals(1, frozen.getChildCount(frozen.getEntry()));
+        assertEquals(" --> If (x)", frozen.getName(frozen.getChild(frozen.getEntry(), 0)));
+    }
+
+    @Test
+    public void removeChildTakesOnlyThatChild() {
+        Node entry = new Node("onClick", Node.NodeTypes.ENTRY);
+        Node first = add(entry, " --> a()", Node.NodeTypes.STATEMENT);
+        Node second = add(entry, " --> b()", Node.NodeTypes.STATEMENT);
+        Node third = add(entry, " --> c()", Node.NodeTypes.STATEMENT);
+        entry.removeChild(second);
+        assertEquals(List.of(first, third), entry.getChildren());
+        entry.removeChild(third);
+        entry.removeChild(third);
+        assertEquals(List.of(first), entry.getChildren());
+    }
+
+    @Test
+    public void freezesADeepChain() {
+        Node entry = new Node("onClick", Node.NodeTypes.ENTRY);
+        Node last = entry;
+        for (int i = 0; i < 100_000; i++) {
+            last = add(last, " --> s" + i + "()", Node.NodeTypes.STATEMENT);
+        }
+        FrozenCcfg frozen = entry.freeze();
+        assertEquals(100_001, frozen.size());
+        int[] childless = frozen.getChildlessNodes(frozen.getEntry(), Node.NodeTypes.ALL);
+        assertEquals(1, childless.length);
+        assertEquals(last.getName(), frozen.getName(childless[0]));
+        assertEquals(99_999, frozen.getSingleChildNodes(frozen.getEntry(), Node.NodeTypes.STATEMENT).length);
+    }
+
+    // a loop, a switch and a method whose body calls it again, like CcfgBuilder builds them
+    private static Node sampleGraph() {
+        Node entry = new Node("onClick", Node.NodeTypes.ENTRY);
+        Node loop = add(entry, " --> While (i < n)", Node.NodeTypes.LOOP);
+        Node condition = add(loop, " --> If (x)", Node.NodeTypes.CONDITION);
+        add(condition, " --> break", Node.NodeTypes.BREAK);
+        add(loop, " --> a()", Node.NodeTypes.STATEMENT);
+        Node loopExit = add(loop, " --> (exit while)", Node.NodeTypes.LOOP_EXIT);
+        Node afterLoop = add(loopExit, " --> b()", Node.NodeTypes.STATEMENT);
+
+        Node switchNode = add(afterLoop, " --> Switch", Node.NodeTypes.SWITCH);
+        Node firstCase = add(switchNode, " --> Case 1", Node.NodeTypes.CASE);
+        add(firstCase, " --> c()", Node.NodeTypes.STATEMENT);
+        add(switchNode, " --> Case 2", Node.NodeTypes.CASE);
+        Node switchExit = add(switchNode, " --> (exit switch)", Node.NodeTypes.SWITCH_EXIT);
+        Node afterSwitch = add(switchExit, " --> helper", Node.NodeTypes.POINTER);
+
+        Node method = add(afterSwitch, " --> helper", Node.NodeTypes.METHOD);
+        Node call = add(method, " --> d()", Node.NodeTypes.STATEMENT);
+        Node again = add(call, " --> helper", Node.NodeTypes.METHOD);
+        add(again, " --> (stopped expansion)", Node.NodeTypes.STATEMENT);
+        Node methodExit = add(call, " --> (end helper)", Node.NodeTypes.METHOD_EXIT);
+        Node afterMethod = add(methodExit, " --> (back)", Node.NodeTypes.POINTER_AFFILIATION);
+        add(afterMethod, " --> e()", Node.NodeTypes.STATEMENT);
+        return entry;
+    }
+
+    private static Node add(Node parent, String name, Node.NodeTypes type) {
+        Node child = new Node(name, type);
+        parent.addChild(child);
+        return child;
+    }
+
+    // the vertex of every node, found by walking both graphs child by child
+    private static Map<Node, Integer> vertices(Node entry, FrozenCcfg frozen) {
+        Map<Node, Integer> vertices = new IdentityHashMap<>();
+        Deque<Node> nodes = new ArrayDeque<>();
+        Deque<Integer> ids = new ArrayDeque<>();
+        nodes.push(entry);
+        ids.push(frozen.getEntry());
+        while (!nodes.isEmpty()) {
+            Node node = nodes.pop();
+            int v = ids.pop();
+            Integer known = vertices.put(node, v);
+            if (known != null) {
+                assertEquals((int) known, v);
+                continue;
+            }
+            assertEquals(node.getChildren().size(), frozen.getChildCount(v));
+            for (int i = 0; i < node.getChildren().size(); i++) {
+                nodes.push(node.getChildren().get(i));
+                ids.push(frozen.getChild(v, i));
+            }
+        }
+        return vertices;
+    }
+
+    private static int idOf(Node node, Map<Node, Integer> vertices) {
+        Integer v = node == null ? null : vertices.get(node);
+        return v == null ? FrozenCcfg.NONE : v;
+    }
+
+    private static int[] idsOf(List<Node> nodes, Map<Node, Integer> vertices) {
+        List<Integer> ids = new ArrayList<>();
+        for (Node node : nodes) {
+            Integer v = vertices.get(node);
+            if (v != null) {
+                ids.add(v);
+            }
+        }
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
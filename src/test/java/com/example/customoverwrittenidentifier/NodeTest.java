@@ -0,0 +1,83 @@
+package com.example.customoverwrittenidentifier;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NodeTest {
+
+    @Test
+    public void childlessNodesInDepthFirstOrder() {
+        Node entry = new Node("onClick", Node.NodeTypes.ENTRY);
+        Node condition = add(entry, " --> If (x)", Node.NodeTypes.CONDITION);
+        Node a = add(condition, " --> a()", Node.NodeTypes.STATEMENT);
+        Node otherwise = add(entry, " --> Else", Node.NodeTypes.CONDITION);
+        Node b = add(otherwise, " --> b()", Node.NodeTypes.STATEMENT);
+        Node c = add(entry, " --> c()", Node.NodeTypes.STATEMENT);
+
+        assertEquals(List.of(a, b, c), entry.getChildlessNodes(Node.NodeTypes.ALL));
+        assertEquals(List.of(a, b, c), entry.getChildlessNodes(Node.NodeTypes.STATEMENT));
+        assertEquals(List.of(condition, otherwise), entry.getSingleChildNodes(Node.NodeTypes.CONDITION));
+    }
+
+    @Test
+    public void sharedChildIsVisitedOnce() {
+        Node entry = new Node("onClick", Node.NodeTypes.ENTRY);
+        Node left = add(entry, " --> If (x)", Node.NodeTypes.CONDITION);
+        Node right = add(entry, " --> Else", Node.NodeTypes.CONDITION);
+        Node join = add(left, " --> a()", Node.NodeTypes.STATEMENT);
+        right.addChild(join);
+
+        assertEquals(List.of(join), entry.getChildlessNodes(Node.NodeTypes.ALL));
+        assertEquals(List.of(left, right), entry.getSingleChildNodes(Node.NodeTypes.CONDITION));
+    }
+
+    @Test
+    public void exitOfTheStartNodeIsLeftOut() {
+        Node loop = new Node(" --> While (i < n)", Node.NodeTypes.LOOP);
+        Node body = add(loop, " --> a()", Node.NodeTypes.STATEMENT);
+        add(loop, " --> (exit while)", Node.NodeTypes.LOOP_EXIT);
+
+        assertEquals(List.of(body), loop.getChildlessNodes(Node.NodeTypes.ALL));
+    }
+
+    @Test
+    public void setAllChildrenUnvisitedClearsEveryNode() {
+        Node entry = new Node("onClick", Node.NodeTypes.ENTRY);
+        Node a = add(entry, " --> a()", Node.NodeTypes.STATEMENT);
+        Node b = add(a, " --> b()", Node.NodeTypes.STATEMENT);
+        entry.setVisited();
+        a.setVisited();
+        b.setVisited();
+        assertTrue(entry.isAllChildrenVisited());
+
+        entry.setAllChildrenUnvisited();
+        assertFalse(entry.isVisited());
+        assertFalse(a.isVisited());
+        assertFalse(b.isVisited());
+    }
+
+    @Test
+    public void walksADeepChainWithoutOverflowing() {
+        Node entry = new Node("onClick", Node.NodeTypes.ENTRY);
+        Node last = entry;
+        for (int i = 0; i < 100_000; i++) {
+            last = add(last, " --> s" + i + "()", Node.NodeTypes.STATEMENT);
+            last.setVisited();
+        }
+        assertEquals(List.of(last), entry.getChildlessNodes(Node.NodeTypes.ALL));
+        assertEquals(99_999, entry.getSingleChildNodes(Node.NodeTypes.STATEMENT).size());
+        entry.setAllChildrenUnvisited();
+        assertFalse(last.isVisited());
+    }
+
+    private static Node add(Node parent, String name, Node.NodeTypes type) {
+        Node child = new Node(name, type);
+        parent.addChild(child);
+        return child;
+    }
+}
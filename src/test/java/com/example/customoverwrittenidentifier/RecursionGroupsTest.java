@@ -0,0 +1,94 @@
+package com.example.customoverwrittenidentifier;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RecursionGroupsTest {
+
+    @Test
+    public void methodThatCallsItself() {
+        // 0 -> 1, 1 -> 1, 1 -> 2
+        RecursionGroups groups = RecursionGroups.of(lowered(new int[][]{{1}, {1, 2}, {}}));
+        assertEquals(3, groups.getComponentCount());
+        assertFalse(groups.isRecursive(0));
+        assertTrue(groups.isRecursive(1));
+        assertFalse(groups.isRecursive(2));
+        assertTrue(groups.mayCloseCycle(1, 1));
+        assertFalse(groups.mayCloseCycle(0, 1));
+        assertFalse(groups.mayCloseCycle(1, 2));
+    }
+
+    @Test
+    public void methodsThatCallEachOther() {
+        // 0 -> 1 -> 2 -> 1, 2 -> 3 -> 4 -> 3, and 4 -> 5
+        RecursionGroups groups = RecursionGroups.of(lowered(new int[][]{{1}, {2}, {1, 3}, {4}, {3, 5}, {}}));
+        assertEquals(4, groups.getComponentCount());
+        assertTrue(groups.mayCloseCycle(1, 2));
+        assertTrue(groups.mayCloseCycle(2, 1));
+        assertTrue(groups.mayCloseCycle(3, 4));
+        assertTrue(groups.mayCloseCycle(4, 3));
+        // two recursive groups, but no cycle between them
+        assertFalse(groups.mayCloseCycle(2, 3));
+        assertFalse(groups.mayCloseCycle(4, 1));
+        assertFalse(groups.mayCloseCycle(0, 1));
+        assertFalse(groups.mayCloseCycle(4, 5));
+        assertFalse(groups.isRecursive(0));
+        assertFalse(groups.isRecursive(5));
+    }
+
+    @Test
+    public void chainWithoutRecursion() {
+        // 0 -> 1 -> 3 and 0 -> 2 -> 3: 3 is reached twice, but nothing reaches back
+        RecursionGroups groups = RecursionGroups.of(lowered(new int[][]{{1, 2}, {3}, {3}, {}}));
+        assertEquals(4, groups.getComponentCount());
+        for (int caller = 0; caller < 4; caller++) {
+            assertFalse(groups.isRecursive(caller));
+            for (int callee = 0; callee < 4; callee++) {
+                assertFalse(groups.mayCloseCycle(caller, callee));
+            }
+        }
+    }
+
+    @Test
+    public void unreachedMethodsAreInNoGroup() {
+        // 2 and 3 call each other, but the callback 0 only reaches 1
+        RecursionGroups groups = RecursionGroups.of(lowered(new int[][]{{1}, {}, {3}, {2}}));
+        assertEquals(2, groups.getComponentCount());
+        assertFalse(groups.isRecursive(2));
+        assertFalse(groups.mayCloseCycle(2, 3));
+    }
+
+    @Test
+    public void deepChainsNeedNoStack() {
+        int length = 100_000;
+        int[][] chain = new int[length][];
+        for (int method = 0; method < length; method++) {
+            chain[method] = method + 1 < length ? new int[]{method + 1} : new int[0];
+        }
+        RecursionGroups open = RecursionGroups.of(lowered(chain));
+        assertEquals(length, open.getComponentCount());
+        assertFalse(open.isRecursive(length - 1));
+
+        // the last method calls the first: one group of all of them
+        chain[length - 1] = new int[]{0};
+        RecursionGroups closed = RecursionGroups.of(lowered(chain));
+        assertEquals(1, closed.getComponentCount());
+        assertTrue(closed.mayCloseCycle(length - 1, 0));
+        assertTrue(closed.mayCloseCycle(0, length / 2));
+    }
+
+    // method i calls callees[i]; method 0 is the callback
+    private static MethodIrCache.Lowered lowered(int[][] callees) {
+        Map<Integer, MethodIr> methods = new LinkedHashMap<>();
+        for (int id = 0; id < callees.length; id++) {
+            methods.put(id, new MethodIr(id, "m" + id, "Test#m" + id, null, callees[id]));
+        }
+        return new MethodIrCache.Lowered(methods.get(0), methods);
+    }
+}
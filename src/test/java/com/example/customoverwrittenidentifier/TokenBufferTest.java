@@ -0,0 +1,122 @@
+package com.example.customoverwrittenidentifier;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class TokenBufferTest {
+
+    private final SymbolTable symbols = new SymbolTable();
+
+    private final List<TokenBuffer> buffers = new ArrayList<>();
+
+    @After
+    public void discardBuffers() {
+        for (TokenBuffer buffer : buffers) {
+            buffer.discard();
+        }
+    }
+
+    @Test
+    public void replaysFromMemory() {
+        TokenBuffer buffer = fill(100);
+        assertEquals(100, buffer.getSequenceCount());
+        assertEquals(expected(100), replayed(buffer));
+        // a replay leaves the buffer as it is
+        assertEquals(expected(100), replayed(buffer));
+    }
+
+    @Test
+    public void spillsPastTheLimitAndReplaysTheSame() {
+        int count = sequencesPast(TokenBuffer.MAX_IN_MEMORY_TOKENS);
+        TokenBuffer buffer = fill(count);
+        assertEquals(0, buffer.getInMemoryTokens());
+        assertEquals(count, buffer.getSequenceCount());
+        assertEquals(expected(count), replayed(buffer));
+        assertEquals(expected(count), replayed(buffer));
+    }
+
+    @Test
+    public void movedToDiskReplaysLikeInMemory() {
+        TokenBuffer inMemory = fill(1000);
+        TokenBuffer onDisk = fill(1000);
+        onDisk.moveToDisk();
+        assertEquals(0, onDisk.getInMemoryTokens());
+        assertEquals(replayed(inMemory), replayed(onDisk));
+    }
+
+    @Test
+    public void spilledBufferMovedToDiskStillReplays() {
+        int count = sequencesPast(TokenBuffer.MAX_IN_MEMORY_TOKENS);
+        TokenBuffer buffer = fill(count);
+        buffer.moveToDisk();
+        assertEquals(expected(count), replayed(buffer));
+    }
+
+    @Test
+    public void movedToDiskTakesNoMoreSequences() {
+        TokenBuffer buffer = fill(10);
+        buffer.moveToDisk();
+        assertThrows(IllegalStateException.class, () -> buffer.accept(sequence(11)));
+    }
+
+    @Test
+    public void emptyBufferStaysInMemory() {
+        TokenBuffer buffer = fill(0);
+        buffer.moveToDisk();
+        assertEquals(new ArrayList<String>(), replayed(buffer));
+    }
+
+    @Test
+    public void discardEmptiesTheBuffer() {
+        int count = sequencesPast(TokenBuffer.MAX_IN_MEMORY_TOKENS);
+        TokenBuffer spilled = fill(count);
+        TokenBuffer inMemory = fill(10);
+        spilled.discard();
+        inMemory.discard();
+        assertEquals(new ArrayList<String>(), replayed(spilled));
+        assertEquals(new ArrayList<String>(), replayed(inMemory));
+    }
+
+    // enough sequences of sequence(i) to go past the given number of tokens
+    private static int sequencesPast(int tokens) {
+        return tokens / 4 + 1;
+    }
+
+    private TokenBuffer fill(int count) {
+        TokenBuffer buffer = new TokenBuffer();
+        buffers.add(buffer);
+        for (int i = 0; i < count; i++) {
+            buffer.accept(sequence(i));
+        }
+        return buffer;
+    }
+
+    // three tokens, so four ints in the buffer with the length
+    private TokenPath sequence(int i) {
+        TokenPath path = new TokenPath(symbols);
+        path.push("onClick");
+        path.push(" --> call" + (i % 7));
+        path.push(" --> [Assignment: x = " + (i % 13) + "]");
+        return path;
+    }
+
+    private List<String> expected(int count) {
+        List<String> texts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            texts.add(sequence(i).toText());
+        }
+        return texts;
+    }
+
+    private List<String> replayed(TokenBuffer buffer) {
+        List<String> texts = new ArrayList<>();
+        buffer.replay(symbols, sequence -> texts.add(sequence.toText()));
+        return texts;
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.customoverwrittenidentifier;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class TokenPathTest {
+
+    private final SymbolTable symbols = new SymbolTable();
+
+    @Test
+    public void resetGoesBackToTheMark() {
+        TokenPath path = new TokenPath(symbols);
+        path.push("onClick");
+        int mark = path.mark();
+        path.push(" --> a");
+        path.push(" --> b");
+        assertEquals("onClick --> a --> b", path.toText());
+
+        path.reset(mark);
+        assertEquals(1, path.size());
+        assertEquals("onClick", path.toText());
+        path.push(" --> c");
+        assertEquals("onClick --> c", path.toText());
+    }
+
+    @Test
+    public void nestedMarksAreResetInOrder() {
+        TokenPath path = new TokenPath(symbols);
+        path.push("onClick");
+        int outer = path.mark();
+        path.push(" --> If (x)");
+        int inner = path.mark();
+        path.push(" --> a");
+        assertEquals(" --> If (x) --> a", path.toText(outer));
+        path.reset(inner);
+        path.push(" --> b");
+        assertEquals("onClick --> If (x) --> b", path.toText());
+        path.reset(outer);
+        assertEquals("onClick", path.toText());
+    }
+
+    @Test
+    public void copyTokensTakesTheSuffixAboveTheMark() {
+        TokenPath path = new TokenPath(symbols);
+        path.push("onClick");
+        int mark = path.mark();
+        path.push(" --> a");
+        path.push(" --> b");
+        int[] suffix = path.copyTokens(mark);
+        assertArrayEquals(new int[]{symbols.intern(" --> a"), symbols.intern(" --> b")}, suffix);
+
+        path.reset(mark);
+        path.pushAll(suffix);
+        assertEquals("onClick --> a --> b", path.toText());
+    }
+
+    @Test
+    public void growsPastItsInitialCapacity() {
+        TokenPath path = new TokenPath(symbols);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            path.push(" " + i);
+            expected.append(" ").append(i);
+        }
+        assertEquals(1000, path.size());
+        assertEquals(expected.toString(), path.toText());
+
+        int[] many = new int[500];
+        path.reset(10);
+        path.pushAll(many, 0, many.length);
+        assertEquals(510, path.size());
+    }
+
+    @Test
+    public void equalTextsGetEqualFingerprints() {
+        long[] whole = fingerprint(symbols, "onClick --> If (x) --> a()");
+        assertArrayEquals(whole, fingerprint(symbols, "onClick", " --> If (x)", " --> a()"));
+        assertArrayEquals(whole, fingerprint(symbols, "on", "Click -", "-> If (x) -->", " a", "()"));
+        assertArrayEquals(whole, fingerprint(symbols, "onClick --> If (x) --> a()".split("")));
+        // the fingerprint depends on the text only, not on the table's ids
+        SymbolTable other = new SymbolTable();
+        other.intern(" --> a()");
+        assertArrayEquals(whole, fingerprint(other, "onClick --> If (x)", " --> a()"));
+
+        long[] different = fingerprint(symbols, "onClick --> If (x) --> b()");
+        assertFalse(whole[0] == different[0] && whole[1] == different[1]);
+        long[] swapped = fingerprint(symbols, " --> a()", "onClick --> If (x)");
+        assertFalse(whole[0] == swapped[0] && whole[1] == swapped[1]);
+    }
+
+    @Test
+    public void fingerprintFollowsResets() {
+        TokenPath path = new TokenPath(symbols);
+        path.push("onClick");
+        int mark = path.mark();
+        path.push(" --> a()");
+        path.push(" --> b()");
+        assertArrayEquals(fingerprint(symbols, "onClick", " --> a()", " --> b()"), fingerprintOf(path));
+
+        // the prefixes above the mark are hashed again, those below are kept
+        path.reset(mark);
+        path.push(" --> c()");
+        assertArrayEquals(fingerprint(symbols, "onClick", " --> c()"), fingerprintOf(path));
+        path.reset(mark);
+        path.pushAll(new int[]{symbols.intern(" --> a()"), symbols.intern(" --> b()")});
+        assertArrayEquals(fingerprint(symbols, "onClick", " --> a()", " --> b()"), fingerprintOf(path));
+
+        // resetting below what was hashed, without asking in between
+        path.reset(0);
+        path.push("onTouch");
+        path.push(" --> d()");
+        assertArrayEquals(fingerprint(symbols, "onTouch", " --> d()"), fingerprintOf(path));
+
+        path.reset(0);
+        assertArrayEquals(new long[]{0, 0}, fingerprintOf(path));
+    }
+
+    @Test
+    public void fingerprintGrowsWithThePath() {
+        TokenPath path = new TokenPath(symbols);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            path.push(" " + i);
+            text.append(" ").append(i);
+            if (i % 37 == 0) {
+                assertArrayEquals(fingerprint(symbols, text.toString()), fingerprintOf(path));
+            }
+        }
+        assertArrayEquals(fingerprint(symbols, text.toString()), fingerprintOf(path));
+        path.reset(100);
+        path.pushAll(path.copyTokens(0));
+        assertArrayEquals(fingerprint(symbols, path.toText()), fingerprintOf(path));
+    }
+
+    private static long[] fingerprint(SymbolTable symbols, String... tokens) {
+        TokenPath path = new TokenPath(symbols);
+        for (String token : tokens) {
+            path.push(token);
+        }
+        return fingerprintOf(path);
+    }
+
+    private static long[] fingerprintOf(TokenPath path) {
+        return new long[]{path.getFingerprintHigh(), path.getFingerprintLow()};
+    }
+}